@@ -19,11 +19,7 @@
  */
 package com.microsoft.azuretools.azureexplorer.editors;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketTimeoutException;
@@ -65,6 +61,7 @@ import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.ScrollBar;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.Text;
@@ -76,13 +73,13 @@ import org.eclipse.ui.part.EditorPart;
 
 import com.microsoft.tooling.msservices.components.DefaultLoader;
 import com.microsoft.tooling.msservices.helpers.CallableSingleArg;
-import com.microsoft.azuretools.azurecommons.helpers.NotNull;
 import com.microsoft.azuretools.azureexplorer.Activator;
 import com.microsoft.azuretools.azureexplorer.forms.UploadBlobFileForm;
 import com.microsoft.azuretools.azureexplorer.helpers.UIHelperImpl;
 import com.microsoft.azuretools.core.utils.PluginUtil;
 import com.microsoft.azuretools.telemetry.TelemetryProperties;
 import com.microsoft.azuretools.azurecommons.helpers.AzureCmdException;
+import com.microsoft.tooling.msservices.helpers.azure.sdk.BlobItemPager;
 import com.microsoft.tooling.msservices.helpers.azure.sdk.StorageClientSDKManager;
 import com.microsoft.tooling.msservices.model.storage.BlobContainer;
 import com.microsoft.tooling.msservices.model.storage.BlobDirectory;
@@ -120,6 +117,8 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
 
     private LinkedList<BlobDirectory> directoryQueue = new LinkedList<BlobDirectory>();
     private java.util.List<BlobItem> blobItems = new ArrayList<BlobItem>();
+    private volatile BlobItemPager blobItemPager;
+    private volatile boolean loadingPage = false;
     private FileEditorVirtualNode<EditorPart> fileEditorVirtualNode;
 
     @Override
@@ -394,6 +393,15 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
             }
         });
 
+        if (blobListTable.getVerticalBar() != null) {
+            blobListTable.getVerticalBar().addSelectionListener(new SelectionAdapter() {
+                @Override
+                public void widgetSelected(SelectionEvent e) {
+                    loadNextPageIfScrolledToEnd();
+                }
+            });
+        }
+
         fillGrid();
         
         return blobListTable;
@@ -402,6 +410,8 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
     public void fillGrid() {
         setUIState(true);
 
+        final String query = queryTextField.getText();
+
         DefaultLoader.getIdeHelper().runInBackground(null, "Loading blobs...", false, true, "Loading blobs...", new Runnable() {
             @Override
             public void run() {
@@ -410,20 +420,19 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
                         directoryQueue.addLast(StorageClientSDKManager.getManager().getRootDirectory(connectionString, blobContainer));
                     }
 
-                    blobItems = StorageClientSDKManager.getManager().getBlobItems(connectionString, directoryQueue.peekLast());
+                    if (blobItemPager != null) {
+                        blobItemPager.cancel();
+                    }
+
+                    final BlobItemPager pager = StorageClientSDKManager.getManager().getBlobItemPager(connectionString,
+                            directoryQueue.peekLast(), query.isEmpty() ? null : query, BlobItemPager.DEFAULT_PAGE_SIZE, true);
+                    final java.util.List<BlobItem> firstPage = pager.nextPage();
 
                     DefaultLoader.getIdeHelper().invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            if (!queryTextField.getText().isEmpty()) {
-                                for (int i = blobItems.size() - 1; i >= 0; i--) {
-                                    BlobItem blobItem = blobItems.get(i);
-
-                                    if (blobItem instanceof BlobFile && !blobItem.getName().startsWith(queryTextField.getText())) {
-                                        blobItems.remove(i);
-                                    }
-                                }
-                            }
+                            blobItemPager = pager;
+                            blobItems = new ArrayList<BlobItem>(firstPage);
 
                             pathLabel.setText(directoryQueue.peekLast().getPath());
                             tableViewer.setInput(blobItems);
@@ -431,9 +440,58 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
                             setUIState(false);
 //
 //                            blobListTable.clearSelection();
+
+                            loadNextPageIfScrolledToEnd();
+                        }
+                    });
+                } catch (AzureCmdException ex) {
+                    DefaultLoader.getUIHelper().showException("Error querying blob list.", ex, "Error querying blobs", false, true);
+                }
+            }
+        });
+    }
+
+    private void loadNextPageIfScrolledToEnd() {
+        ScrollBar verticalBar = blobListTable.getVerticalBar();
+
+        // Load the next page of blobs when scrolled to the last screen of the loaded rows, or all rows are visible
+        if (verticalBar == null || !verticalBar.isVisible() ||
+                verticalBar.getSelection() + 2 * verticalBar.getThumb() >= verticalBar.getMaximum()) {
+            loadNextPage();
+        }
+    }
+
+    private void loadNextPage() {
+        final BlobItemPager pager = blobItemPager;
+
+        if (pager == null || loadingPage || !pager.hasNextPage()) {
+            return;
+        }
+
+        loadingPage = true;
+
+        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final java.util.List<BlobItem> page = pager.nextPage();
+
+                    DefaultLoader.getIdeHelper().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            loadingPage = false;
+
+                            // Drop the page if the grid is refilled while loading it
+                            if (pager == blobItemPager && !blobListTable.isDisposed()) {
+                                blobItems.addAll(page);
+                                tableViewer.add(page.toArray());
+
+                                loadNextPageIfScrolledToEnd();
+                            }
                         }
                     });
                 } catch (AzureCmdException ex) {
+                    loadingPage = false;
                     DefaultLoader.getUIHelper().showException("Error querying blob list.", ex, "Error querying blobs", false, true);
                 }
             }
@@ -502,7 +560,7 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
                         try {
                             StorageClientSDKManager.getManager().deleteBlobFile(connectionString, blobItem);
 
-                            if (blobItems.size() <= 1) {
+                            if (blobItems.size() <= 1 && !blobItemPager.hasNextPage()) {
                                 directoryQueue.clear();
                                 directoryQueue.addLast(StorageClientSDKManager.getManager().getRootDirectory(connectionString, blobContainer));
                             }
@@ -510,7 +568,7 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
                             DefaultLoader.getIdeHelper().invokeLater(new Runnable() {
                                 @Override
                                 public void run() {
-                                	if (blobItems.size() <= 1) {
+                                	if (blobItems.size() <= 1 && !blobItemPager.hasNextPage()) {
                                 		queryTextField.setText("");
                                 	}
                                     fillGrid();
@@ -567,59 +625,52 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
                             }
                         }
 
-                        final BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(targetFile), 65536) {
-                            private long runningCount = 0;
-
+                        final CallableSingleArg<Void, Long> callable = new CallableSingleArg<Void, Long>() {
                             @Override
-                            public synchronized void write(@NotNull byte[] bytes, int i, int i1) throws IOException {
-                                super.write(bytes, i, i1);
-
-                                runningCount += i1;
+                            public Void call(Long downloadedBytes) throws Exception {
+                                double progress = (double) downloadedBytes / fileSelection.getSize();
 
-                                double progress = (double) runningCount / fileSelection.getSize();
                                 monitor.worked((int) (100 * progress));
                                 monitor.subTask(String.format("%s%% downloaded", (int) (progress * 100)));
+
+                                return null;
                             }
                         };
 
-                        try {
 //                            Future<?> future = DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
 //                                @Override
 //                                public void run() {
-                            try {
-                                StorageClientSDKManager.getManager().downloadBlobFileContent(connectionString, fileSelection, bufferedOutputStream);
-
-                                if (open && targetFile.exists()) {
-                                    try {
-                                        final Process p;
-                                        Runtime runtime = Runtime.getRuntime();
-                                        p = runtime.exec(
-                                                new String[]{"open", "-R", targetFile.getName()},
-                                                null,
-                                                targetFile.getParentFile());
-
-                                        InputStream errorStream = p.getErrorStream();
-                                        String errResponse = new String(IOUtils.readFully(errorStream, -1));
-
-                                        if (p.waitFor() != 0) {
-                                            throw new Exception(errResponse);
-                                        }
-                                    } catch (Exception e) {
-                                        monitor.setTaskName("Error opening file");
-                                        monitor.subTask(e.getMessage());
+                        try {
+                            StorageClientSDKManager.getManager().downloadBlobFileContent(connectionString, fileSelection, targetFile, callable);
+
+                            if (open && targetFile.exists()) {
+                                try {
+                                    final Process p;
+                                    Runtime runtime = Runtime.getRuntime();
+                                    p = runtime.exec(
+                                            new String[]{"open", "-R", targetFile.getName()},
+                                            null,
+                                            targetFile.getParentFile());
+
+                                    InputStream errorStream = p.getErrorStream();
+                                    String errResponse = new String(IOUtils.readFully(errorStream, -1));
+
+                                    if (p.waitFor() != 0) {
+                                        throw new Exception(errResponse);
                                     }
-//                                            Desktop.getDesktop().open(targetFile);
+                                } catch (Exception e) {
+                                    monitor.setTaskName("Error opening file");
+                                    monitor.subTask(e.getMessage());
                                 }
-                            } catch (AzureCmdException e) {
-                                Throwable connectionFault = e.getCause().getCause();
-
-                                monitor.setTaskName("Error downloading Blob");
-                                monitor.subTask((connectionFault instanceof SocketTimeoutException) ? "Connection timed out" : connectionFault.getMessage());
-                                return Status.CANCEL_STATUS;
-                            } 
-                        } finally {
-                            bufferedOutputStream.close();
-                        }
+//                                            Desktop.getDesktop().open(targetFile);
+                            }
+                        } catch (AzureCmdException e) {
+                            Throwable connectionFault = getConnectionFault(e);
+
+                            monitor.setTaskName("Error downloading Blob");
+                            monitor.subTask((connectionFault instanceof SocketTimeoutException) ? "Connection timed out" : connectionFault.getMessage());
+                            return Status.CANCEL_STATUS;
+                        } 
                     } catch (IOException e) {
                         DefaultLoader.getUIHelper().showException("Error downloading Blob", e, "Error downloading Blob", false, true);
                         return Status.CANCEL_STATUS;
@@ -633,6 +684,15 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
         }
     }
 
+    private static Throwable getConnectionFault(AzureCmdException e) {
+        // Transport errors are wrapped twice, the failures of the download itself (e.g. 412, MD5 mismatch) only once
+        Throwable cause = e.getCause();
+        if (cause == null) {
+            return e;
+        }
+        return cause.getCause() != null ? cause.getCause() : cause;
+    }
+
     private void uploadFile() {
         final UploadBlobFileForm form = new UploadBlobFileForm(PluginUtil.getParentShell());
         form.setUploadSelected(new Runnable() {
@@ -665,7 +725,6 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
                 monitor.beginTask("Uploading blob...", IProgressMonitor.UNKNOWN);
                 try {
                     final BlobDirectory blobDirectory = directoryQueue.peekLast();
-                    final BufferedInputStream bufferedInputStream = new BufferedInputStream(new FileInputStream(selectedFile));
                     monitor.subTask("0% uploaded");
                     try {
                         final CallableSingleArg<Void, Long> callable = new CallableSingleArg<Void, Long>() {
@@ -684,17 +743,11 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
                                     connectionString,
                                     blobContainer,
                                     path,
-                                    bufferedInputStream,
+                                    selectedFile,
                                     callable,
-                                    1024 * 1024,
-                                    selectedFile.length());
+                                    1024 * 1024);
                         } catch (AzureCmdException e) {
                             e.printStackTrace();
-                        } finally {
-                            try {
-                                bufferedInputStream.close();
-                            } catch (IOException ignored) {
-                            }
                         }
 //                        while (!future.isDone()) {
 //                            Thread.sleep(500);
@@ -702,7 +755,6 @@ public class BlobExplorerFileEditor extends EditorPart implements TelemetryPrope
 
                         if (monitor.isCanceled()) {
 //                                future.cancel(true);
-                            bufferedInputStream.close();
 
                             for (BlobItem blobItem : StorageClientSDKManager.getManager().getBlobItems(connectionString, blobDirectory)) {
                                 if (blobItem instanceof BlobFile && blobItem.getPath().equals(path)) {
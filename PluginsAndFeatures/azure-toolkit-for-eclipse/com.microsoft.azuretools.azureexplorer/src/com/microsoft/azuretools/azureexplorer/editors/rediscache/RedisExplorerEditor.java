@@ -347,7 +347,7 @@ public class RedisExplorerEditor extends EditorPart implements RedisExplorerMvpV
     @Override
     public void showContent(RedisValueData val) {
         RedisKeyType type = val.getKeyType();
-        lblTypeValue.setText(type.toString());
+        lblTypeValue.setText(val.getKeyTypeDescription());
         lblKeyValue.setText(lstKey.getItem(lstKey.getSelectionIndex()));
         if (type.equals(RedisKeyType.STRING)) {
             if (val.getRowData().size() > 0 && val.getRowData().get(0).length > 0) {
@@ -26,19 +26,16 @@ import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.google.common.base.Joiner;
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
 import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpException;
@@ -46,13 +43,13 @@ import com.microsoft.azure.hdinsight.common.StreamUtil;
 import com.microsoft.azure.hdinsight.sdk.cluster.EmulatorClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
-import com.microsoft.azure.hdinsight.sdk.common.HttpResponse;
+import com.microsoft.azure.hdinsight.sdk.common.SshSessionPool;
 import com.microsoft.azure.hdinsight.sdk.storage.HDStorageAccount;
 import com.microsoft.azure.hdinsight.sdk.storage.IHDIStorageAccount;
 import com.microsoft.azure.hdinsight.sdk.storage.StorageAccountTypeEnum;
+import com.microsoft.azure.hdinsight.spark.common.LivyBatchLogStream;
+import com.microsoft.azure.hdinsight.spark.common.SparkArtifactIndex;
 import com.microsoft.azure.hdinsight.spark.common.SparkBatchSubmission;
-import com.microsoft.azure.hdinsight.spark.common.SparkJobLog;
-import com.microsoft.azure.hdinsight.spark.common.SparkSubmitResponse;
 import com.microsoft.tooling.msservices.helpers.CallableSingleArg;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
 import com.microsoft.azuretools.azurecommons.helpers.StringHelper;
@@ -66,17 +63,17 @@ import com.microsoft.azuretools.hdinsight.Activator;
 import com.microsoft.azuretools.hdinsight.common2.HDInsightUtil;
 import com.microsoft.azuretools.core.utils.Messages;
 
+import rx.Observable;
+
 public class SparkSubmitHelper {
 	private static SparkSubmitHelper ourInstance = new SparkSubmitHelper();
 
-	private static final int MAX_INTERVAL_TIME = 5000;
-	private static final int MIN_INTERVAL_TIME = 1000;
-	private static final int INC_TIME = 100;
+	private static final int KILL_CHECK_INTERVAL_TIME = 1000;
 
 	private static final String APPLICATION_ID_PATTERN = "Application report for ([^ ]*) \\(state: ACCEPTED\\)";
 	public static final String HELP_LINK = "http://go.microsoft.com/fwlink/?LinkID=722349&clcid=0x409";
 
-	private SparkJobLog sparkJobLog;
+	private List<String> sparkJobLogLines;
 
 	public static SparkSubmitHelper getInstance() {
 		return ourInstance;
@@ -88,7 +85,8 @@ public class SparkSubmitHelper {
 	private String JobLogFolderName = "SparkJobLog";
 
 	public String writeLogToLocalFile(/* @NotNull Project project */) throws IOException {
-		if (sparkJobLog == null) {
+		final List<String> logLines = sparkJobLogLines;
+		if (logLines == null) {
 			return null;
 		}
 
@@ -110,7 +108,12 @@ public class SparkSubmitHelper {
 
 			logFileWrite = new FileWriter(fullFileName);
 			bufferedWriter = new BufferedWriter(logFileWrite);
-			for (String str : sparkJobLog.getLog()) {
+			List<String> lines;
+			synchronized (logLines) {
+				lines = new ArrayList<>(logLines);
+			}
+
+			for (String str : lines) {
 				bufferedWriter.write(str);
 				bufferedWriter.newLine();
 			}
@@ -131,72 +134,36 @@ public class SparkSubmitHelper {
 	public void printRunningLogStreamingly(/* Project project, */ int id, IClusterDetail clusterDetail,
 			Map<String, String> postEventProperty) throws IOException {
 		try {
-			boolean isFailedJob = false;
-			boolean isKilledJob = false;
+			final LivyBatchLogStream logStream = new LivyBatchLogStream(SparkBatchSubmission.getInstance(),
+					clusterDetail.getConnectionUrl() + "/livy/batches", id);
+			final List<String> logLines = Collections.synchronizedList(new ArrayList<>());
+			sparkJobLogLines = logLines;
 
-			int from_index = 0;
-			int pre_index;
-			int times = 0;
 			HDInsightUtil.getSparkSubmissionToolWindowView()
 					.setInfo("======================Begin printing out spark job log.=======================");
-			while (true) {
-				pre_index = from_index;
-				if (HDInsightUtil.getSparkSubmissionToolWindowView().getJobStatusManager().isJobKilled()) {
-					isKilledJob = true;
-					break;
-				}
-
-				from_index = printoutJobLog(/* project, */id, from_index, clusterDetail);
-				HttpResponse statusHttpResponse = SparkBatchSubmission.getInstance()
-						.getBatchSparkJobStatus(clusterDetail.getConnectionUrl() + "/livy/batches", id);
-
-				SparkSubmitResponse status = new Gson().fromJson(statusHttpResponse.getMessage(),
-						new TypeToken<SparkSubmitResponse>() {
-						}.getType());
-
-				// only the lines of the log are same between two http requests,
-				// we try to get the job status
-				if (from_index == pre_index) {
-					String finalStatus = status.getState().toLowerCase();
-					if (finalStatus.equals("error") || finalStatus.equals("success") || finalStatus.equals("dead")) {
-						if (finalStatus.equals("error") || finalStatus.equals("dead")) {
-							isFailedJob = true;
-						}
-
-						if (!HDInsightUtil.getSparkSubmissionToolWindowView().getJobStatusManager().isJobKilled()) {
-							printoutJobLog(id, from_index, clusterDetail);
-							HDInsightUtil.getSparkSubmissionToolWindowView().setInfo(
-									"======================Finish printing out spark job log.=======================");
-						} else {
-							isKilledJob = true;
-						}
-						break;
-					}
-				}
+			logStream.getLogs()
+					.takeUntil(Observable.interval(KILL_CHECK_INTERVAL_TIME, TimeUnit.MILLISECONDS).filter(
+							any -> HDInsightUtil.getSparkSubmissionToolWindowView().getJobStatusManager().isJobKilled()))
+					.toBlocking()
+					.forEach(line -> printoutJobLogLine(line, logLines));
 
-				Thread.sleep(getIntervalTime(times));
-				times++;
-			}
-
-			if (isKilledJob) {
+			if (HDInsightUtil.getSparkSubmissionToolWindowView().getJobStatusManager().isJobKilled()) {
 				postEventProperty.put("IsKilled", "true");
 				AppInsightsClient.create(Messages.SparkSubmissionButtonClickEvent,
 						Activator.getDefault().getBundle().getVersion().toString(), postEventProperty);
 				return;
 			}
 
-			if (isFailedJob) {
+			HDInsightUtil.getSparkSubmissionToolWindowView().setInfo(
+					"======================Finish printing out spark job log.=======================");
+
+			if (logStream.isFailed()) {
 				postEventProperty.put("IsRunningSucceed", "false");
-                HttpResponse httpResponse = SparkBatchSubmission.getInstance()
-                        .getBatchJobFullLog(clusterDetail.getConnectionUrl() + "/livy/batches", id);
-                SparkSubmitResponse submitStatus = new Gson().fromJson(httpResponse.getMessage(),
-                        new TypeToken<SparkSubmitResponse>() {
-                        }.getType());
-                if (submitStatus != null && submitStatus.getLog() != null && submitStatus.getLog().size() > 0) {
-                    List<String> logs = submitStatus.getLog();
-                    postEventProperty.put("SubmitFailedReason", truncateTelemetryMessage(logs.get(logs.size() - 1)));
-                }
-				
+				logLines.stream()
+						.filter(line -> !StringHelper.isNullOrWhiteSpace(line))
+						.reduce((first, second) -> second)
+						.ifPresent(log -> postEventProperty.put("SubmitFailedReason", truncateTelemetryMessage(log)));
+
 				HDInsightUtil.getSparkSubmissionToolWindowView().setError("Error : Your submitted job run failed");
 			} else {
 				postEventProperty.put("IsRunningSucceed", "true");
@@ -223,42 +190,60 @@ public class SparkSubmitHelper {
 	public String uploadFileToHDFS(/* Project project, */ String localFile, IHDIStorageAccount storageAccount,
 			String defaultContainerName, String uploadFolderPath) throws Exception {
 		final File file = new File(localFile);
+		final CallableSingleArg<Void, Long> callable = new CallableSingleArg<Void, Long>() {
+			@Override
+			public Void call(Long uploadedBytes) throws Exception {
+				double progress = ((double) uploadedBytes) / file.length();
+				return null;
+			}
+		};
+
 		if (storageAccount.getAccountType() == StorageAccountTypeEnum.BLOB) {
-			try (FileInputStream fileInputStream = new FileInputStream(file)) {
-				try (BufferedInputStream bufferedInputStream = new BufferedInputStream(fileInputStream)) {
-					final CallableSingleArg<Void, Long> callable = new CallableSingleArg<Void, Long>() {
-						@Override
-						public Void call(Long uploadedBytes) throws Exception {
-							double progress = ((double) uploadedBytes) / file.length();
-							return null;
-						}
-					};
+			HDStorageAccount blobStorageAccount = (HDStorageAccount) storageAccount;
+			String path = String.format("SparkSubmission/%s/%s", uploadFolderPath, file.getName());
+			String uploadedPath = String.format("wasb://%s@%s/%s", defaultContainerName,
+					blobStorageAccount.getFullStorageBlobName(), path);
+			boolean isContentAddressed = SparkArtifactIndex.isContentAddressed(uploadFolderPath);
+
+			if (isContentAddressed && SparkArtifactIndex.getInstance().isRecentlyUploaded(uploadedPath)) {
+				HDInsightUtil.showInfoOnSubmissionMessageWindow(String.format(
+						"Info : File %s is unchanged since uploaded to '%s', skip uploading.", localFile,
+						uploadedPath));
+				return uploadedPath;
+			}
 
-					HDStorageAccount blobStorageAccount = (HDStorageAccount) storageAccount;
-					BlobContainer defaultContainer = getSparkClusterDefaultContainer(blobStorageAccount,
-							defaultContainerName);
-					String path = String.format("SparkSubmission/%s/%s", uploadFolderPath, file.getName());
-					String uploadedPath = String.format("wasb://%s@%s/%s", defaultContainerName,
-							blobStorageAccount.getFullStorageBlobName(), path);
+			BlobContainer defaultContainer = getSparkClusterDefaultContainer(blobStorageAccount,
+					defaultContainerName);
+
+			if (isContentAddressed && StorageClientSDKManager.getManager().getBlobFileLength(
+					blobStorageAccount.getConnectionString(), defaultContainer, path) == file.length()) {
+				SparkArtifactIndex.getInstance().markUploaded(uploadedPath);
+				HDInsightUtil.showInfoOnSubmissionMessageWindow(String.format(
+						"Info : File %s is found in azure blob '%s', skip uploading.", localFile,
+						uploadedPath));
+				return uploadedPath;
+			}
 
-					HDInsightUtil.showInfoOnSubmissionMessageWindow(
-							String.format("Info : Begin uploading file %s to Azure Blob Storage Account %s ...",
-									localFile, uploadedPath));
+			HDInsightUtil.showInfoOnSubmissionMessageWindow(
+					String.format("Info : Begin uploading file %s to Azure Blob Storage Account %s ...",
+							localFile, uploadedPath));
 
-					StorageClientSDKManager.getManager().uploadBlobFileContent(blobStorageAccount.getConnectionString(),
-							defaultContainer, path, bufferedInputStream, callable, 1024 * 1024, file.length());
+			StorageClientSDKManager.getManager().uploadBlobFileContent(blobStorageAccount.getConnectionString(),
+					defaultContainer, path, file, callable, 1024 * 1024);
 
-					HDInsightUtil.showInfoOnSubmissionMessageWindow(
-							String.format("Info : Submit file to azure blob '%s' successfully.", uploadedPath));
-					return uploadedPath;
-				}
+			if (isContentAddressed) {
+				SparkArtifactIndex.getInstance().markUploaded(uploadedPath);
 			}
+
+			HDInsightUtil.showInfoOnSubmissionMessageWindow(
+					String.format("Info : Submit file to azure blob '%s' successfully.", uploadedPath));
+			return uploadedPath;
 		} else if (storageAccount.getAccountType() == StorageAccountTypeEnum.ADLS) {
 			String uploadPath = String.format("adl://%s.azuredatalakestore.net/%s/%s", storageAccount.getName(),
 					storageAccount.getDefaultContainerOrRootPath(), "SparkSubmission");
 			HDInsightUtil.showInfoOnSubmissionMessageWindow(String
 					.format("Info : Begin uploading file %s to Azure Data Lake Store %s ...", localFile, uploadPath));
-			String uploadedPath = StreamUtil.uploadArtifactToADLS(file, storageAccount, uploadFolderPath);
+			String uploadedPath = StreamUtil.uploadArtifactToADLS(file, storageAccount, uploadFolderPath, callable);
 			HDInsightUtil.showInfoOnSubmissionMessageWindow(
 					String.format("Info : Submit file to azure blob '%s' successfully.", uploadedPath));
 			return uploadedPath;
@@ -272,16 +257,11 @@ public class SparkSubmitHelper {
 		return len < 50 ? message : message.substring(0, 50);
 	}
 	
-	private int printoutJobLog(/* Project project, */ int id, int from_index, IClusterDetail clusterDetail)
-			throws IOException {
-		HttpResponse httpResponse = SparkBatchSubmission.getInstance()
-				.getBatchJobFullLog(clusterDetail.getConnectionUrl() + "/livy/batches", id);
-		sparkJobLog = new Gson().fromJson(httpResponse.getMessage(), new TypeToken<SparkJobLog>() {
-		}.getType());
+	private void printoutJobLogLine(String line, List<String> logLines) {
+		logLines.add(line);
 
 		if (!HDInsightUtil.getSparkSubmissionToolWindowView().getJobStatusManager().isApplicationGenerated()) {
-			String sparkLogs = Joiner.on("").join(sparkJobLog.getLog());
-			String applicationId = getApplicationIdFromYarnLog(sparkLogs);
+			String applicationId = getApplicationIdFromYarnLog(line);
 			if (applicationId != null) {
 				HDInsightUtil.getSparkSubmissionToolWindowView().setBrowserButtonState(true);
 				HDInsightUtil.getSparkSubmissionToolWindowView().getJobStatusManager().setApplicationIdGenerated();
@@ -289,18 +269,9 @@ public class SparkSubmitHelper {
 			}
 		}
 
-		int counter = 0;
-		if (sparkJobLog.getLog().size() > 0) {
-			for (String line : sparkJobLog.getLog()) {
-				if (counter >= from_index && !StringHelper.isNullOrWhiteSpace(line)) {
-					HDInsightUtil.getSparkSubmissionToolWindowView().setInfo(line, true);
-				}
-
-				counter++;
-			}
+		if (!StringHelper.isNullOrWhiteSpace(line)) {
+			HDInsightUtil.getSparkSubmissionToolWindowView().setInfo(line, true);
 		}
-
-		return sparkJobLog.getTotal();
 	}
 
 	private BlobContainer getSparkClusterDefaultContainer(ClientStorageAccount storageAccount,
@@ -316,11 +287,6 @@ public class SparkSubmitHelper {
 		return null;
 	}
 
-	private int getIntervalTime(int times) {
-		int interval = MIN_INTERVAL_TIME + times * INC_TIME;
-		return interval > MAX_INTERVAL_TIME ? MAX_INTERVAL_TIME : interval;
-	}
-
 	private String getApplicationIdFromYarnLog(String yarnLog) {
 		Pattern r = Pattern.compile(APPLICATION_ID_PATTERN);
 		Matcher m = r.matcher(yarnLog);
@@ -351,33 +317,36 @@ public class SparkSubmitHelper {
 				String host = url.getHost();
 				int port = url.getPort();
 
-				JSch jsch = new JSch();
-				Session session = jsch.getSession(emulatorClusterDetail.getHttpUserName(), host, port);
-				session.setPassword(emulatorClusterDetail.getHttpPassword());
-
-				java.util.Properties config = new java.util.Properties();
-				config.put("StrictHostKeyChecking", "no");
-				session.setConfig(config);
-
-				session.connect();
-				ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
-				channel.connect();
-
-				String[] folders = folderPath.split("/");
-				for (String folder : folders) {
-					if (folder.length() > 0) {
-						try {
-							channel.cd(folder);
-						} catch (SftpException e) {
-							channel.mkdir(folder);
-							channel.cd(folder);
+				// Reuse the authenticated SSH session to the emulator between uploads
+				Session session = SshSessionPool.getInstance().acquire(host, port,
+						emulatorClusterDetail.getHttpUserName(), emulatorClusterDetail.getHttpPassword(), null);
+				ChannelSftp channel = null;
+
+				try {
+					channel = (ChannelSftp) session.openChannel("sftp");
+					channel.connect();
+
+					String[] folders = folderPath.split("/");
+					for (String folder : folders) {
+						if (folder.length() > 0) {
+							try {
+								channel.cd(folder);
+							} catch (SftpException e) {
+								channel.mkdir(folder);
+								channel.cd(folder);
+							}
 						}
 					}
+
+					channel.put(bufferedInputStream, file.getName());
+				} finally {
+					if (channel != null) {
+						channel.disconnect();
+					}
+
+					SshSessionPool.getInstance().release(session);
 				}
 
-				channel.put(bufferedInputStream, file.getName());
-				channel.disconnect();
-				session.disconnect();
 				return file.getName();
 			}
 		}
@@ -387,7 +356,7 @@ public class SparkSubmitHelper {
 			@NotNull String buildJarPath) throws Exception {
 
 		HDInsightUtil.showInfoOnSubmissionMessageWindow(String.format("Info : Get target jar from %s.", buildJarPath));
-		final String uploadShortPath = getFormatPathByDate();
+		final String uploadShortPath = SparkArtifactIndex.getInstance().getUploadFolderPath(new File(buildJarPath));
 
 		return SparkSubmitHelper.getInstance().uploadFileToHDFS(/* project, */ buildJarPath,
 				selectedClusterDetail.getStorageAccount(),
@@ -414,14 +383,4 @@ public class SparkSubmitHelper {
 		return path.endsWith(".jar");
 
 	}
-
-	private static String getFormatPathByDate() {
-		int year = Calendar.getInstance(TimeZone.getTimeZone("UTC")).get(Calendar.YEAR);
-		int month = Calendar.getInstance(TimeZone.getTimeZone("UTC")).get(Calendar.MONTH);
-		int day = Calendar.getInstance(TimeZone.getTimeZone("UTC")).get(Calendar.DAY_OF_MONTH);
-
-		String uniqueFolderId = UUID.randomUUID().toString();
-
-		return String.format("%04d/%02d/%02d/%s", year, month, day, uniqueFolderId);
-	}
 }
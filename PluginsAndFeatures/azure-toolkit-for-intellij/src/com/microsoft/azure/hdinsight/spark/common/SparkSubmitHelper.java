@@ -21,9 +21,6 @@
  */
 package com.microsoft.azure.hdinsight.spark.common;
 
-import com.google.common.base.Joiner;
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
 import com.intellij.openapi.project.Project;
 import com.jcraft.jsch.*;
 import com.microsoft.azure.hdinsight.common.HDInsightUtil;
@@ -31,7 +28,7 @@ import com.microsoft.azure.hdinsight.common.StreamUtil;
 import com.microsoft.azure.hdinsight.sdk.cluster.EmulatorClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
-import com.microsoft.azure.hdinsight.sdk.common.HttpResponse;
+import com.microsoft.azure.hdinsight.sdk.common.SshSessionPool;
 import com.microsoft.azure.hdinsight.sdk.storage.HDStorageAccount;
 import com.microsoft.azure.hdinsight.sdk.storage.IHDIStorageAccount;
 import com.microsoft.azure.hdinsight.sdk.storage.StorageAccountTypeEnum;
@@ -45,23 +42,23 @@ import com.microsoft.tooling.msservices.helpers.CallableSingleArg;
 import com.microsoft.tooling.msservices.helpers.azure.sdk.StorageClientSDKManager;
 import com.microsoft.tooling.msservices.model.storage.BlobContainer;
 import com.microsoft.tooling.msservices.model.storage.ClientStorageAccount;
+import rx.Observable;
 
 import java.io.*;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SparkSubmitHelper {
     private static SparkSubmitHelper ourInstance = new SparkSubmitHelper();
 
-    private static final int MAX_INTERVAL_TIME = 5000;
-    private static final int MIN_INTERVAL_TIME = 1000;
-    private static final int INC_TIME = 100;
+    private static final int KILL_CHECK_INTERVAL_TIME = 1000;
 
     private static final String applicationIdPattern = "Application report for ([^ ]*) \\(state: ACCEPTED\\)";
 
-    private SparkJobLog sparkJobLog;
+    private List<String> sparkJobLogLines;
 
     public static SparkSubmitHelper getInstance() {
         return ourInstance;
@@ -72,7 +69,8 @@ public class SparkSubmitHelper {
 
     private String JobLogFolderName = "SparkJobLog";
     public String writeLogToLocalFile(@NotNull Project project) throws IOException{
-        if (sparkJobLog == null) {
+        final List<String> logLines = sparkJobLogLines;
+        if (logLines == null) {
             return null;
         }
 
@@ -92,7 +90,12 @@ public class SparkSubmitHelper {
 
             logFileWrite = new FileWriter(fullFileName);
             bufferedWriter = new BufferedWriter(logFileWrite);
-            for (String str : sparkJobLog.getLog()) {
+            List<String> lines;
+            synchronized (logLines) {
+                lines = new ArrayList<>(logLines);
+            }
+
+            for (String str : lines) {
                 bufferedWriter.write(str);
                 bufferedWriter.newLine();
             }
@@ -112,67 +115,31 @@ public class SparkSubmitHelper {
 
     public void printRunningLogStreamingly(Project project, int id, IClusterDetail clusterDetail, Map<String, String> postEventProperty) throws IOException {
         try {
-            boolean isFailedJob = false;
-            boolean isKilledJob = false;
+            final LivyBatchLogStream logStream = new LivyBatchLogStream(SparkBatchSubmission.getInstance(), getLivyConnectionURL(clusterDetail), id);
+            final List<String> logLines = Collections.synchronizedList(new ArrayList<>());
+            sparkJobLogLines = logLines;
 
-            int from_index = 0;
-            int pre_index;
-            int times = 0;
             HDInsightUtil.getSparkSubmissionToolWindowManager(project).setInfo("======================Begin printing out spark job log.=======================");
-            while (true) {
-                pre_index = from_index;
-                if (HDInsightUtil.getSparkSubmissionToolWindowManager(project).getJobStatusManager().isJobKilled()) {
-                    isKilledJob = true;
-                    break;
-                }
-
-                from_index = printoutJobLog(project, id, from_index, clusterDetail);
-                HttpResponse statusHttpResponse = SparkBatchSubmission.getInstance().getBatchSparkJobStatus(getLivyConnectionURL(clusterDetail), id);
-
-                SparkSubmitResponse status = new Gson().fromJson(statusHttpResponse.getMessage(), new TypeToken<SparkSubmitResponse>() {
-                }.getType());
-
-                // only the lines of the log are same between two http requests, we try to get the job status
-                if (from_index == pre_index) {
-                    String finalStatus = status.getState().toLowerCase();
-                    if (finalStatus.equals("error") || finalStatus.equals("success") || finalStatus.equals("dead")) {
-                        if (finalStatus.equals("error") || finalStatus.equals("dead")) {
-                            isFailedJob = true;
-                        }
-
-                        if (!HDInsightUtil.getSparkSubmissionToolWindowManager(project).getJobStatusManager().isJobKilled()) {
-                            printoutJobLog(project, id, from_index, clusterDetail);
-                            HDInsightUtil.getSparkSubmissionToolWindowManager(project).setInfo("======================Finish printing out spark job log.=======================");
-                        } else {
-                            isKilledJob = true;
-                        }
-                        break;
-                    }
-                }
+            logStream.getLogs()
+                    .takeUntil(Observable.interval(KILL_CHECK_INTERVAL_TIME, TimeUnit.MILLISECONDS)
+                            .filter(any -> HDInsightUtil.getSparkSubmissionToolWindowManager(project).getJobStatusManager().isJobKilled()))
+                    .toBlocking()
+                    .forEach(line -> printoutJobLogLine(project, line, logLines));
 
-                Thread.sleep(getIntervalTime(times));
-                times++;
-            }
-
-
-            if (isKilledJob) {
+            if (HDInsightUtil.getSparkSubmissionToolWindowManager(project).getJobStatusManager().isJobKilled()) {
                 postEventProperty.put("IsKilled", "true");
                 AppInsightsClient.create(HDInsightBundle.message("SparkSubmissionButtonClickEvent"), null, postEventProperty);
                 return;
             }
 
-            if (isFailedJob) {
+            HDInsightUtil.getSparkSubmissionToolWindowManager(project).setInfo("======================Finish printing out spark job log.=======================");
+
+            if (logStream.isFailed()) {
                 postEventProperty.put("IsRunningSucceed", "false");
-                HttpResponse httpResponse = SparkBatchSubmission.getInstance()
-                        .getBatchJobFullLog(clusterDetail.getConnectionUrl() + "/livy/batches", id);
-                SparkSubmitResponse submitStatus = new Gson().fromJson(httpResponse.getMessage(),
-                        new TypeToken<SparkSubmitResponse>() {
-                        }.getType());
-                if (submitStatus != null && submitStatus.getLog() != null && submitStatus.getLog().size() > 0) {
-                    List<String> logs = submitStatus.getLog();
-                    String log = logs.get(logs.size() - 1);
-                    postEventProperty.put("SubmitFailedReason", HDInsightUtil.normalizeTelemetryMessage(log));
-                }
+                logLines.stream()
+                        .filter(line -> !StringHelper.isNullOrWhiteSpace(line))
+                        .reduce((first, second) -> second)
+                        .ifPresent(log -> postEventProperty.put("SubmitFailedReason", HDInsightUtil.normalizeTelemetryMessage(log)));
 
                 HDInsightUtil.getSparkSubmissionToolWindowManager(project).setError("Error : Your submitted job run failed");
             } else {
@@ -202,33 +169,36 @@ public class SparkSubmitHelper {
                 String host = url.getHost();
                 int port = url.getPort();
 
-                JSch jsch = new JSch();
-                Session session = jsch.getSession(emulatorClusterDetail.getHttpUserName(), host, port);
-                session.setPassword(emulatorClusterDetail.getHttpPassword());
-
-                java.util.Properties config = new java.util.Properties();
-                config.put("StrictHostKeyChecking", "no");
-                session.setConfig(config);
-
-                session.connect();
-                ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
-                channel.connect();
-
-                String[] folders = folderPath.split( "/" );
-                for ( String folder : folders ) {
-                    if (folder.length() > 0) {
-                        try {
-                            channel.cd(folder);
-                        } catch (SftpException e) {
-                            channel.mkdir(folder);
-                            channel.cd(folder);
+                // Reuse the authenticated SSH session to the emulator between uploads
+                Session session = SshSessionPool.getInstance().acquire(host, port,
+                        emulatorClusterDetail.getHttpUserName(), emulatorClusterDetail.getHttpPassword(), null);
+                ChannelSftp channel = null;
+
+                try {
+                    channel = (ChannelSftp) session.openChannel("sftp");
+                    channel.connect();
+
+                    String[] folders = folderPath.split( "/" );
+                    for ( String folder : folders ) {
+                        if (folder.length() > 0) {
+                            try {
+                                channel.cd(folder);
+                            } catch (SftpException e) {
+                                channel.mkdir(folder);
+                                channel.cd(folder);
+                            }
                         }
                     }
+
+                    channel.put(bufferedInputStream, file.getName());
+                } finally {
+                    if (channel != null) {
+                        channel.disconnect();
+                    }
+
+                    SshSessionPool.getInstance().release(session);
                 }
 
-                channel.put(bufferedInputStream, file.getName());
-                channel.disconnect();
-                session.disconnect();
                 return file.getName();
             }
         }
@@ -237,43 +207,56 @@ public class SparkSubmitHelper {
     public String uploadFileToHDFS(Project project, String localFile, IHDIStorageAccount storageAccount, String defaultContainerName, String uploadFolderPath)
             throws Exception {
         final File file = new File(localFile);
+        final CallableSingleArg<Void, Long> callable = new CallableSingleArg<Void, Long>() {
+            @Override
+            public Void call(Long uploadedBytes) throws Exception {
+                double progress = ((double) uploadedBytes) / file.length();
+                return null;
+            }
+        };
+
         if(storageAccount.getAccountType() == StorageAccountTypeEnum.BLOB) {
-            try (FileInputStream fileInputStream = new FileInputStream(file)) {
-                try (BufferedInputStream bufferedInputStream = new BufferedInputStream(fileInputStream)) {
-                    final CallableSingleArg<Void, Long> callable = new CallableSingleArg<Void, Long>() {
-                        @Override
-                        public Void call(Long uploadedBytes) throws Exception {
-                            double progress = ((double) uploadedBytes) / file.length();
-                            return null;
-                        }
-                    };
-
-                    HDStorageAccount blobStorageAccount = (HDStorageAccount) storageAccount;
-                    BlobContainer defaultContainer = getSparkClusterDefaultContainer(blobStorageAccount, defaultContainerName);
-                    String path = String.format("SparkSubmission/%s/%s", uploadFolderPath, file.getName());
-                    String uploadedPath = String.format("wasb://%s@%s/%s", defaultContainerName, blobStorageAccount.getFullStorageBlobName(), path);
-
-                    HDInsightUtil.showInfoOnSubmissionMessageWindow(project,
-                            String.format("Info : Begin uploading file %s to Azure Blob Storage Account %s ...", localFile, uploadedPath));
-
-                    StorageClientSDKManager.getManager().uploadBlobFileContent(
-                            blobStorageAccount.getConnectionString(),
-                            defaultContainer,
-                            path,
-                            bufferedInputStream,
-                            callable,
-                            1024 * 1024,
-                            file.length());
-
-                    HDInsightUtil.showInfoOnSubmissionMessageWindow(project, String.format("Info : Submit file to azure blob '%s' successfully.", uploadedPath));
-                    return uploadedPath;
-                }
+            HDStorageAccount blobStorageAccount = (HDStorageAccount) storageAccount;
+            String path = String.format("SparkSubmission/%s/%s", uploadFolderPath, file.getName());
+            String uploadedPath = String.format("wasb://%s@%s/%s", defaultContainerName, blobStorageAccount.getFullStorageBlobName(), path);
+            boolean isContentAddressed = SparkArtifactIndex.isContentAddressed(uploadFolderPath);
+
+            if (isContentAddressed && SparkArtifactIndex.getInstance().isRecentlyUploaded(uploadedPath)) {
+                HDInsightUtil.showInfoOnSubmissionMessageWindow(project, String.format("Info : File %s is unchanged since uploaded to '%s', skip uploading.", localFile, uploadedPath));
+                return uploadedPath;
+            }
+
+            BlobContainer defaultContainer = getSparkClusterDefaultContainer(blobStorageAccount, defaultContainerName);
+
+            if (isContentAddressed && StorageClientSDKManager.getManager().getBlobFileLength(
+                    blobStorageAccount.getConnectionString(), defaultContainer, path) == file.length()) {
+                SparkArtifactIndex.getInstance().markUploaded(uploadedPath);
+                HDInsightUtil.showInfoOnSubmissionMessageWindow(project, String.format("Info : File %s is found in azure blob '%s', skip uploading.", localFile, uploadedPath));
+                return uploadedPath;
             }
+
+            HDInsightUtil.showInfoOnSubmissionMessageWindow(project,
+                    String.format("Info : Begin uploading file %s to Azure Blob Storage Account %s ...", localFile, uploadedPath));
+
+            StorageClientSDKManager.getManager().uploadBlobFileContent(
+                    blobStorageAccount.getConnectionString(),
+                    defaultContainer,
+                    path,
+                    file,
+                    callable,
+                    1024 * 1024);
+
+            if (isContentAddressed) {
+                SparkArtifactIndex.getInstance().markUploaded(uploadedPath);
+            }
+
+            HDInsightUtil.showInfoOnSubmissionMessageWindow(project, String.format("Info : Submit file to azure blob '%s' successfully.", uploadedPath));
+            return uploadedPath;
         } else if(storageAccount.getAccountType() == StorageAccountTypeEnum.ADLS) {
             String uploadPath = String.format("adl://%s.azuredatalakestore.net%s%s", storageAccount.getName(), storageAccount.getDefaultContainerOrRootPath(), "SparkSubmission");
             HDInsightUtil.showInfoOnSubmissionMessageWindow(project,
                     String.format("Info : Begin uploading file %s to Azure Datalake store %s ...", localFile, uploadPath));
-            String uploadedPath = StreamUtil.uploadArtifactToADLS(file, storageAccount, uploadFolderPath);
+            String uploadedPath = StreamUtil.uploadArtifactToADLS(file, storageAccount, uploadFolderPath, callable);
             HDInsightUtil.showInfoOnSubmissionMessageWindow(project,
                     String.format("Info : Submit file to Azure Datalake store '%s' successfully.", uploadedPath));
             return uploadedPath;
@@ -282,14 +265,11 @@ public class SparkSubmitHelper {
         }
     }
 
-    private int printoutJobLog(Project project, int id, int from_index, IClusterDetail clusterDetail) throws IOException {
-        HttpResponse httpResponse = SparkBatchSubmission.getInstance().getBatchJobFullLog( getLivyConnectionURL(clusterDetail), id);
-        sparkJobLog = new Gson().fromJson(httpResponse.getMessage(), new TypeToken<SparkJobLog>() {
-        }.getType());
+    private void printoutJobLogLine(Project project, String line, List<String> logLines) {
+        logLines.add(line);
 
         if (!HDInsightUtil.getSparkSubmissionToolWindowManager(project).getJobStatusManager().isApplicationGenerated()) {
-            String sparkLogs = Joiner.on("").join(sparkJobLog.getLog());
-            String applicationId = getApplicationIdFromYarnLog(sparkLogs);
+            String applicationId = getApplicationIdFromYarnLog(line);
             if (applicationId != null) {
                 HDInsightUtil.getSparkSubmissionToolWindowManager(project).setBrowserButtonState(true);
                 HDInsightUtil.getSparkSubmissionToolWindowManager(project).getJobStatusManager().setApplicationIdGenerated();
@@ -297,18 +277,9 @@ public class SparkSubmitHelper {
             }
         }
 
-        int counter = 0;
-        if (sparkJobLog.getLog().size() > 0) {
-            for (String line : sparkJobLog.getLog()) {
-                if (counter >= from_index && !StringHelper.isNullOrWhiteSpace(line)) {
-                    HDInsightUtil.getSparkSubmissionToolWindowManager(project).setInfo(line, true);
-                }
-
-                counter++;
-            }
+        if (!StringHelper.isNullOrWhiteSpace(line)) {
+            HDInsightUtil.getSparkSubmissionToolWindowManager(project).setInfo(line, true);
         }
-
-        return sparkJobLog.getTotal();
     }
 
     private BlobContainer getSparkClusterDefaultContainer(ClientStorageAccount storageAccount, String dealtContainerName) throws AzureCmdException {
@@ -322,11 +293,6 @@ public class SparkSubmitHelper {
         return null;
     }
 
-    private int getIntervalTime(int times) {
-        int interval = MIN_INTERVAL_TIME + times * INC_TIME;
-        return interval > MAX_INTERVAL_TIME ? MAX_INTERVAL_TIME : interval;
-    }
-
     private String getApplicationIdFromYarnLog(String yarnLog) {
         Pattern r = Pattern.compile(applicationIdPattern);
         Matcher m = r.matcher(yarnLog);
@@ -347,21 +313,11 @@ public class SparkSubmitHelper {
     public static String uploadFileToHDFS(@NotNull Project project, @NotNull IClusterDetail selectedClusterDetail, @NotNull String buildJarPath) throws Exception {
 
         HDInsightUtil.showInfoOnSubmissionMessageWindow(project, String.format("Info : Get target jar from %s.", buildJarPath));
-        final String uploadShortPath = getFormatPathByDate();
+        final String uploadShortPath = SparkArtifactIndex.getInstance().getUploadFolderPath(new File(buildJarPath));
         return SparkSubmitHelper.getInstance().uploadFileToHDFS(project, buildJarPath,
                 selectedClusterDetail.getStorageAccount(), selectedClusterDetail.getStorageAccount().getDefaultContainerOrRootPath(), uploadShortPath);
     }
 
-    private static String getFormatPathByDate() {
-        int year = Calendar.getInstance(TimeZone.getTimeZone("UTC")).get(Calendar.YEAR);
-        int month = Calendar.getInstance(TimeZone.getTimeZone("UTC")).get(Calendar.MONTH) + 1;
-        int day = Calendar.getInstance(TimeZone.getTimeZone("UTC")).get(Calendar.DAY_OF_MONTH);
-
-        String uniqueFolderId = UUID.randomUUID().toString();
-
-        return String.format("%04d/%02d/%02d/%s", year, month, day, uniqueFolderId);
-    }
-
     public static boolean isLocalArtifactPath(String path) {
         if (StringHelper.isNullOrWhiteSpace(path)) {
             return false;
@@ -222,7 +222,7 @@ public class RedisCacheExplorer extends BaseEditor implements RedisExplorerMvpVi
     @Override
     public void showContent(RedisValueData val) {
         RedisKeyType type = val.getKeyType();
-        lblTypeValue.setText(type.toString());
+        lblTypeValue.setText(val.getKeyTypeDescription());
         lblKeyValue.setText((String) lstKey.getSelectedValue());
         if (type.equals(RedisKeyType.STRING)) {
             if (val.getRowData().size() > 0 && val.getRowData().get(0).length > 0) {
@@ -43,6 +43,7 @@ import com.microsoft.intellij.helpers.UIHelperImpl;
 import com.microsoft.intellij.util.PluginUtil;
 import com.microsoft.tooling.msservices.components.DefaultLoader;
 import com.microsoft.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoft.tooling.msservices.helpers.azure.sdk.BlobItemPager;
 import com.microsoft.tooling.msservices.helpers.azure.sdk.StorageClientSDKManager;
 import com.microsoft.tooling.msservices.model.storage.BlobContainer;
 import com.microsoft.tooling.msservices.model.storage.BlobDirectory;
@@ -102,7 +103,9 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
     private Project project;
 
     private LinkedList<BlobDirectory> directoryQueue = new LinkedList<BlobDirectory>();
-    private List<BlobItem> blobItems;
+    private List<BlobItem> blobItems = new ArrayList<BlobItem>();
+    private volatile BlobItemPager blobItemPager;
+    private volatile boolean loadingPage = false;
 
     private ISubscriptionSelectionListener subscriptionListener;
     private FileEditorVirtualNode fileEditorVirtualNode;
@@ -146,6 +149,22 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
 
         fileEditorVirtualNode = createVirtualNode("");
 
+        final JScrollPane blobListScrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, blobListTable);
+
+        if (blobListScrollPane != null) {
+            blobListScrollPane.getVerticalScrollBar().addAdjustmentListener(new AdjustmentListener() {
+                @Override
+                public void adjustmentValueChanged(AdjustmentEvent adjustmentEvent) {
+                    BoundedRangeModel range = blobListScrollPane.getVerticalScrollBar().getModel();
+
+                    // Load the next page of blobs when scrolled to the last screen of the loaded rows
+                    if (range.getValue() + 2 * range.getExtent() >= range.getMaximum()) {
+                        loadNextPage();
+                    }
+                }
+            });
+        }
+
         blobListTable.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
             @Override
             public void valueChanged(ListSelectionEvent listSelectionEvent) {
@@ -320,18 +339,15 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
                         directoryQueue.addLast(StorageClientSDKManager.getManager().getRootDirectory(connectionString, blobContainer));
                     }
 
-                    blobItems = StorageClientSDKManager.getManager().getBlobItems(connectionString, directoryQueue.peekLast());
-
-                    if (!queryTextField.getText().isEmpty()) {
-                        for (int i = blobItems.size() - 1; i >= 0; i--) {
-                            BlobItem blobItem = blobItems.get(i);
-
-                            if (blobItem instanceof BlobFile && !blobItem.getName().startsWith(queryTextField.getText())) {
-                                blobItems.remove(i);
-                            }
-                        }
+                    if (blobItemPager != null) {
+                        blobItemPager.cancel();
                     }
 
+                    String query = queryTextField.getText();
+                    final BlobItemPager pager = StorageClientSDKManager.getManager().getBlobItemPager(connectionString,
+                            directoryQueue.peekLast(), query.isEmpty() ? null : query, BlobItemPager.DEFAULT_PAGE_SIZE, true);
+                    final List<BlobItem> firstPage = pager.nextPage();
+
                     ApplicationManager.getApplication().invokeLater(new Runnable() {
                         @Override
                         public void run() {
@@ -343,29 +359,9 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
                                 model.removeRow(0);
                             }
 
-                            for (BlobItem blobItem : blobItems) {
-                                if (blobItem instanceof BlobDirectory) {
-                                    model.addRow(new Object[]{
-                                            UIHelperImpl.loadIcon("storagefolder.png"),
-                                            blobItem.getName(),
-                                            "",
-                                            "",
-                                            "",
-                                            blobItem.getUri()
-                                    });
-                                } else {
-                                    BlobFile blobFile = (BlobFile) blobItem;
-
-                                    model.addRow(new String[]{
-                                            "",
-                                            blobFile.getName(),
-                                            UIHelperImpl.readableFileSize(blobFile.getSize()),
-                                            new SimpleDateFormat().format(blobFile.getLastModified().getTime()),
-                                            blobFile.getContentType(),
-                                            blobFile.getUri()
-                                    });
-                                }
-                            }
+                            blobItemPager = pager;
+                            blobItems = new ArrayList<BlobItem>();
+                            addBlobItems(firstPage);
 
                             setUIState(false);
 
@@ -380,6 +376,72 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
         });
     }
 
+    private void loadNextPage() {
+        final BlobItemPager pager = blobItemPager;
+
+        if (pager == null || loadingPage || !pager.hasNextPage()) {
+            return;
+        }
+
+        loadingPage = true;
+
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final List<BlobItem> page = pager.nextPage();
+
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Drop the page if the grid is refilled while loading it
+                            if (pager == blobItemPager) {
+                                addBlobItems(page);
+                            }
+
+                            loadingPage = false;
+                        }
+                    });
+                } catch (AzureCmdException ex) {
+                    loadingPage = false;
+
+                    String msg = "An error occurred while attempting to query blob list." + "\n" + String.format(message("webappExpMsg"), ex.getMessage());
+                    PluginUtil.displayErrorDialogAndLog(message("errTtl"), msg, ex);
+                }
+            }
+        });
+    }
+
+    private void addBlobItems(List<BlobItem> page) {
+        DefaultTableModel model = (DefaultTableModel) blobListTable.getModel();
+
+        for (BlobItem blobItem : page) {
+            if (blobItem instanceof BlobDirectory) {
+                model.addRow(new Object[]{
+                        UIHelperImpl.loadIcon("storagefolder.png"),
+                        blobItem.getName(),
+                        "",
+                        "",
+                        "",
+                        blobItem.getUri()
+                });
+            } else {
+                BlobFile blobFile = (BlobFile) blobItem;
+
+                model.addRow(new String[]{
+                        "",
+                        blobFile.getName(),
+                        UIHelperImpl.readableFileSize(blobFile.getSize()),
+                        new SimpleDateFormat().format(blobFile.getLastModified().getTime()),
+                        blobFile.getContentType(),
+                        blobFile.getUri()
+                });
+            }
+        }
+
+        blobItems.addAll(page);
+    }
+
     private void setUIState(boolean loading) {
         if (loading) {
             blobListTable.setEnabled(false);
@@ -524,7 +586,7 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
                         try {
                             StorageClientSDKManager.getManager().deleteBlobFile(connectionString, blobItem);
 
-                            if (blobItems.size() <= 1) {
+                            if (blobItems.size() <= 1 && !blobItemPager.hasNextPage()) {
                                 directoryQueue.clear();
                                 directoryQueue.addLast(StorageClientSDKManager.getManager().getRootDirectory(connectionString, blobContainer));
 
@@ -595,68 +657,61 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
                             }
                         }
 
-                        final BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(targetFile), 65536) {
-                            private long runningCount = 0;
-
+                        final CallableSingleArg<Void, Long> callable = new CallableSingleArg<Void, Long>() {
                             @Override
-                            public synchronized void write(@NotNull byte[] bytes, int i, int i1) throws IOException {
-                                super.write(bytes, i, i1);
-
-                                runningCount += i1;
+                            public Void call(Long downloadedBytes) throws Exception {
+                                double progress = (double) downloadedBytes / fileSelection.getSize();
 
-                                double progress = (double) runningCount / fileSelection.getSize();
                                 progressIndicator.setFraction(progress);
                                 progressIndicator.setText2(String.format("%s%% downloaded", (int) (progress * 100)));
+
+                                return null;
                             }
                         };
 
-                        try {
-                            Future<?> future = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    try {
-                                        StorageClientSDKManager.getManager().downloadBlobFileContent(connectionString, fileSelection, bufferedOutputStream);
+                        Future<?> future = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    StorageClientSDKManager.getManager().downloadBlobFileContent(connectionString, fileSelection, targetFile, callable);
 
-                                        if (open && targetFile.exists()) {
-                                            Desktop.getDesktop().open(targetFile);
-                                        }
-                                    } catch (AzureCmdException e) {
-                                        Throwable connectionFault = e.getCause().getCause();
-
-                                        progressIndicator.setText("Error downloading Blob");
-                                        progressIndicator.setText2((connectionFault instanceof SocketTimeoutException) ? "Connection timed out" : connectionFault.getMessage());
-                                    } catch (IOException ex) {
-                                        try {
-                                            final Process p;
-                                            Runtime runtime = Runtime.getRuntime();
-                                            p = runtime.exec(
-                                                    new String[]{"open", "-R", targetFile.getName()},
-                                                    null,
-                                                    targetFile.getParentFile());
-
-                                            InputStream errorStream = p.getErrorStream();
-                                            String errResponse = new String(IOUtils.readFully(errorStream, -1));
-
-                                            if (p.waitFor() != 0) {
-                                                throw new Exception(errResponse);
-                                            }
-                                        } catch (Exception e) {
-                                            progressIndicator.setText("Error openning file");
-                                            progressIndicator.setText2(ex.getMessage());
+                                    if (open && targetFile.exists()) {
+                                        Desktop.getDesktop().open(targetFile);
+                                    }
+                                } catch (AzureCmdException e) {
+                                    Throwable connectionFault = getConnectionFault(e);
+
+                                    progressIndicator.setText("Error downloading Blob");
+                                    progressIndicator.setText2((connectionFault instanceof SocketTimeoutException) ? "Connection timed out" : connectionFault.getMessage());
+                                } catch (IOException ex) {
+                                    try {
+                                        final Process p;
+                                        Runtime runtime = Runtime.getRuntime();
+                                        p = runtime.exec(
+                                                new String[]{"open", "-R", targetFile.getName()},
+                                                null,
+                                                targetFile.getParentFile());
+
+                                        InputStream errorStream = p.getErrorStream();
+                                        String errResponse = new String(IOUtils.readFully(errorStream, -1));
+
+                                        if (p.waitFor() != 0) {
+                                            throw new Exception(errResponse);
                                         }
+                                    } catch (Exception e) {
+                                        progressIndicator.setText("Error openning file");
+                                        progressIndicator.setText2(ex.getMessage());
                                     }
                                 }
-                            });
+                            }
+                        });
 
-                            while (!future.isDone()) {
-                                progressIndicator.checkCanceled();
+                        while (!future.isDone()) {
+                            progressIndicator.checkCanceled();
 
-                                if (progressIndicator.isCanceled()) {
-                                    future.cancel(true);
-                                }
+                            if (progressIndicator.isCanceled()) {
+                                future.cancel(true);
                             }
-                        } finally {
-                            bufferedOutputStream.close();
                         }
                     } catch (IOException e) {
                         PluginUtil.displayErrorDialogAndLog(message("errTtl"), "An error occurred while attempting to download Blob.", e);
@@ -666,6 +721,15 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
         }
     }
 
+    private static Throwable getConnectionFault(AzureCmdException e) {
+        // Transport errors are wrapped twice, the failures of the download itself (e.g. 412, MD5 mismatch) only once
+        Throwable cause = e.getCause();
+        if (cause == null) {
+            return e;
+        }
+        return cause.getCause() != null ? cause.getCause() : cause;
+    }
+
     private void uploadFile() {
         final UploadBlobFileForm form = new UploadBlobFileForm(project);
         form.setUploadSelected(new Runnable() {
@@ -697,7 +761,9 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
                 try {
                     final BlobDirectory blobDirectory = directoryQueue.peekLast();
 
-                    final BufferedInputStream bufferedInputStream = new BufferedInputStream(new FileInputStream(selectedFile));
+                    if (!selectedFile.isFile()) {
+                        throw new FileNotFoundException(selectedFile.getPath());
+                    }
 
                     progressIndicator.setIndeterminate(false);
                     progressIndicator.setText("Uploading blob...");
@@ -719,21 +785,13 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
                         Future<Void> future = ApplicationManager.getApplication().executeOnPooledThread(new Callable<Void>() {
                             @Override
                             public Void call() throws AzureCmdException {
-                                try {
-                                    StorageClientSDKManager.getManager().uploadBlobFileContent(
-                                            connectionString,
-                                            blobContainer,
-                                            path,
-                                            bufferedInputStream,
-                                            callable,
-                                            1024 * 1024,
-                                            selectedFile.length());
-                                } finally {
-                                    try {
-                                        bufferedInputStream.close();
-                                    } catch (IOException ignored) {
-                                    }
-                                }
+                                StorageClientSDKManager.getManager().uploadBlobFileContent(
+                                        connectionString,
+                                        blobContainer,
+                                        path,
+                                        selectedFile,
+                                        callable,
+                                        1024 * 1024);
 
                                 return null;
                             }
@@ -745,7 +803,6 @@ public class BlobExplorerFileEditor implements FileEditor, TelemetryProperties {
 
                             if (progressIndicator.isCanceled()) {
                                 future.cancel(true);
-                                bufferedInputStream.close();
 
                                 for (BlobItem blobItem : StorageClientSDKManager.getManager().getBlobItems(connectionString, blobDirectory)) {
                                     if (blobItem instanceof BlobFile && blobItem.getPath().equals(path)) {
@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.BlockListingFilter;
+import com.microsoft.azure.storage.blob.BlockSearchMode;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import com.microsoft.azure.storage.core.Base64;
+import com.microsoft.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Upload a local file into a block blob with several blocks in flight.
+ *
+ * The blocks are read from the file by position into reused direct buffers, and get the block IDs derived from the
+ * file and the block index. The uploaded blocks are recorded into a local journal, so that an interrupted upload of
+ * the same file to the same blob only sends the missing blocks and then commits the block list.
+ */
+final class BlobBlockUploader {
+    /**
+     * The blocks uploaded at the same time
+     */
+    private static final int UPLOAD_CONCURRENCY = 4;
+
+    private static final String JOURNAL_FOLDER = "azure-blob-upload";
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    @NotNull
+    private final CloudBlockBlob blob;
+    @NotNull
+    private final File file;
+    private final long blockSize;
+    @Nullable
+    private final CallableSingleArg<Void, Long> processBlock;
+
+    private long uploadedBytes = 0;
+
+    BlobBlockUploader(@NotNull CloudBlockBlob blob,
+                      @NotNull File file,
+                      long blockSize,
+                      @Nullable CallableSingleArg<Void, Long> processBlock) {
+        this.blob = blob;
+        this.file = file;
+        this.blockSize = blockSize;
+        this.processBlock = processBlock;
+    }
+
+    void upload() throws Exception {
+        long length = file.length();
+        // No block for an empty file, committing the empty block list creates an empty blob
+        int blockCount = (int) ((length + blockSize - 1) / blockSize);
+        String fingerprint = getFingerprint();
+        Path journal = getJournalPath(fingerprint);
+        Set<Integer> uploadedBlocks = loadUploadedBlocks(journal, fingerprint);
+
+        List<BlockEntry> blockEntries = new ArrayList<>(blockCount);
+        List<Integer> pendingBlocks = new ArrayList<>();
+
+        for (int index = 0; index < blockCount; index++) {
+            BlockEntry entry = new BlockEntry(getBlockId(fingerprint, index), BlockSearchMode.UNCOMMITTED);
+            entry.setSize(getBlockLength(index, length));
+            blockEntries.add(entry);
+
+            if (uploadedBlocks.contains(index)) {
+                uploadedBytes += entry.getSize();
+            } else {
+                pendingBlocks.add(index);
+            }
+        }
+
+        reportProgress(0);
+
+        if (!pendingBlocks.isEmpty()) {
+            uploadBlocks(pendingBlocks, blockEntries, journal);
+        }
+
+        blob.commitBlockList(blockEntries);
+        Files.deleteIfExists(journal);
+    }
+
+    private void uploadBlocks(@NotNull List<Integer> pendingBlocks,
+                              @NotNull List<BlockEntry> blockEntries,
+                              @NotNull Path journal) throws Exception {
+        int concurrency = Math.min(UPLOAD_CONCURRENCY, pendingBlocks.size());
+        BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            buffers.add(ByteBuffer.allocateDirect((int) blockSize));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                new ThreadFactoryBuilder().setNameFormat("blob-block-upload-%d").setDaemon(true).build());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<Future<Void>> futures = new ArrayList<>();
+
+            for (int index : pendingBlocks) {
+                BlockEntry entry = blockEntries.get(index);
+
+                futures.add(executor.submit(() -> {
+                    ByteBuffer buffer = buffers.take();
+
+                    try {
+                        readBlock(channel, buffer, index * blockSize, (int) entry.getSize());
+                        blob.uploadBlock(entry.getId(), new ByteBufferInputStream(buffer), entry.getSize());
+                    } finally {
+                        buffers.add(buffer);
+                    }
+
+                    recordUploadedBlock(journal, index);
+                    reportProgress(entry.getSize());
+
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    futures.forEach(pending -> pending.cancel(true));
+
+                    throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void readBlock(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position, int size)
+            throws IOException {
+        buffer.clear();
+        buffer.limit(size);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("The file is truncated while uploading");
+            }
+        }
+
+        buffer.flip();
+    }
+
+    private long getBlockLength(int index, long length) {
+        return Math.min(blockSize, length - index * blockSize);
+    }
+
+    /*
+     * The progress callback is called in order with the increasing uploaded bytes, even the blocks finish in parallel
+     */
+    private synchronized void reportProgress(long blockBytes) throws Exception {
+        uploadedBytes += blockBytes;
+
+        if (processBlock != null) {
+            processBlock.call(uploadedBytes);
+        }
+    }
+
+    /*
+     * The blocks are the same only if the file content, the block size and the target blob are all unchanged
+     */
+    @NotNull
+    private String getFingerprint() {
+        String source = String.join("|",
+                blob.getUri().toString(),
+                file.getAbsolutePath(),
+                String.valueOf(file.length()),
+                String.valueOf(file.lastModified()),
+                String.valueOf(blockSize));
+
+        return Hashing.sha256().hashString(source, StandardCharsets.UTF_8).toString().substring(0, 32);
+    }
+
+    @NotNull
+    private static String getBlockId(@NotNull String fingerprint, int index) {
+        // All block IDs of a blob must have the same length
+        return Base64.encode(String.format("%s-%08d", fingerprint, index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @NotNull
+    private static Path getJournalPath(@NotNull String fingerprint) {
+        return Paths.get(System.getProperty("java.io.tmpdir"), JOURNAL_FOLDER, fingerprint + JOURNAL_SUFFIX);
+    }
+
+    /*
+     * Get the blocks both recorded in the journal and still kept by the service as uncommitted blocks
+     */
+    @NotNull
+    private Set<Integer> loadUploadedBlocks(@NotNull Path journal, @NotNull String fingerprint) throws Exception {
+        Set<Integer> uploadedBlocks = new HashSet<>();
+
+        if (!Files.isRegularFile(journal)) {
+            Files.createDirectories(journal.getParent());
+            return uploadedBlocks;
+        }
+
+        Set<Integer> journaled = Files.readAllLines(journal, StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .filter(line -> line.matches("\\d+"))
+                .map(Integer::valueOf)
+                .collect(Collectors.toSet());
+
+        if (journaled.isEmpty()) {
+            return uploadedBlocks;
+        }
+
+        Set<String> uncommittedIds;
+        try {
+            uncommittedIds = blob.downloadBlockList(BlockListingFilter.UNCOMMITTED, null, null, null).stream()
+                    .map(BlockEntry::getId)
+                    .collect(Collectors.toSet());
+        } catch (StorageException ex) {
+            if (ex.getHttpStatusCode() != 404) {
+                throw ex;
+            }
+
+            uncommittedIds = new HashSet<>();
+        }
+
+        for (int index : journaled) {
+            if (uncommittedIds.contains(getBlockId(fingerprint, index))) {
+                uploadedBlocks.add(index);
+            }
+        }
+
+        return uploadedBlocks;
+    }
+
+    private static synchronized void recordUploadedBlock(@NotNull Path journal, int index) throws IOException {
+        Files.write(journal,
+                (index + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * The input stream over the content of a buffer, mark and reset are supported for the request retrying
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        @NotNull
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(@NotNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NotNull byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.reset();
+        }
+    }
+}
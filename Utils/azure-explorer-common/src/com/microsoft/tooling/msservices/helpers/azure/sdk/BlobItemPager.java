@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.azure.storage.ResultContinuation;
+import com.microsoft.azure.storage.ResultSegment;
+import com.microsoft.azure.storage.blob.BlobListingDetails;
+import com.microsoft.azure.storage.blob.CloudBlobDirectory;
+import com.microsoft.azure.storage.blob.ListBlobItem;
+import com.microsoft.tooling.msservices.model.storage.BlobFile;
+import com.microsoft.tooling.msservices.model.storage.BlobItem;
+import com.microsoft.azuretools.azurecommons.helpers.AzureCmdException;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The blob items of a directory got page by page with the listing continuation token.
+ *
+ * Only the current page is kept by the pager, the caller decides which pages to keep. With prefetch enabled, the
+ * next page is requested in background once a page is returned, so that it's likely ready when the caller scrolls
+ * to it.
+ *
+ * The file name filter is applied on the listed items rather than sent as the listing prefix, so that all the sub
+ * directories are still shown while the files are filtered.
+ */
+public class BlobItemPager {
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("blob-list-prefetch-%d").setDaemon(true).build());
+
+    @NotNull
+    private final CloudBlobDirectory directory;
+    @NotNull
+    private final String containerName;
+    @NotNull
+    private final String delimiter;
+    @Nullable
+    private final String fileNamePrefix;
+    private final int pageSize;
+    private final boolean prefetch;
+
+    private boolean started = false;
+    @Nullable
+    private ResultContinuation continuation;
+    @Nullable
+    private Future<ResultSegment<ListBlobItem>> prefetched;
+
+    BlobItemPager(@NotNull CloudBlobDirectory directory,
+                  @NotNull String containerName,
+                  @NotNull String delimiter,
+                  @Nullable String fileNamePrefix,
+                  int pageSize,
+                  boolean prefetch) {
+        this.directory = directory;
+        this.containerName = containerName;
+        this.delimiter = delimiter;
+        this.fileNamePrefix = fileNamePrefix;
+        this.pageSize = pageSize;
+        this.prefetch = prefetch;
+    }
+
+    public synchronized boolean hasNextPage() {
+        return !started || continuation != null;
+    }
+
+    /**
+     * Get the next page of the blob items
+     *
+     * @return the items of the next page, empty if there is no more page
+     */
+    @NotNull
+    public synchronized List<BlobItem> nextPage() throws AzureCmdException {
+        List<BlobItem> page = new ArrayList<>();
+
+        try {
+            // The service could return an empty segment with a continuation token, go on until there is any item
+            while (page.isEmpty() && hasNextPage()) {
+                ResultSegment<ListBlobItem> segment = prefetched != null ? prefetched.get() : listSegment(continuation);
+
+                started = true;
+                prefetched = null;
+                continuation = segment.getHasMoreResults() ? segment.getContinuationToken() : null;
+
+                for (ListBlobItem item : segment.getResults()) {
+                    BlobItem blobItem = StorageClientSDKManager.toBlobItem(item, containerName, delimiter);
+
+                    if (blobItem != null && isShown(blobItem)) {
+                        page.add(blobItem);
+                    }
+                }
+            }
+
+            if (prefetch && continuation != null) {
+                final ResultContinuation token = continuation;
+                prefetched = PREFETCH_EXECUTOR.submit(() -> listSegment(token));
+            }
+
+            return page;
+        } catch (ExecutionException ex) {
+            throw new AzureCmdException("Error retrieving the Blob Item list", ex.getCause());
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the Blob Item list", t);
+        }
+    }
+
+    /**
+     * Stop the prefetching of the next page, for the pager won't be used anymore
+     */
+    public synchronized void cancel() {
+        if (prefetched != null) {
+            prefetched.cancel(true);
+            prefetched = null;
+        }
+
+        continuation = null;
+        started = true;
+    }
+
+    private boolean isShown(@NotNull BlobItem blobItem) {
+        return fileNamePrefix == null || !(blobItem instanceof BlobFile) || blobItem.getName().startsWith(fileNamePrefix);
+    }
+
+    @NotNull
+    private ResultSegment<ListBlobItem> listSegment(@Nullable ResultContinuation token) throws Exception {
+        return directory.listBlobsSegmented(null, false, EnumSet.noneOf(BlobListingDetails.class), pageSize,
+                token, null, null);
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.blob.BlobProperties;
+import com.microsoft.azure.storage.blob.CloudBlob;
+import com.microsoft.azure.storage.core.Base64;
+import com.microsoft.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Download a blob into a local file with several ranges in flight.
+ *
+ * The target file is pre-sized to the blob length, and each range is written into the file at its own offset, so
+ * the ranges could finish in any order. All the ranges are requested with the ETag got at the beginning, a blob
+ * changed while downloading fails the download instead of mixing two versions. The whole file is verified with the
+ * blob Content-MD5 if there is one.
+ */
+final class BlobRangeDownloader {
+    /**
+     * The ranges downloaded at the same time
+     */
+    private static final int DOWNLOAD_CONCURRENCY = 4;
+
+    /**
+     * The default bytes of one range request
+     */
+    static final long DEFAULT_RANGE_SIZE = 4 * 1024 * 1024;
+
+    @NotNull
+    private final CloudBlob blob;
+    @NotNull
+    private final File file;
+    private final long rangeSize;
+    @Nullable
+    private final CallableSingleArg<Void, Long> processBytes;
+
+    private long downloadedBytes = 0;
+
+    BlobRangeDownloader(@NotNull CloudBlob blob,
+                        @NotNull File file,
+                        long rangeSize,
+                        @Nullable CallableSingleArg<Void, Long> processBytes) {
+        this.blob = blob;
+        this.file = file;
+        this.rangeSize = rangeSize;
+        this.processBytes = processBytes;
+    }
+
+    void download() throws Exception {
+        blob.downloadAttributes();
+
+        BlobProperties properties = blob.getProperties();
+        long length = properties.getLength();
+        AccessCondition sameVersion = AccessCondition.generateIfMatchCondition(properties.getEtag());
+
+        boolean succeeded = false;
+        try {
+            try (RandomAccessFile target = new RandomAccessFile(file, "rw")) {
+                target.setLength(length);
+
+                if (length > 0) {
+                    downloadRanges(target.getChannel(), length, sameVersion);
+                }
+
+                target.getChannel().force(false);
+            }
+
+            verifyContentMD5(properties.getContentMD5());
+            succeeded = true;
+        } finally {
+            if (!succeeded) {
+                // Don't leave a pre-sized file with holes as if it were downloaded
+                file.delete();
+            }
+        }
+    }
+
+    private void downloadRanges(@NotNull FileChannel channel, long length, @NotNull AccessCondition sameVersion)
+            throws Exception {
+        int rangeCount = (int) ((length + rangeSize - 1) / rangeSize);
+        int concurrency = Math.min(DOWNLOAD_CONCURRENCY, rangeCount);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                new ThreadFactoryBuilder().setNameFormat("blob-range-download-%d").setDaemon(true).build());
+
+        try {
+            List<Future<Void>> futures = new ArrayList<>(rangeCount);
+
+            for (int index = 0; index < rangeCount; index++) {
+                long offset = index * rangeSize;
+                long count = Math.min(rangeSize, length - offset);
+
+                futures.add(executor.submit(() -> {
+                    blob.downloadRange(offset, count, new FileRangeOutputStream(channel, offset), sameVersion,
+                            null, null);
+
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    futures.forEach(pending -> pending.cancel(true));
+
+                    throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                } catch (InterruptedException ex) {
+                    futures.forEach(pending -> pending.cancel(true));
+
+                    throw ex;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void verifyContentMD5(@Nullable String contentMD5) throws IOException {
+        if (contentMD5 == null || contentMD5.isEmpty()) {
+            return;
+        }
+
+        String actualMD5 = Base64.encode(Files.asByteSource(file).hash(Hashing.md5()).asBytes());
+
+        if (!contentMD5.equals(actualMD5)) {
+            throw new IOException(String.format("The downloaded content MD5 %s doesn't match the blob Content-MD5 %s",
+                    actualMD5, contentMD5));
+        }
+    }
+
+    /*
+     * The progress callback is called in order with the increasing downloaded bytes, even the ranges are written in
+     * parallel
+     */
+    private synchronized void reportProgress(long bytes) throws IOException {
+        downloadedBytes += bytes;
+
+        if (processBytes != null) {
+            try {
+                processBytes.call(downloadedBytes);
+            } catch (Exception ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    /**
+     * The output stream writing into the file from the range offset, the channel is shared by all ranges since the
+     * positional writes don't change the channel position
+     */
+    private final class FileRangeOutputStream extends OutputStream {
+        @NotNull
+        private final FileChannel channel;
+        private long position;
+
+        FileRangeOutputStream(@NotNull FileChannel channel, long offset) {
+            this.channel = channel;
+            this.position = offset;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(@NotNull byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+
+            reportProgress(length);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.microsoft.azure.management.storage.StorageAccount;
+import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.blob.CloudBlobClient;
+import com.microsoft.azure.storage.queue.CloudQueueClient;
+import com.microsoft.azure.storage.table.CloudTableClient;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+
+import java.net.URISyntaxException;
+import java.security.InvalidKeyException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parsed storage accounts and their service clients, shared by the storage explorer calls.
+ *
+ * The accounts are keyed by the connection string, which has both the account endpoints and the key, so a
+ * regenerated key always gets a new account. The connection string of an Azure storage account needs a management
+ * call to list the keys, it's cached by the resource ID until the account is invalidated or the entry expires.
+ */
+final class StorageClientCache {
+    private static final int MAX_ACCOUNTS = 32;
+
+    /**
+     * The duration for an unused parsed account (with its clients) to be dropped
+     */
+    private static final long ACCOUNT_EXPIRE_MINUTES = 30;
+
+    /**
+     * The duration for a connection string to be got again with the latest account keys
+     */
+    private static final long CONNECTION_STRING_EXPIRE_MINUTES = 10;
+
+    private static final StorageClientCache instance = new StorageClientCache();
+
+    private final LoadingCache<String, CachedAccount> accounts = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ACCOUNTS)
+            .expireAfterAccess(ACCOUNT_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .build(new CacheLoader<String, CachedAccount>() {
+                @Override
+                public CachedAccount load(String connectionString) throws Exception {
+                    return new CachedAccount(CloudStorageAccount.parse(connectionString));
+                }
+            });
+
+    private final Cache<String, String> connectionStrings = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ACCOUNTS)
+            .expireAfterWrite(CONNECTION_STRING_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    private StorageClientCache() {
+    }
+
+    @NotNull
+    static StorageClientCache getInstance() {
+        return instance;
+    }
+
+    @NotNull
+    CloudStorageAccount getAccount(@NotNull String connectionString) throws URISyntaxException, InvalidKeyException {
+        return getCachedAccount(connectionString).account;
+    }
+
+    @NotNull
+    CloudBlobClient getBlobClient(@NotNull String connectionString) throws URISyntaxException, InvalidKeyException {
+        return getCachedAccount(connectionString).blobClient.get();
+    }
+
+    @NotNull
+    CloudQueueClient getQueueClient(@NotNull String connectionString) throws URISyntaxException, InvalidKeyException {
+        return getCachedAccount(connectionString).queueClient.get();
+    }
+
+    @NotNull
+    CloudTableClient getTableClient(@NotNull String connectionString) throws URISyntaxException, InvalidKeyException {
+        return getCachedAccount(connectionString).tableClient.get();
+    }
+
+    @NotNull
+    String getConnectionString(@NotNull StorageAccount storageAccount, @NotNull Callable<String> loader) {
+        try {
+            return connectionStrings.get(storageAccount.id(), loader);
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Drop the connection string of the storage account and its clients, for the account keys could be regenerated
+     */
+    void invalidate(@NotNull StorageAccount storageAccount) {
+        String connectionString = connectionStrings.getIfPresent(storageAccount.id());
+
+        connectionStrings.invalidate(storageAccount.id());
+
+        if (connectionString != null) {
+            accounts.invalidate(connectionString);
+        }
+    }
+
+    @NotNull
+    private CachedAccount getCachedAccount(@NotNull String connectionString)
+            throws URISyntaxException, InvalidKeyException {
+        try {
+            return accounts.get(connectionString);
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            }
+
+            if (cause instanceof InvalidKeyException) {
+                throw (InvalidKeyException) cause;
+            }
+
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * The account with its clients created on first use, the clients are thread-safe and keep the default request
+     * options (retry policy and timeouts) for all calls
+     */
+    private static final class CachedAccount {
+        @NotNull
+        private final CloudStorageAccount account;
+        @NotNull
+        private final Supplier<CloudBlobClient> blobClient;
+        @NotNull
+        private final Supplier<CloudQueueClient> queueClient;
+        @NotNull
+        private final Supplier<CloudTableClient> tableClient;
+
+        CachedAccount(@NotNull CloudStorageAccount account) {
+            this.account = account;
+            this.blobClient = Suppliers.memoize(account::createCloudBlobClient);
+            this.queueClient = Suppliers.memoize(account::createCloudQueueClient);
+            this.tableClient = Suppliers.memoize(account::createCloudTableClient);
+        }
+    }
+}
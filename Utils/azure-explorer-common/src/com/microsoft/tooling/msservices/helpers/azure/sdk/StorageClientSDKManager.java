@@ -50,12 +50,14 @@ import com.microsoft.azuretools.azurecommons.helpers.Nullable;
 import com.microsoft.azuretools.utils.StorageAccoutUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.security.InvalidKeyException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
 public class StorageClientSDKManager {
     private static StorageClientSDKManager apiManager;
@@ -234,53 +236,10 @@ public class StorageClientSDKManager {
             CloudBlobDirectory directory = container.getDirectoryReference(blobDirectory.getPath());
 
             for (ListBlobItem item : directory.listBlobs()) {
-                String uri = item.getUri() != null ? item.getUri().toString() : "";
-
-                if (item instanceof CloudBlobDirectory) {
-                    CloudBlobDirectory subDirectory = (CloudBlobDirectory) item;
-
-                    String name = extractBlobItemName(subDirectory.getPrefix(), delimiter);
-                    String path = Strings.nullToEmpty(subDirectory.getPrefix());
-
-                    biList.add(new BlobDirectory(name, uri, containerName, path));
-                } else if (item instanceof CloudBlob) {
-                    CloudBlob blob = (CloudBlob) item;
-
-                    String name = extractBlobItemName(blob.getName(), delimiter);
-                    String path = Strings.nullToEmpty(blob.getName());
-                    String type = "";
-                    String cacheControlHeader = "";
-                    String contentEncoding = "";
-                    String contentLanguage = "";
-                    String contentType = "";
-                    String contentMD5Header = "";
-                    String eTag = "";
-                    Calendar lastModified = new GregorianCalendar();
-                    long size = 0;
-
-                    BlobProperties properties = blob.getProperties();
-
-                    if (properties != null) {
-                        if (properties.getBlobType() != null) {
-                            type = properties.getBlobType().toString();
-                        }
-
-                        cacheControlHeader = Strings.nullToEmpty(properties.getCacheControl());
-                        contentEncoding = Strings.nullToEmpty(properties.getContentEncoding());
-                        contentLanguage = Strings.nullToEmpty(properties.getContentLanguage());
-                        contentType = Strings.nullToEmpty(properties.getContentType());
-                        contentMD5Header = Strings.nullToEmpty(properties.getContentMD5());
-                        eTag = Strings.nullToEmpty(properties.getEtag());
-
-                        if (properties.getLastModified() != null) {
-                            lastModified.setTime(properties.getLastModified());
-                        }
-
-                        size = properties.getLength();
-                    }
+                BlobItem blobItem = toBlobItem(item, containerName, delimiter);
 
-                    biList.add(new BlobFile(name, uri, containerName, path, type, cacheControlHeader, contentEncoding,
-                            contentLanguage, contentType, contentMD5Header, eTag, lastModified, size));
+                if (blobItem != null) {
+                    biList.add(blobItem);
                 }
             }
 
@@ -290,6 +249,35 @@ public class StorageClientSDKManager {
         }
     }
 
+    /**
+     * List the blob items of the directory page by page instead of all at once
+     *
+     * @param fileNamePrefix only the files with the name starting with it are listed, the directories are always
+     *                       listed, null for all items
+     * @param pageSize the max items of a page
+     * @param prefetch true to request the next page in background once a page is got
+     */
+    @NotNull
+    public BlobItemPager getBlobItemPager(@NotNull String connectionString,
+                                          @NotNull BlobDirectory blobDirectory,
+                                          @Nullable String fileNamePrefix,
+                                          int pageSize,
+                                          boolean prefetch)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(connectionString);
+            String containerName = blobDirectory.getContainerName();
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+            CloudBlobDirectory directory = container.getDirectoryReference(blobDirectory.getPath());
+
+            return new BlobItemPager(directory, containerName, client.getDirectoryDelimiter(), fileNamePrefix, pageSize,
+                    prefetch);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the Blob Item list", t);
+        }
+    }
+
     @NotNull
     public BlobDirectory createBlobDirectory(@NotNull StorageAccount storageAccount,
                                              @NotNull BlobDirectory parentBlobDirectory,
@@ -399,6 +387,65 @@ public class StorageClientSDKManager {
         }
     }
 
+    /**
+     * Upload the local file into the blob file with several blocks in parallel. The upload interrupted is resumed
+     * from the blocks already uploaded when it's called again for the same file and blob file.
+     *
+     * @param processBlock the progress callback with the uploaded bytes
+     * @param maxBlockSize the size of each block
+     */
+    public void uploadBlobFileContent(@NotNull String connectionString,
+                                      @NotNull BlobContainer blobContainer,
+                                      @NotNull String filePath,
+                                      @NotNull File file,
+                                      CallableSingleArg<Void, Long> processBlock,
+                                      long maxBlockSize)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(connectionString);
+            String containerName = blobContainer.getName();
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+            final CloudBlockBlob blob = container.getBlockBlobReference(filePath);
+
+            new BlobBlockUploader(blob, file, maxBlockSize, processBlock).upload();
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error uploading the Blob File content", t);
+        }
+    }
+
+    /**
+     * Get the length of the blob file
+     *
+     * @return the length in bytes, -1 for the blob file doesn't exist
+     */
+    public long getBlobFileLength(@NotNull String connectionString,
+                                  @NotNull BlobContainer blobContainer,
+                                  @NotNull String filePath)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(connectionString);
+            String containerName = blobContainer.getName();
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+            final CloudBlockBlob blob = container.getBlockBlobReference(filePath);
+
+            try {
+                blob.downloadAttributes();
+            } catch (StorageException e) {
+                if (e.getHttpStatusCode() == 404) {
+                    return -1;
+                }
+
+                throw e;
+            }
+
+            return blob.getProperties().getLength();
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error getting the Blob File properties", t);
+        }
+    }
+
     public void downloadBlobFileContent(@NotNull String connectionString,
                                         @NotNull BlobFile blobFile,
                                         @NotNull OutputStream content)
@@ -417,6 +464,30 @@ public class StorageClientSDKManager {
         }
     }
 
+    /**
+     * Download the blob file into the local file, with the ranges of the blob downloaded in parallel
+     *
+     * @param processBytes the callback with the downloaded bytes so far
+     */
+    public void downloadBlobFileContent(@NotNull String connectionString,
+                                        @NotNull BlobFile blobFile,
+                                        @NotNull File file,
+                                        @Nullable CallableSingleArg<Void, Long> processBytes)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(connectionString);
+            String containerName = blobFile.getContainerName();
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+
+            CloudBlob blob = getCloudBlob(container, blobFile);
+
+            new BlobRangeDownloader(blob, file, BlobRangeDownloader.DEFAULT_RANGE_SIZE, processBytes).download();
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error downloading the Blob File content", t);
+        }
+    }
+
     @NotNull
     public List<Queue> getQueues(@NotNull StorageAccount storageAccount)
             throws AzureCmdException {
@@ -665,6 +736,38 @@ public class StorageClientSDKManager {
         }
     }
 
+    /**
+     * Query the table entities page by page, with the lighter minimal metadata payload
+     *
+     * @param filter the query filter, empty for all entities
+     * @param columns the properties to get besides the keys and timestamp, null for all properties
+     * @param pageSize the max entities of a page
+     */
+    @NotNull
+    public TableEntityPager getTableEntityPager(@NotNull StorageAccount storageAccount, @NotNull Table table,
+                                                @NotNull String filter, @Nullable List<String> columns, int pageSize)
+            throws AzureCmdException {
+        try {
+            CloudTableClient client = getCloudTableClient(storageAccount);
+            String tableName = table.getName();
+            CloudTable cloudTable = client.getTableReference(tableName);
+
+            TableQuery<DynamicTableEntity> tableQuery = TableQuery.from(DynamicTableEntity.class).take(pageSize);
+
+            if (!filter.isEmpty()) {
+                tableQuery.where(filter);
+            }
+
+            if (columns != null) {
+                tableQuery.select(columns.toArray(new String[columns.size()]));
+            }
+
+            return new TableEntityPager(cloudTable, tableName, tableQuery);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the Table Entity list", t);
+        }
+    }
+
     @NotNull
     public TableEntity createTableEntity(@NotNull StorageAccount storageAccount, @NotNull String tableName,
                                          @NotNull String partitionKey, @NotNull String rowKey,
@@ -727,10 +830,23 @@ public class StorageClientSDKManager {
     }
 
     @NotNull
-    public static String getConnectionString(StorageAccount storageAccount) {
-        String accountName = storageAccount.name();
-        String key = storageAccount.getKeys().get(0).value();
-        return StorageAccoutUtils.getConnectionString(accountName, key);
+    public static String getConnectionString(final StorageAccount storageAccount) {
+        // Getting the keys is a management call, reuse the connection string until the account is invalidated
+        return StorageClientCache.getInstance().getConnectionString(storageAccount, new Callable<String>() {
+            @Override
+            public String call() {
+                String accountName = storageAccount.name();
+                String key = storageAccount.getKeys().get(0).value();
+                return StorageAccoutUtils.getConnectionString(accountName, key);
+            }
+        });
+    }
+
+    /**
+     * Drop the cached connection string and clients of the storage account, to pick up the regenerated keys
+     */
+    public static void invalidateStorageAccount(@NotNull StorageAccount storageAccount) {
+        StorageClientCache.getInstance().invalidate(storageAccount);
     }
 
     public static String getEndpointSuffix() {
@@ -739,43 +855,35 @@ public class StorageClientSDKManager {
 
     @NotNull
     public static CloudStorageAccount getCloudStorageAccount(@NotNull String connectionString) throws URISyntaxException, InvalidKeyException {
-        return CloudStorageAccount.parse(connectionString);
+        return StorageClientCache.getInstance().getAccount(connectionString);
     }
 
     @NotNull
     private static CloudBlobClient getCloudBlobClient(@NotNull ClientStorageAccount storageAccount)
             throws Exception {
-        CloudStorageAccount csa = getCloudStorageAccount(storageAccount.getConnectionString());
-
-        return csa.createCloudBlobClient();
+        return StorageClientCache.getInstance().getBlobClient(storageAccount.getConnectionString());
     }
 
     @NotNull
     private static CloudBlobClient getCloudBlobClient(@NotNull StorageAccount storageAccount) throws Exception {
-        CloudStorageAccount csa = getCloudStorageAccount(getConnectionString(storageAccount));
-        return csa.createCloudBlobClient();
+        return StorageClientCache.getInstance().getBlobClient(getConnectionString(storageAccount));
     }
 
     @NotNull
     private static CloudBlobClient getCloudBlobClient(@NotNull String connectionString) throws Exception {
-        CloudStorageAccount csa = getCloudStorageAccount(connectionString);
-        return csa.createCloudBlobClient();
+        return StorageClientCache.getInstance().getBlobClient(connectionString);
     }
 
     @NotNull
     private static CloudQueueClient getCloudQueueClient(@NotNull StorageAccount storageAccount)
             throws Exception {
-        CloudStorageAccount csa = getCloudStorageAccount(getConnectionString(storageAccount));
-
-        return csa.createCloudQueueClient();
+        return StorageClientCache.getInstance().getQueueClient(getConnectionString(storageAccount));
     }
 
     @NotNull
     private static CloudTableClient getCloudTableClient(@NotNull StorageAccount storageAccount)
             throws Exception {
-        CloudStorageAccount csa = getCloudStorageAccount(getConnectionString(storageAccount));
-
-        return csa.createCloudTableClient();
+        return StorageClientCache.getInstance().getTableClient(getConnectionString(storageAccount));
     }
 
     @NotNull
@@ -807,6 +915,61 @@ public class StorageClientSDKManager {
         return blob;
     }
 
+    @Nullable
+    static BlobItem toBlobItem(@NotNull ListBlobItem item, @NotNull String containerName, @NotNull String delimiter)
+            throws URISyntaxException {
+        String uri = item.getUri() != null ? item.getUri().toString() : "";
+
+        if (item instanceof CloudBlobDirectory) {
+            CloudBlobDirectory subDirectory = (CloudBlobDirectory) item;
+
+            String name = extractBlobItemName(subDirectory.getPrefix(), delimiter);
+            String path = Strings.nullToEmpty(subDirectory.getPrefix());
+
+            return new BlobDirectory(name, uri, containerName, path);
+        } else if (item instanceof CloudBlob) {
+            CloudBlob blob = (CloudBlob) item;
+
+            String name = extractBlobItemName(blob.getName(), delimiter);
+            String path = Strings.nullToEmpty(blob.getName());
+            String type = "";
+            String cacheControlHeader = "";
+            String contentEncoding = "";
+            String contentLanguage = "";
+            String contentType = "";
+            String contentMD5Header = "";
+            String eTag = "";
+            Calendar lastModified = new GregorianCalendar();
+            long size = 0;
+
+            BlobProperties properties = blob.getProperties();
+
+            if (properties != null) {
+                if (properties.getBlobType() != null) {
+                    type = properties.getBlobType().toString();
+                }
+
+                cacheControlHeader = Strings.nullToEmpty(properties.getCacheControl());
+                contentEncoding = Strings.nullToEmpty(properties.getContentEncoding());
+                contentLanguage = Strings.nullToEmpty(properties.getContentLanguage());
+                contentType = Strings.nullToEmpty(properties.getContentType());
+                contentMD5Header = Strings.nullToEmpty(properties.getContentMD5());
+                eTag = Strings.nullToEmpty(properties.getEtag());
+
+                if (properties.getLastModified() != null) {
+                    lastModified.setTime(properties.getLastModified());
+                }
+
+                size = properties.getLength();
+            }
+
+            return new BlobFile(name, uri, containerName, path, type, cacheControlHeader, contentEncoding,
+                    contentLanguage, contentType, contentMD5Header, eTag, lastModified, size);
+        }
+
+        return null;
+    }
+
     @NotNull
     private static BlobFile reloadBlob(@NotNull CloudBlob blob, @NotNull String containerName, @NotNull BlobFile blobFile)
             throws StorageException, URISyntaxException {
@@ -881,20 +1044,31 @@ public class StorageClientSDKManager {
     @NotNull
     private static TableEntity getTableEntity(@NotNull String tableName,
                                               @NotNull DynamicTableEntity dte) {
-        String partitionKey = Strings.nullToEmpty(dte.getPartitionKey());
-        String rowKey = Strings.nullToEmpty(dte.getRowKey());
-        String eTag = Strings.nullToEmpty(dte.getEtag());
+        return getTableEntity(tableName, dte.getPartitionKey(), dte.getRowKey(), dte.getTimestamp(),
+                dte.getProperties(), dte.getEtag());
+    }
+
+    @NotNull
+    static TableEntity getTableEntity(@NotNull String tableName,
+                                      @Nullable String partitionKeyValue,
+                                      @Nullable String rowKeyValue,
+                                      @Nullable Date timestampValue,
+                                      @Nullable Map<String, EntityProperty> entityProperties,
+                                      @Nullable String eTagValue) {
+        String partitionKey = Strings.nullToEmpty(partitionKeyValue);
+        String rowKey = Strings.nullToEmpty(rowKeyValue);
+        String eTag = Strings.nullToEmpty(eTagValue);
 
         Calendar timestamp = new GregorianCalendar();
 
-        if (dte.getTimestamp() != null) {
-            timestamp.setTime(dte.getTimestamp());
+        if (timestampValue != null) {
+            timestamp.setTime(timestampValue);
         }
 
         Map<String, Property> properties = new HashMap<String, Property>();
 
-        if (dte.getProperties() != null) {
-            for (Entry<String, EntityProperty> entry : dte.getProperties().entrySet()) {
+        if (entityProperties != null) {
+            for (Entry<String, EntityProperty> entry : entityProperties.entrySet()) {
                 if (entry.getKey() != null && entry.getValue() != null) {
                     String key = entry.getKey();
                     Property property;
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoft.azure.storage.ResultContinuation;
+import com.microsoft.azure.storage.ResultSegment;
+import com.microsoft.azure.storage.table.CloudTable;
+import com.microsoft.azure.storage.table.EntityResolver;
+import com.microsoft.azure.storage.table.TablePayloadFormat;
+import com.microsoft.azure.storage.table.TableQuery;
+import com.microsoft.azure.storage.table.TableRequestOptions;
+import com.microsoft.tooling.msservices.model.storage.TableEntity;
+import com.microsoft.azuretools.azurecommons.helpers.AzureCmdException;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The entities of a table query got page by page with the query continuation token.
+ *
+ * The pages are requested with the minimal metadata payload, which still has the ETag and the types that can't be
+ * inferred from the JSON values (Int64, DateTime, Guid and Binary), so the entities keep their exact property types
+ * for editing. The entities are resolved into the model directly without the intermediate SDK entities.
+ */
+public class TableEntityPager {
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    @NotNull
+    private final CloudTable cloudTable;
+    @NotNull
+    private final TableQuery<?> tableQuery;
+    @NotNull
+    private final EntityResolver<TableEntity> resolver;
+
+    private boolean started = false;
+    @Nullable
+    private ResultContinuation continuation;
+
+    TableEntityPager(@NotNull CloudTable cloudTable, @NotNull final String tableName, @NotNull TableQuery<?> tableQuery) {
+        this.cloudTable = cloudTable;
+        this.tableQuery = tableQuery;
+        this.resolver = (partitionKey, rowKey, timestamp, properties, eTag) ->
+                StorageClientSDKManager.getTableEntity(tableName, partitionKey, rowKey, timestamp, properties, eTag);
+    }
+
+    public synchronized boolean hasNextPage() {
+        return !started || continuation != null;
+    }
+
+    /**
+     * Get the next page of the table entities
+     *
+     * @return the entities of the next page, empty if there is no more page
+     */
+    @NotNull
+    public synchronized List<TableEntity> nextPage() throws AzureCmdException {
+        List<TableEntity> page = new ArrayList<>();
+
+        try {
+            TableRequestOptions tro = new TableRequestOptions();
+            tro.setTablePayloadFormat(TablePayloadFormat.Json);
+
+            // The service could return an empty segment with a continuation token, go on until there is any entity
+            while (page.isEmpty() && hasNextPage()) {
+                ResultSegment<TableEntity> segment = cloudTable.executeSegmented(tableQuery, resolver, continuation,
+                        tro, null);
+
+                started = true;
+                continuation = segment.getHasMoreResults() ? segment.getContinuationToken() : null;
+                page.addAll(segment.getResults());
+            }
+
+            return page;
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the Table Entity list", t);
+        }
+    }
+}
@@ -28,17 +28,21 @@ import com.microsoft.azuretools.azurecommons.helpers.RedisKeyType;
 import com.microsoft.azuretools.core.mvp.model.rediscache.RedisConnectionPools;
 import com.microsoft.azuretools.core.mvp.model.rediscache.RedisExplorerMvpModel;
 import com.microsoft.azuretools.core.mvp.ui.base.MvpPresenter;
+import com.microsoft.azuretools.core.mvp.ui.rediscache.RedisKeyInfo;
 import com.microsoft.azuretools.core.mvp.ui.rediscache.RedisScanResult;
 import com.microsoft.azuretools.core.mvp.ui.rediscache.RedisValueData;
 import com.microsoft.tooling.msservices.components.DefaultLoader;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import redis.clients.jedis.ScanResult;
 import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisDataException;
 import rx.Observable;
 
 public class RedisExplorerPresenter<V extends RedisExplorerMvpView> extends MvpPresenter<V> {
@@ -46,6 +50,10 @@ public class RedisExplorerPresenter<V extends RedisExplorerMvpView> extends MvpP
     private String sid;
     private String id;
 
+    // Key information of the last scan page, to save the TYPE round trip and show the TTL and size when a key in
+    // the page is selected
+    private volatile ScannedKeys scannedKeys = ScannedKeys.EMPTY;
+
     private static final String DEFAULT_SCAN_PATTERN = "*";
 
     private static final String CANNOT_GET_REDIS_INFO = "Cannot get Redis Cache's information.";
@@ -108,18 +116,36 @@ public class RedisExplorerPresenter<V extends RedisExplorerMvpView> extends MvpP
             return RedisExplorerMvpModel.getInstance().scanKeys(sid, id, db, cursor, pattern);
         })
         .subscribeOn(getSchedulerProvider().io())
-        .subscribe(result -> {
+        .subscribe(keys -> {
+            RedisScanResult result = new RedisScanResult(keys);
             DefaultLoader.getIdeHelper().invokeLater(() -> {
                 if (isViewDetached()) {
                     return;
                 }
-                getMvpView().showScanResult(new RedisScanResult(result));
+                getMvpView().showScanResult(result);
             });
+            loadKeysInfo(db, keys.getResult());
         }, e -> {
             errorHandler(CANNOT_GET_REDIS_INFO, (Exception) e);
         });
     }
 
+    /**
+     * Load the key information of the scan page after the keys are shown, to save the TYPE round trip when a key
+     * in the page is selected. Selecting a key works without it, so the failure is ignored.
+     */
+    private void loadKeysInfo(int db, List<String> keys) {
+        scannedKeys = ScannedKeys.EMPTY;
+        Observable.fromCallable(() -> {
+            return RedisExplorerMvpModel.getInstance().getKeysInfo(sid, id, db, keys);
+        })
+        .subscribeOn(getSchedulerProvider().io())
+        .subscribe(keysInfo -> {
+            scannedKeys = new ScannedKeys(db, keysInfo);
+        }, e -> {
+        });
+    }
+
     public void onGetKeyAndValue(int db, String key) {
         Observable.fromCallable(() -> {
             boolean isExist = RedisExplorerMvpModel.getInstance().checkKeyExistance(sid, id, db, key);
@@ -161,7 +187,22 @@ public class RedisExplorerPresenter<V extends RedisExplorerMvpView> extends MvpP
      */
     public void onkeySelect(int db, String key) {
         Observable.fromCallable(() -> {
-            return getValueByKey(db, key);
+            RedisKeyInfo keyInfo = scannedKeys.get(db, key);
+            RedisValueData value = null;
+            if (keyInfo != null && keyInfo.getKeyType() != RedisKeyType.NONE) {
+                try {
+                    value = getValueByKey(db, key, keyInfo.getKeyType().name());
+                } catch (JedisDataException e) {
+                    // The key type is changed since scanned, get it again
+                }
+            }
+            if (value == null) {
+                value = getValueByKey(db, key);
+            }
+            if (value != null) {
+                value.setKeyInfo(keyInfo);
+            }
+            return value;
         })
         .subscribeOn(getSchedulerProvider().io())
         .subscribe(result -> {
@@ -196,7 +237,10 @@ public class RedisExplorerPresenter<V extends RedisExplorerMvpView> extends MvpP
     }
 
     private RedisValueData getValueByKey(int db, String key) throws Exception {
-        String type = RedisExplorerMvpModel.getInstance().getKeyType(sid, id, db, key).toUpperCase();
+        return getValueByKey(db, key, RedisExplorerMvpModel.getInstance().getKeyType(sid, id, db, key).toUpperCase());
+    }
+
+    private RedisValueData getValueByKey(int db, String key, String type) throws Exception {
         ArrayList<String[]> columnData = new ArrayList<String[]>();
         switch (RedisKeyType.valueOf(type)) {
             case STRING:
@@ -242,4 +286,23 @@ public class RedisExplorerPresenter<V extends RedisExplorerMvpView> extends MvpP
             getMvpView().onErrorWithException(msg, e);
         });
     }
+
+    /**
+     * The key information of a scan page with the database scanned, replaced as a whole.
+     */
+    private static final class ScannedKeys {
+        private static final ScannedKeys EMPTY = new ScannedKeys(-1, Collections.emptyMap());
+
+        private final int db;
+        private final Map<String, RedisKeyInfo> keysInfo;
+
+        private ScannedKeys(int db, Map<String, RedisKeyInfo> keysInfo) {
+            this.db = db;
+            this.keysInfo = Collections.unmodifiableMap(keysInfo);
+        }
+
+        private RedisKeyInfo get(int db, String key) {
+            return this.db == db ? keysInfo.get(key) : null;
+        }
+    }
 }
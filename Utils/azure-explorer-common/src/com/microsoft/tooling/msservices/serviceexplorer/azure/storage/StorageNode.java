@@ -82,6 +82,7 @@ public class StorageNode extends RefreshableNode implements TelemetryProperties
                 }
                 Azure azure = azureManager.getAzure(subscriptionId);
                 azure.storageAccounts().deleteByResourceGroup(storageAccount.resourceGroupName(), storageAccount.name());
+                StorageClientSDKManager.invalidateStorageAccount(storageAccount);
                 DefaultLoader.getIdeHelper().invokeLater(new Runnable() {
                     @Override
                     public void run() {
@@ -100,6 +101,12 @@ public class StorageNode extends RefreshableNode implements TelemetryProperties
         }
     }
 
+    @Override
+    protected void refreshFromAzure() throws Exception {
+        // The account keys could have been regenerated
+        StorageClientSDKManager.invalidateStorageAccount(storageAccount);
+    }
+
     @Override
     protected void refreshItems() throws AzureCmdException {
         List<BlobContainer> containerList = StorageClientSDKManager.getManager()
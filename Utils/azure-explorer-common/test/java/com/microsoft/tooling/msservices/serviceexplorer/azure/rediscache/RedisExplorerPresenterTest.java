@@ -20,10 +20,12 @@
 
 package com.microsoft.tooling.msservices.serviceexplorer.azure.rediscache;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map.Entry;
 
@@ -31,6 +33,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
@@ -41,6 +44,8 @@ import com.microsoft.azuretools.core.mvp.model.rediscache.RedisConnectionPools;
 import com.microsoft.azuretools.core.mvp.model.rediscache.RedisExplorerMvpModel;
 import com.microsoft.azuretools.core.mvp.ui.base.SchedulerProviderFactory;
 import com.microsoft.azuretools.core.mvp.ui.base.TestSchedulerProvider;
+import com.microsoft.azuretools.azurecommons.helpers.RedisKeyType;
+import com.microsoft.azuretools.core.mvp.ui.rediscache.RedisKeyInfo;
 import com.microsoft.azuretools.core.mvp.ui.rediscache.RedisScanResult;
 import com.microsoft.azuretools.core.mvp.ui.rediscache.RedisValueData;
 import com.microsoft.tooling.msservices.components.DefaultLoader;
@@ -185,6 +190,25 @@ public class RedisExplorerPresenterTest {
         verify(redisExplorerMvpViewMock).showContent(Mockito.any(RedisValueData.class));
     }
 
+    @Test
+    public void testOnkeySelectWithScannedKeyInfo() throws Exception {
+        when(stringScanResultMock.getResult()).thenReturn(Collections.singletonList(MOCK_KEY));
+        when(redisExplorerMvpModelMock.scanKeys(MOCK_SUBSCRIPTION, MOCK_ID, MOCK_DB, MOCK_CURSOR, MOCK_PATTERN)).thenReturn(stringScanResultMock);
+        when(redisExplorerMvpModelMock.getKeysInfo(MOCK_SUBSCRIPTION, MOCK_ID, MOCK_DB, Collections.singletonList(MOCK_KEY)))
+                .thenReturn(Collections.singletonMap(MOCK_KEY, new RedisKeyInfo(MOCK_KEY, RedisKeyType.STRING, 30, 5)));
+        when(redisExplorerMvpModelMock.getStringValue(MOCK_SUBSCRIPTION, MOCK_ID, MOCK_DB, MOCK_KEY)).thenReturn("value");
+
+        redisExplorerPresenter.onKeyList(MOCK_DB, MOCK_CURSOR, MOCK_PATTERN);
+        testSchedulerProvider.triggerActions();
+        redisExplorerPresenter.onkeySelect(MOCK_DB, MOCK_KEY);
+        testSchedulerProvider.triggerActions();
+
+        ArgumentCaptor<RedisValueData> value = ArgumentCaptor.forClass(RedisValueData.class);
+        verify(redisExplorerMvpViewMock).showContent(value.capture());
+        verify(redisExplorerMvpModelMock, Mockito.never()).getKeyType(MOCK_SUBSCRIPTION, MOCK_ID, MOCK_DB, MOCK_KEY);
+        assertEquals("STRING (TTL: 30s, Size: 5)", value.getValue().getKeyTypeDescription());
+    }
+
     @Test
     public void testOnGetKeyAndValue() throws Exception {
         when(redisExplorerMvpModelMock.checkKeyExistance(MOCK_SUBSCRIPTION, MOCK_ID, MOCK_DB, MOCK_KEY)).thenReturn(true);
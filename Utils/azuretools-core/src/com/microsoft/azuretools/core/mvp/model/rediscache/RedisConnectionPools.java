@@ -25,22 +25,33 @@ package com.microsoft.azuretools.core.mvp.model.rediscache;
 import com.microsoft.azure.management.redis.RedisCache;
 
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectFactory;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
 public class RedisConnectionPools {
 
     private static final int TIMEOUT = 500;
-    private static final int MAX_CONNECTIONS = 1;
+    private static final int DEFAULT_MAX_POOLS = 8;
+    private static final int DEFAULT_DB = 0;
     private static final String GANNOT_GET_RESID = "Cannot get Redis Cache from Azure.";
 
-    private LinkedHashMap<String, JedisPool> pools;
+    // One pool per cache, the pooled connections keep the database last selected
+    private final ConcurrentHashMap<String, PoolEntry> pools;
+    // Connection settings of the caches, to rebuild the evicted pools without querying Azure again
+    private final ConcurrentHashMap<String, RedisEndpoint> endpoints;
+    private volatile int maxPools = DEFAULT_MAX_POOLS;
 
-    private RedisConnectionPools() {
-        this.pools = new LinkedHashMap<String, JedisPool>(MAX_CONNECTIONS);
+    RedisConnectionPools() {
+        this.pools = new ConcurrentHashMap<String, PoolEntry>();
+        this.endpoints = new ConcurrentHashMap<String, RedisEndpoint>();
     }
 
     private static final class RedisConnectionFactoryHolder {
@@ -52,55 +63,209 @@ public class RedisConnectionPools {
     }
 
     /**
-     * Get Jedis connection.
+     * Get Jedis connection of the default database.
+     *
+     * @param sid
+     *            subscription id of Redis Cache
+     * @param id
+     *            resource id of Redis Cache
+     * @return jedis connection
+     * @throws IOException Error getting the Redis Cache
+     */
+    public Jedis getJedis(String sid, String id) throws Exception  {
+        return getJedis(sid, id, DEFAULT_DB);
+    }
+
+    /**
+     * Get Jedis connection with the database selected, SELECT is only sent when the pooled connection is on
+     * another database.
      *
      * @param sid
      *            subscription id of Redis Cache
      * @param id
      *            resource id of Redis Cache
+     * @param db
+     *            index of Redis Cache database
      * @return jedis connection
      * @throws IOException Error getting the Redis Cache
      */
-    public synchronized Jedis getJedis(String sid, String id) throws Exception  {
-        if (pools.get(id) == null) {
-            if (pools.size() == MAX_CONNECTIONS) {
-                releasePool(pools.keySet().iterator().next());
+    public Jedis getJedis(String sid, String id, int db) throws Exception  {
+        PoolEntry entry = pools.get(id);
+        if (entry == null) {
+            entry = createPool(sid, id);
+        }
+        entry.lastAccessTime = System.nanoTime();
+        Jedis jedis;
+        try {
+            jedis = entry.pool.getResource();
+        } catch (JedisConnectionException e) {
+            if (!entry.pool.isClosed()) {
+                // The access key could have been regenerated, get the settings from Azure again
+                releasePool(id);
             }
-            connect(sid, id);
+            jedis = createPool(sid, id).pool.getResource();
         }
-        return pools.get(id).getResource();
+        return selectDb(jedis, db);
     }
 
     /**
-     * Destroy the jedisPool.
+     * Set the maximum number of the pools kept, the least recently used ones are destroyed when exceeded.
+     *
+     * @param maxPools
+     *            the maximum number of the pools, at least 1
+     */
+    public synchronized void setMaxPools(int maxPools) {
+        this.maxPools = Math.max(1, maxPools);
+        while (pools.size() > this.maxPools) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    public int getMaxPools() {
+        return maxPools;
+    }
+
+    /**
+     * Destroy the jedisPool of the Redis Cache.
      *
      * @param id
-     *            id of the jedisPool which needs to be destroyed
+     *            id of the Redis Cache whose jedisPool needs to be destroyed
      */
     public synchronized void releasePool(String id) {
-        if (pools.containsKey(id)) {
-            JedisPool jedisPool = pools.get(id);
-            if (jedisPool != null) {
-                jedisPool.destroy();
-            }
-            pools.remove(id);
+        destroy(id);
+        endpoints.remove(id);
+    }
+
+    private static Jedis selectDb(Jedis jedis, int db) {
+        Long currentDb = jedis.getDB();
+        if (currentDb != null && currentDb == db) {
+            return jedis;
+        }
+        try {
+            jedis.select(db);
+            return jedis;
+        } catch (RuntimeException e) {
+            jedis.close();
+            throw e;
+        }
+    }
+
+    private synchronized PoolEntry createPool(String sid, String id) throws Exception {
+        PoolEntry entry = pools.get(id);
+        if (entry != null && !entry.pool.isClosed()) {
+            return entry;
+        }
+
+        RedisEndpoint endpoint = endpoints.get(id);
+        if (endpoint == null) {
+            endpoint = getEndpoint(sid, id);
+            endpoints.put(id, endpoint);
+        }
+
+        while (pools.size() >= maxPools) {
+            evictLeastRecentlyUsed();
+        }
+
+        // create connection pool according to redis setting
+        JedisPool pool = createJedisPool(endpoint.hostName, endpoint.port, endpoint.password);
+        entry = new PoolEntry(pool);
+        pools.put(id, entry);
+        return entry;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        pools.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().lastAccessTime))
+                .ifPresent(entry -> destroy(entry.getKey()));
+    }
+
+    private void destroy(String id) {
+        PoolEntry entry = pools.remove(id);
+        if (entry != null) {
+            entry.pool.destroy();
         }
     }
 
-    private void connect(String sid, String id) throws Exception {
-        RedisCache redisCache = AzureRedisMvpModel.getInstance().getRedisCache(sid, id);
+    JedisPool createJedisPool(String hostName, int port, String password) {
+        return new DatabaseKeepingJedisPool(hostName, port, password);
+    }
+
+    RedisCache getRedisCache(String sid, String id) throws Exception {
+        return AzureRedisMvpModel.getInstance().getRedisCache(sid, id);
+    }
+
+    private RedisEndpoint getEndpoint(String sid, String id) throws Exception {
+        RedisCache redisCache = getRedisCache(sid, id);
 
         if (redisCache == null) {
             throw new Exception(GANNOT_GET_RESID);
         }
 
         // get redis setting
-        String hostName = redisCache.hostName();
-        String password = redisCache.keys().primaryKey();
-        int port = redisCache.sslPort();
+        return new RedisEndpoint(redisCache.hostName(), redisCache.sslPort(), redisCache.keys().primaryKey());
+    }
 
-        // create connection pool according to redis setting
-        JedisPool pool = new JedisPool(new JedisPoolConfig(), hostName, port, TIMEOUT, password, true);
-        pools.put(id, pool);
+    private static final class RedisEndpoint {
+        private final String hostName;
+        private final int port;
+        private final String password;
+
+        private RedisEndpoint(String hostName, int port, String password) {
+            this.hostName = hostName;
+            this.port = port;
+            this.password = password;
+        }
+    }
+
+    private static final class PoolEntry {
+        private final JedisPool pool;
+        private volatile long lastAccessTime = System.nanoTime();
+
+        private PoolEntry(JedisPool pool) {
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Jedis pool whose connections are not switched back to the default database when borrowed.
+     */
+    static class DatabaseKeepingJedisPool extends JedisPool {
+        DatabaseKeepingJedisPool(String hostName, int port, String password) {
+            super(new JedisPoolConfig(), hostName, port, TIMEOUT, password, DEFAULT_DB, true);
+            initPool(new JedisPoolConfig(), new DatabaseKeepingFactory(internalPool.getFactory()));
+        }
+    }
+
+    private static final class DatabaseKeepingFactory implements PooledObjectFactory<Jedis> {
+        private final PooledObjectFactory<Jedis> factory;
+
+        private DatabaseKeepingFactory(PooledObjectFactory<Jedis> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public PooledObject<Jedis> makeObject() throws Exception {
+            return factory.makeObject();
+        }
+
+        @Override
+        public void destroyObject(PooledObject<Jedis> pooledJedis) throws Exception {
+            factory.destroyObject(pooledJedis);
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<Jedis> pooledJedis) {
+            return factory.validateObject(pooledJedis);
+        }
+
+        @Override
+        public void activateObject(PooledObject<Jedis> pooledJedis) throws Exception {
+            // Keep the database selected by the last borrower, getJedis selects it only when needed
+        }
+
+        @Override
+        public void passivateObject(PooledObject<Jedis> pooledJedis) throws Exception {
+            factory.passivateObject(pooledJedis);
+        }
     }
 }
@@ -22,11 +22,18 @@
 
 package com.microsoft.azuretools.core.mvp.model.rediscache;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import com.microsoft.azuretools.azurecommons.helpers.RedisKeyType;
+import com.microsoft.azuretools.core.mvp.ui.rediscache.RedisKeyInfo;
+
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.ScanParams;
 import redis.clients.jedis.ScanResult;
 import redis.clients.jedis.Tuple;
@@ -87,8 +94,7 @@ public class RedisExplorerMvpModel {
     }
 
     public boolean checkKeyExistance(String sid, String id, int db, String key) throws Exception {
-        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id)) {
-            jedis.select(db);
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
             return jedis.exists(key);
         }
     }
@@ -111,12 +117,71 @@ public class RedisExplorerMvpModel {
      * 
      */
     public ScanResult<String> scanKeys(String sid, String id, int db, String cursor, String pattern) throws Exception {
-        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id)) {
-            jedis.select(db);
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
             return jedis.scan(cursor, new ScanParams().match(pattern).count(DEFAULT_KEY_COUNT));
         }
     }
 
+    /**
+     * Get the type, TTL and size of the keys in a scan page. The commands are pipelined on one connection, so that
+     * the whole page costs two round trips (types and TTLs first, then the sizes depending on the types) instead of
+     * several round trips per key.
+     * 
+     * @param sid
+     *            subscription id of Redis Cache
+     * @param id
+     *            resource id of Redis Cache
+     * @param db
+     *            index of Redis Cache database
+     * @param keys
+     *            names of the keys, such as the result of scanKeys
+     * @return the key information in the order of the given keys
+     * @throws Exception
+     */
+    public Map<String, RedisKeyInfo> getKeysInfo(String sid, String id, int db, List<String> keys) throws Exception {
+        Map<String, RedisKeyInfo> keysInfo = new LinkedHashMap<>();
+        if (keys == null || keys.isEmpty()) {
+            return keysInfo;
+        }
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
+
+            Pipeline pipeline = jedis.pipelined();
+            Map<String, Response<String>> types = new LinkedHashMap<>();
+            Map<String, Response<Long>> ttls = new LinkedHashMap<>();
+            for (String key : keys) {
+                types.put(key, pipeline.type(key));
+                ttls.put(key, pipeline.ttl(key));
+            }
+            pipeline.sync();
+
+            pipeline = jedis.pipelined();
+            Map<String, RedisKeyType> keyTypes = new LinkedHashMap<>();
+            Map<String, Response<Long>> sizes = new LinkedHashMap<>();
+            for (String key : keys) {
+                RedisKeyType keyType = toKeyType(types.get(key).get());
+                keyTypes.put(key, keyType);
+                Response<Long> size = requestSize(pipeline, key, keyType);
+                if (size != null) {
+                    sizes.put(key, size);
+                }
+            }
+            pipeline.sync();
+
+            for (String key : keys) {
+                long size = RedisKeyInfo.UNKNOWN_SIZE;
+                try {
+                    if (sizes.containsKey(key)) {
+                        size = sizes.get(key).get();
+                    }
+                } catch (JedisException e) {
+                    // The key is changed to another type between the two round trips
+                }
+                keysInfo.put(key, new RedisKeyInfo(key, keyTypes.get(key), ttls.get(key).get(), size));
+            }
+            return keysInfo;
+        }
+    }
+
     /**
      * Get the type of the given key.
      * 
@@ -132,8 +197,7 @@ public class RedisExplorerMvpModel {
      * @throws Exception
      */
     public String getKeyType(String sid, String id, int db, String key) throws Exception {
-        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id)) {
-            jedis.select(db);
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
             return jedis.type(key);
         }
     }
@@ -153,8 +217,7 @@ public class RedisExplorerMvpModel {
      * @throws Exception
      */
     public String getStringValue(String sid, String id, int db, String key) throws Exception {
-        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id)) {
-            jedis.select(db);
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
             return jedis.get(key);
         }
     }
@@ -174,8 +237,7 @@ public class RedisExplorerMvpModel {
      * @throws Exception
      */
     public List<String> getListValue(String sid, String id, int db, String key) throws Exception {
-        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id)) {
-            jedis.select(db);
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
             long listLength = jedis.llen(key);
             return jedis.lrange(key, DEFAULT_RANGE_START,
                     listLength < DEFAULT_VAL_COUNT ? listLength : DEFAULT_VAL_COUNT);
@@ -199,8 +261,7 @@ public class RedisExplorerMvpModel {
      * @throws Exception
      */
     public ScanResult<String> getSetValue(String sid, String id, int db, String key, String cursor) throws Exception {
-        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id)) {
-            jedis.select(db);
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
             return jedis.sscan(key, cursor, new ScanParams().count(DEFAULT_VAL_COUNT));
         }
     }
@@ -220,8 +281,7 @@ public class RedisExplorerMvpModel {
      * @throws Exception
      */
     public Set<Tuple> getZSetValue(String sid, String id, int db, String key) throws Exception {
-        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id)) {
-            jedis.select(db);
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
             long zsetLength = jedis.zcard(key);
             return jedis.zrangeWithScores(key, DEFAULT_RANGE_START,
                     zsetLength < DEFAULT_VAL_COUNT ? zsetLength : DEFAULT_VAL_COUNT);
@@ -246,12 +306,37 @@ public class RedisExplorerMvpModel {
      */
     public ScanResult<Entry<String, String>> getHashValue(String sid, String id, int db, String key, String cursor)
             throws Exception {
-        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id)) {
-            jedis.select(db);
+        try (Jedis jedis = RedisConnectionPools.getInstance().getJedis(sid, id, db)) {
             return jedis.hscan(key, cursor, new ScanParams().count(DEFAULT_VAL_COUNT));
         }
     }
     
+    private static RedisKeyType toKeyType(String type) {
+        try {
+            return RedisKeyType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            // Such as stream type which the explorer doesn't support
+            return RedisKeyType.NONE;
+        }
+    }
+
+    private static Response<Long> requestSize(Pipeline pipeline, String key, RedisKeyType keyType) {
+        switch (keyType) {
+            case STRING:
+                return pipeline.strlen(key);
+            case LIST:
+                return pipeline.llen(key);
+            case SET:
+                return pipeline.scard(key);
+            case ZSET:
+                return pipeline.zcard(key);
+            case HASH:
+                return pipeline.hlen(key);
+            default:
+                return null;
+        }
+    }
+
     private boolean canConnect(Jedis jedis, int index) {
         try {
             jedis.select(index);
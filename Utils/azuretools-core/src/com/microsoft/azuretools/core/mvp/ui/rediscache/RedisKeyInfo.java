@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * 
+ * All rights reserved.
+ * 
+ * MIT License
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.microsoft.azuretools.core.mvp.ui.rediscache;
+
+import com.microsoft.azuretools.azurecommons.helpers.RedisKeyType;
+
+public class RedisKeyInfo {
+
+    public static final long NO_EXPIRE = -1;
+    public static final long UNKNOWN_SIZE = -1;
+
+    private String key;
+    private RedisKeyType keyType;
+    private long ttl;
+    private long size;
+
+    /**
+     * Constructor for RedisKeyInfo class.
+     * 
+     * @param key
+     *            name of the key
+     * @param keyType
+     *            the Redis Cache's key type, NONE if the key doesn't exist
+     * @param ttl
+     *            the remaining time to live in seconds, NO_EXPIRE if the key has no expiration
+     * @param size
+     *            the string length or the element count of the key, UNKNOWN_SIZE if not available
+     */
+    public RedisKeyInfo(String key, RedisKeyType keyType, long ttl, long size) {
+        this.key = key;
+        this.keyType = keyType;
+        this.ttl = ttl;
+        this.size = size;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public RedisKeyType getKeyType() {
+        return keyType;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
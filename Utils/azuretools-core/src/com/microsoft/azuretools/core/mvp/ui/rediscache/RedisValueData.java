@@ -30,6 +30,7 @@ public class RedisValueData {
 
     private ArrayList<String[]> rowData;
     private RedisKeyType keyType;
+    private RedisKeyInfo keyInfo;
 
     /**
      * Constructor for RedisValueData class.
@@ -53,4 +54,29 @@ public class RedisValueData {
     public RedisKeyType getKeyType() {
         return keyType;
     }
+
+    /**
+     * Get the key information got by scanning, null if not available.
+     */
+    public RedisKeyInfo getKeyInfo() {
+        return keyInfo;
+    }
+
+    public void setKeyInfo(RedisKeyInfo keyInfo) {
+        this.keyInfo = keyInfo;
+    }
+
+    /**
+     * Get the key type to show, with the TTL and size got by scanning if available.
+     * 
+     * @return the key type description, such as "HASH (TTL: 30s, Size: 5)"
+     */
+    public String getKeyTypeDescription() {
+        if (keyInfo == null || keyInfo.getKeyType() != keyType) {
+            return keyType.toString();
+        }
+        String ttl = keyInfo.getTtl() < 0 ? "No Expiration" : keyInfo.getTtl() + "s";
+        String size = keyInfo.getSize() == RedisKeyInfo.UNKNOWN_SIZE ? "Unknown" : String.valueOf(keyInfo.getSize());
+        return String.format("%s (TTL: %s, Size: %s)", keyType, ttl, size);
+    }
 }
@@ -22,39 +22,37 @@
 
 package com.microsoft.azuretools.core.mvp.model.rediscache;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
-import org.junit.runner.RunWith;
 import org.mockito.Mock;
-import org.powermock.api.mockito.PowerMockito;
-import org.powermock.core.classloader.annotations.PrepareForTest;
-import org.powermock.modules.junit4.PowerMockRunner;
+import org.mockito.MockitoAnnotations;
 
 import com.microsoft.azure.management.redis.RedisAccessKeys;
 import com.microsoft.azure.management.redis.RedisCache;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
-@RunWith(PowerMockRunner.class)
-@PrepareForTest({
-    AzureRedisMvpModel.class,
-    RedisConnectionPools.class,
-})
 public class RedisConnectionPoolsTest {
     
     @Mock
     private Jedis jedisMock;
     
-    @Mock
-    private JedisPool jedisPoolMock;
-    
     @Mock
     private AzureRedisMvpModel azureRedisMvpModelMock;
     
@@ -64,47 +62,121 @@ public class RedisConnectionPoolsTest {
     @Mock
     private RedisAccessKeys redisAccessKeysMock;
     
+    private final List<JedisPool> createdPools = new ArrayList<>();
+    
+    private RedisConnectionPools pools;
+    
     private static final String MOCK_SUBSCRIPTION = "00000000-0000-0000-0000-000000000000";
     private static final String MOCK_REDIS_ID = "test-id";
+    private static final String MOCK_OTHER_REDIS_ID = "other-test-id";
     private static final String MOCK_RETURN_STRING = "RedisTest";
     private static final int MOCK_PORT = 6380;
     
     @Before
     public void setUp() throws Exception {
-        PowerMockito.mockStatic(AzureRedisMvpModel.class);
-        when(AzureRedisMvpModel.getInstance()).thenReturn(azureRedisMvpModelMock);
+        MockitoAnnotations.initMocks(this);
         when(azureRedisMvpModelMock.getRedisCache(anyString(), anyString())).thenReturn(redisCacheMock);
         
         when(redisCacheMock.hostName()).thenReturn(MOCK_RETURN_STRING);
         when(redisCacheMock.keys()).thenReturn(redisAccessKeysMock);
         when(redisAccessKeysMock.primaryKey()).thenReturn(MOCK_RETURN_STRING);
         when(redisCacheMock.sslPort()).thenReturn(MOCK_PORT);
-        when(jedisPoolMock.getResource()).thenReturn(jedisMock);
-        PowerMockito.whenNew(JedisPool.class).withAnyArguments().thenReturn(jedisPoolMock);
+        
+        pools = new RedisConnectionPools() {
+            @Override
+            JedisPool createJedisPool(String hostName, int port, String password) {
+                JedisPool jedisPoolMock = mock(JedisPool.class);
+                when(jedisPoolMock.getResource()).thenReturn(jedisMock);
+                createdPools.add(jedisPoolMock);
+                return jedisPoolMock;
+            }
+            
+            @Override
+            RedisCache getRedisCache(String sid, String id) throws Exception {
+                return azureRedisMvpModelMock.getRedisCache(sid, id);
+            }
+        };
     }
     
     @After
     public void tearDown() {
         jedisMock = null;
-        jedisPoolMock = null;
         azureRedisMvpModelMock = null;
         redisCacheMock = null;
         redisAccessKeysMock = null;
+        createdPools.clear();
     }
     
     
     @Test
     public void testGetAndReleaseJedis() throws Exception {
-        RedisConnectionPools.getInstance().getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID);
-        verify(jedisPoolMock, times(1)).getResource();
-        RedisConnectionPools.getInstance().releasePool(MOCK_REDIS_ID);
-        verify(jedisPoolMock, times(1)).destroy();
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID);
+        verify(createdPools.get(0), times(1)).getResource();
+        pools.releasePool(MOCK_REDIS_ID);
+        verify(createdPools.get(0), times(1)).destroy();
     }
     
     @Test
     public void testReleaseNonExistedJedis() {
         // Just release without getJedis
-        RedisConnectionPools.getInstance().releasePool(MOCK_REDIS_ID);
-        verify(jedisPoolMock, times(0)).destroy();
+        pools.releasePool(MOCK_REDIS_ID);
+        assertEquals(0, createdPools.size());
+    }
+
+    @Test
+    public void testSelectDatabaseOnlyWhenNeeded() throws Exception {
+        when(jedisMock.getDB()).thenReturn(1L);
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, 1);
+        verify(jedisMock, never()).select(anyInt());
+
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, 2);
+        verify(jedisMock, times(1)).select(2);
+        // Both databases are served by the same pool
+        assertEquals(1, createdPools.size());
+    }
+
+    @Test
+    public void testCloseJedisWhenSelectFails() throws Exception {
+        when(jedisMock.getDB()).thenReturn(0L);
+        doThrow(new JedisConnectionException("select failed")).when(jedisMock).select(1);
+
+        try {
+            pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, 1);
+        } catch (JedisConnectionException expected) {
+            // The connection is returned to the pool instead of being leaked
+            verify(jedisMock, times(1)).close();
+            return;
+        }
+
+        throw new AssertionError("The failure of SELECT should be thrown");
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsedPool() throws Exception {
+        pools.setMaxPools(1);
+
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, 0);
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, 1);
+        verify(createdPools.get(0), never()).destroy();
+
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_OTHER_REDIS_ID, 0);
+        verify(createdPools.get(0), times(1)).destroy();
+
+        // The evicted pool is rebuilt with the cached settings
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, 0);
+        assertEquals(3, createdPools.size());
+        verify(azureRedisMvpModelMock, times(2)).getRedisCache(anyString(), anyString());
+    }
+
+    @Test
+    public void testRebuildPoolWhenConnectionFails() throws Exception {
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID);
+        when(createdPools.get(0).getResource()).thenThrow(new JedisConnectionException("connection failed"));
+
+        // The access key could have been regenerated, the settings are got from Azure again
+        pools.getJedis(MOCK_SUBSCRIPTION, MOCK_REDIS_ID);
+        verify(createdPools.get(0), times(1)).destroy();
+        assertEquals(2, createdPools.size());
+        verify(azureRedisMvpModelMock, times(2)).getRedisCache(anyString(), anyString());
     }
 }
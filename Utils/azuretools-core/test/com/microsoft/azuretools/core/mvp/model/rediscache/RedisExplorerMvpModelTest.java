@@ -22,11 +22,17 @@
 
 package com.microsoft.azuretools.core.mvp.model.rediscache;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,7 +43,12 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.microsoft.azuretools.azurecommons.helpers.RedisKeyType;
+import com.microsoft.azuretools.core.mvp.ui.rediscache.RedisKeyInfo;
+
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.ScanParams;
 
 @RunWith(PowerMockRunner.class)
@@ -52,12 +63,17 @@ public class RedisExplorerMvpModelTest {
     @Mock
     private Jedis jedisMock;
     
+    @Mock
+    private Pipeline pipelineMock;
+    
     private static final String MOCK_SUBSCRIPTION = "00000000-0000-0000-0000-000000000000";
     private static final String MOCK_REDIS_ID = "test-id";
     private static final int MOCK_DB = 0;
     private static final String MOCK_CURSOR = "0";
     private static final String MOCK_PATTERN = "*";
     private static final String MOCK_KEY = "key";
+    private static final String MOCK_LIST_KEY = "list";
+    private static final long MOCK_TTL = -1L;
     private static final long MOCK_LEN = 10L;
     private static final String DATABASE_COMMAND = "databases";
     
@@ -67,6 +83,7 @@ public class RedisExplorerMvpModelTest {
         PowerMockito.mockStatic(RedisConnectionPools.class);
         when(RedisConnectionPools.getInstance()).thenReturn(redisConnectionPoolsMock);
         when(redisConnectionPoolsMock.getJedis(anyString(), anyString())).thenReturn(jedisMock);
+        when(redisConnectionPoolsMock.getJedis(anyString(), anyString(), anyInt())).thenReturn(jedisMock);
     }
     
     @After
@@ -84,21 +101,24 @@ public class RedisExplorerMvpModelTest {
     @Test
     public void testScanKeys() throws Exception {
         RedisExplorerMvpModel.getInstance().scanKeys(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, MOCK_DB, MOCK_CURSOR, MOCK_PATTERN);
-        verify(jedisMock, times(1)).select(Mockito.eq(MOCK_DB));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
         verify(jedisMock, times(1)).scan(Mockito.eq(MOCK_CURSOR), Mockito.any(ScanParams.class));
     }
     
     @Test
     public void testGetKeyType() throws Exception {
         RedisExplorerMvpModel.getInstance().getKeyType(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, MOCK_DB, MOCK_KEY);
-        verify(jedisMock, times(1)).select(Mockito.eq(MOCK_DB));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
         verify(jedisMock, times(1)).type(Mockito.eq(MOCK_KEY));
     }
     
     @Test
     public void testGetStringValue() throws Exception {
         RedisExplorerMvpModel.getInstance().getStringValue(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, MOCK_DB, MOCK_KEY);
-        verify(jedisMock, times(1)).select(Mockito.eq(MOCK_DB));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
         verify(jedisMock, times(1)).get(Mockito.eq(MOCK_KEY));
     }
     
@@ -107,14 +127,16 @@ public class RedisExplorerMvpModelTest {
         when(jedisMock.llen(anyString())).thenReturn(MOCK_LEN);
         
         RedisExplorerMvpModel.getInstance().getListValue(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, MOCK_DB, MOCK_KEY);
-        verify(jedisMock, times(1)).select(Mockito.eq(MOCK_DB));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
         verify(jedisMock, times(1)).lrange(Mockito.eq(MOCK_KEY), Mockito.eq(0L), Mockito.eq(MOCK_LEN));
     }
     
     @Test
     public void testGetSetValue() throws Exception {
         RedisExplorerMvpModel.getInstance().getSetValue(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, MOCK_DB, MOCK_KEY, MOCK_CURSOR);
-        verify(jedisMock, times(1)).select(Mockito.eq(MOCK_DB));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
         verify(jedisMock, times(1)).sscan(Mockito.eq(MOCK_KEY), Mockito.eq(MOCK_CURSOR), Mockito.any(ScanParams.class));
     }
     
@@ -123,21 +145,55 @@ public class RedisExplorerMvpModelTest {
         when(jedisMock.zcard(anyString())).thenReturn(MOCK_LEN);
         
         RedisExplorerMvpModel.getInstance().getZSetValue(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, MOCK_DB, MOCK_KEY);
-        verify(jedisMock, times(1)).select(Mockito.eq(MOCK_DB));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
         verify(jedisMock, times(1)).zrangeWithScores(Mockito.eq(MOCK_KEY), Mockito.eq(0L), Mockito.eq(MOCK_LEN));
     }
     
     @Test
     public void testGetHashValue() throws Exception {
         RedisExplorerMvpModel.getInstance().getHashValue(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, MOCK_DB, MOCK_KEY, MOCK_CURSOR);
-        verify(jedisMock, times(1)).select(Mockito.eq(MOCK_DB));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
         verify(jedisMock, times(1)).hscan(Mockito.eq(MOCK_KEY), Mockito.eq(MOCK_CURSOR), Mockito.any(ScanParams.class));
     }
 
     @Test
     public void testCheckKeyExistance() throws Exception {
         RedisExplorerMvpModel.getInstance().checkKeyExistance(MOCK_SUBSCRIPTION, MOCK_REDIS_ID, MOCK_DB, MOCK_KEY);
-        verify(jedisMock, times(1)).select(Mockito.eq(MOCK_DB));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
         verify(jedisMock, times(1)).exists(Mockito.eq(MOCK_KEY));
     }
+
+    @Test
+    public void testGetKeysInfo() throws Exception {
+        Response<String> stringTypeResponse = mockResponse("string");
+        Response<String> listTypeResponse = mockResponse("list");
+        Response<Long> ttlResponse = mockResponse(MOCK_TTL);
+        Response<Long> lenResponse = mockResponse(MOCK_LEN);
+        when(jedisMock.pipelined()).thenReturn(pipelineMock);
+        when(pipelineMock.type(MOCK_KEY)).thenReturn(stringTypeResponse);
+        when(pipelineMock.type(MOCK_LIST_KEY)).thenReturn(listTypeResponse);
+        when(pipelineMock.ttl(anyString())).thenReturn(ttlResponse);
+        when(pipelineMock.strlen(MOCK_KEY)).thenReturn(lenResponse);
+        when(pipelineMock.llen(MOCK_LIST_KEY)).thenReturn(lenResponse);
+
+        Map<String, RedisKeyInfo> keysInfo = RedisExplorerMvpModel.getInstance().getKeysInfo(MOCK_SUBSCRIPTION,
+                MOCK_REDIS_ID, MOCK_DB, Arrays.asList(MOCK_KEY, MOCK_LIST_KEY));
+        verify(redisConnectionPoolsMock, times(1)).getJedis(anyString(), anyString(), Mockito.eq(MOCK_DB));
+        verify(jedisMock, never()).select(anyInt());
+        verify(pipelineMock, times(2)).sync();
+        assertEquals(RedisKeyType.STRING, keysInfo.get(MOCK_KEY).getKeyType());
+        assertEquals(RedisKeyType.LIST, keysInfo.get(MOCK_LIST_KEY).getKeyType());
+        assertEquals(MOCK_LEN, keysInfo.get(MOCK_LIST_KEY).getSize());
+        assertEquals(MOCK_TTL, keysInfo.get(MOCK_KEY).getTtl());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Response<T> mockResponse(T value) {
+        Response<T> response = Mockito.mock(Response.class);
+        when(response.get()).thenReturn(value);
+        return response;
+    }
 }
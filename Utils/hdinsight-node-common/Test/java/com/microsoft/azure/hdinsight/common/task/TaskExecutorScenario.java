@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ */
+
+package com.microsoft.azure.hdinsight.common.task;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import cucumber.api.java.After;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TaskExecutorScenario {
+    private final int defaultPerClusterLimit = TaskExecutor.getPerClusterLimit();
+    private final CountDownLatch blocker = new CountDownLatch(1);
+    private final List<ListenableFuture<?>> blockedTasks = new ArrayList<>();
+    private final List<ListenableFuture<String>> prioritizedTasks = new ArrayList<>();
+    private final List<String> runOrder = new ArrayList<>();
+    private final CountDownLatch lastTaskStarted = new CountDownLatch(1);
+    private ListenableFuture<?> lastTask;
+    private Thread lastTaskThread;
+    private long queueLatencyCount;
+    private long runLatencyCount;
+
+    private class TestTask extends Task<String> {
+        private final String name;
+        private final String cluster;
+
+        TestTask(String name, String cluster) {
+            super(null);
+            this.name = name;
+            this.cluster = cluster;
+        }
+
+        @Override
+        public String getConcurrencyKey() {
+            return cluster;
+        }
+
+        @Override
+        public String call() throws Exception {
+            synchronized (runOrder) {
+                runOrder.add(name);
+            }
+
+            return name;
+        }
+    }
+
+    private class BlockedTask extends TestTask {
+        BlockedTask(String cluster) {
+            super("blocked", cluster);
+        }
+
+        @Override
+        public String call() throws Exception {
+            // Block without responding to the interruption, as a REST call blocked in the socket reading
+            while (true) {
+                try {
+                    blocker.await();
+                    return "blocked";
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Throwable {
+        blocker.countDown();
+        TaskExecutor.setPerClusterLimit(defaultPerClusterLimit);
+
+        waitForIdle();
+    }
+
+    private void waitForIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((TaskExecutor.getActiveCount() > 0 || TaskExecutor.getQueueDepth() > 0) &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Given("^the per cluster limit of the task executor is (\\d+)$")
+    public void setPerClusterLimit(int limit) {
+        TaskExecutor.setPerClusterLimit(limit);
+    }
+
+    @Given("^(\\d+) blocked tasks are submitted for the cluster '(.+)'$")
+    public void submitBlockedTasks(int count, String cluster) {
+        for (int i = 0; i < count; i++) {
+            blockedTasks.add(TaskExecutor.submit(new BlockedTask(cluster)));
+        }
+    }
+
+    @Given("^the task executor is filled up with blocked tasks$")
+    public void fillUpTaskExecutor() throws Throwable {
+        // The tasks left by the other tests would be drained and leave room
+        waitForIdle();
+
+        // Let the workers take the blocked tasks first, or the queue could be full before the idle workers poll
+        submitBlockedTasks(TaskExecutor.THREADS, null);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (TaskExecutor.getActiveCount() < TaskExecutor.THREADS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        submitBlockedTasks(TaskExecutor.QUEUE_CAPACITY, null);
+        assertTrue(blockedTasks.stream().noneMatch(Future::isDone));
+    }
+
+    @Given("^the tasks '(.+)' are submitted for the cluster '(.+)' with the priorities '(.+)'$")
+    public void submitPrioritizedTasks(String names, String cluster, String priorities) {
+        List<String> taskNames = Arrays.asList(names.split(",\\s*"));
+        List<String> taskPriorities = Arrays.asList(priorities.split(",\\s*"));
+
+        for (int i = 0; i < taskNames.size(); i++) {
+            prioritizedTasks.add(TaskExecutor.submit(new TestTask(taskNames.get(i), cluster)
+                    .setPriority(Task.Priority.valueOf(taskPriorities.get(i)))));
+        }
+    }
+
+    @Given("^the recorded task latency counts$")
+    public void getLatencyCounts() {
+        queueLatencyCount = TaskExecutor.getQueueLatency().getTotalCount();
+        runLatencyCount = TaskExecutor.getRunLatency().getTotalCount();
+    }
+
+    @When("^a task is submitted for the cluster '(.+)'$")
+    public void submitTask(String cluster) {
+        lastTask = TaskExecutor.submit(new TestTask("last", cluster) {
+            @Override
+            public String call() throws Exception {
+                lastTaskThread = Thread.currentThread();
+                lastTaskStarted.countDown();
+                return super.call();
+            }
+        });
+    }
+
+    @When("^a task is submitted without cluster$")
+    public void submitTaskWithoutCluster() {
+        submitTask(null);
+    }
+
+    @When("^the blocked tasks are cancelled$")
+    public void cancelBlockedTasks() {
+        blockedTasks.forEach(task -> assertTrue(task.cancel(true)));
+    }
+
+    @When("^the blocked tasks return$")
+    public void releaseBlockedTasks() throws Throwable {
+        blocker.countDown();
+        Futures.allAsList(prioritizedTasks).get(10, TimeUnit.SECONDS);
+    }
+
+    @When("^the last task is cancelled$")
+    public void cancelLastTask() {
+        assertTrue(lastTask.cancel(true));
+    }
+
+    @Then("^the last task should not start in (\\d+) milliseconds$")
+    public void checkLastTaskNotStarted(long millis) throws Throwable {
+        assertFalse("The task shouldn't take the slot of the cancelled task still running",
+                lastTaskStarted.await(millis, TimeUnit.MILLISECONDS));
+    }
+
+    @Then("^the last task should start after the blocked tasks return$")
+    public void checkLastTaskStarted() throws Throwable {
+        blocker.countDown();
+        assertTrue(lastTaskStarted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Then("^the queue depth of the task executor should be (\\d+)$")
+    public void checkQueueDepth(int depth) {
+        assertEquals(depth, TaskExecutor.getQueueDepth());
+    }
+
+    @Then("^the tasks should run in the order '(.+)'$")
+    public void checkRunOrder(String names) {
+        synchronized (runOrder) {
+            assertEquals(Arrays.stream(names.split(",\\s*")).collect(Collectors.toList()), runOrder);
+        }
+    }
+
+    @Then("^the last task should fail with RejectedExecutionException$")
+    public void checkLastTaskRejected() throws Throwable {
+        try {
+            lastTask.get(10, TimeUnit.SECONDS);
+            fail("The task should be rejected when the queue is full");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Then("^the last task should not run in the submitting thread$")
+    public void checkLastTaskNotRunInCaller() {
+        assertNotEquals(Thread.currentThread(), lastTaskThread);
+        assertEquals(1, lastTaskStarted.getCount());
+    }
+
+    @Then("^the last task should complete$")
+    public void checkLastTaskCompleted() throws Throwable {
+        assertEquals("last", lastTask.get(10, TimeUnit.SECONDS));
+    }
+
+    @Then("^the queue and run latency counts should increase$")
+    public void checkLatencyCounts() {
+        assertTrue(TaskExecutor.getQueueLatency().getTotalCount() >= queueLatencyCount + 1);
+        assertTrue(TaskExecutor.getRunLatency().getTotalCount() >= runLatencyCount + 1);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ */
+
+
+package com.microsoft.azure.hdinsight.sdk.common;
+
+import com.sun.net.httpserver.HttpServer;
+import cucumber.api.java.After;
+import cucumber.api.java.Before;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HttpClientPoolScenario {
+    private HttpServer server;
+    private String url;
+    private HttpClientPool pool;
+    private CloseableHttpClient client;
+    private CloseableHttpResponse response;
+
+    @Before
+    public void setUp() throws Throwable {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();
+
+        url = String.format("http://localhost:%d/", server.getAddress().getPort());
+        pool = new HttpClientPool(false, 0);
+    }
+
+    @After
+    public void tearDown() throws Throwable {
+        if (response != null) {
+            response.close();
+        }
+
+        server.stop(0);
+    }
+
+    @Given("^the HTTP client pool keeping the retired clients for (\\d+) seconds$")
+    public void createPoolWithGracePeriod(int graceSeconds) throws Throwable {
+        pool = new HttpClientPool(false, TimeUnit.SECONDS.toMillis(graceSeconds));
+    }
+
+    @When("^a request is sent by the pooled client without reading the response$")
+    public void sendRequest() throws Throwable {
+        client = pool.getClient(url, null, null);
+        response = client.execute(new HttpGet(url));
+    }
+
+    @When("^a request is sent by the pooled client and the response is read$")
+    public void sendRequestAndRead() throws Throwable {
+        sendRequest();
+        readResponse("hello");
+    }
+
+    @When("^all the pooled clients are closed$")
+    public void closeAll() throws Throwable {
+        pool.closeAll();
+    }
+
+    @When("^the retired clients are checked$")
+    public void checkRetiredClients() throws Throwable {
+        pool.closeRetiredClients();
+    }
+
+    @Then("^the response should be read as '(.+)'$")
+    public void readResponse(String expect) throws Throwable {
+        assertEquals(expect, EntityUtils.toString(response.getEntity()));
+    }
+
+    @Then("^(\\d+) retired clients? should be kept$")
+    public void checkRetiredClientCount(int count) throws Throwable {
+        assertEquals(count, pool.getRetiredClientCount());
+    }
+
+    @Then("^the request by the retired client should be rejected$")
+    public void checkClientClosed() throws Throwable {
+        try {
+            client.execute(new HttpGet(url)).close();
+            fail("The retired client should have been closed");
+        } catch (IllegalStateException ignored) {
+            // The connection pool is shut down
+        }
+    }
+}
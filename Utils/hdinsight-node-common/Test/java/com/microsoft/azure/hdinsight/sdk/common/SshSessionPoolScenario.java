@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ */
+
+
+package com.microsoft.azure.hdinsight.sdk.common;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import cucumber.api.java.Before;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+public class SshSessionPoolScenario {
+    private final List<Session> connectedSessions = new ArrayList<>();
+    private final Map<String, Session> leasedSessions = new HashMap<>();
+    private SshSessionPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new SshSessionPool(false) {
+            @Override
+            Session connect(SessionKey key) throws JSchException {
+                Session session = mock(Session.class);
+                when(session.isConnected()).thenReturn(true);
+                connectedSessions.add(session);
+
+                return session;
+            }
+        };
+    }
+
+    @Given("^the callers '(.+)' acquire the session to '(.+)'$")
+    public void acquireSessions(List<String> callers, String host) throws Throwable {
+        for (String caller : callers) {
+            leasedSessions.put(caller, pool.acquire(host, SshSessionPool.DEFAULT_SSH_PORT, "sshuser", "password", null));
+        }
+    }
+
+    @When("^the caller '(.+)' releases the session$")
+    public void releaseSession(String caller) throws Throwable {
+        pool.release(leasedSessions.get(caller));
+    }
+
+    @When("^the session of the caller '(.+)' is broken$")
+    public void breakSession(String caller) throws Throwable {
+        when(leasedSessions.get(caller).isConnected()).thenReturn(false);
+    }
+
+    @When("^the idle sessions are checked$")
+    public void checkIdleSessions() throws Throwable {
+        pool.checkIdleSessions();
+    }
+
+    @Then("^the callers '(.+)' should share the same session$")
+    public void checkSameSession(List<String> callers) throws Throwable {
+        callers.forEach(caller -> assertSame(leasedSessions.get(callers.get(0)), leasedSessions.get(caller)));
+    }
+
+    @Then("^the callers '(.+)' and '(.+)' should get different sessions$")
+    public void checkDifferentSessions(String caller, String another) throws Throwable {
+        assertNotSame(leasedSessions.get(caller), leasedSessions.get(another));
+    }
+
+    @Then("^the session of the caller '(.+)' should have (\\d+) leases?$")
+    public void checkLeases(String caller, int leases) throws Throwable {
+        assertEquals(leases, pool.getLeases(leasedSessions.get(caller)));
+    }
+
+    @Then("^the session of the caller '(.+)' should be connected$")
+    public void checkConnected(String caller) throws Throwable {
+        verify(leasedSessions.get(caller), never()).disconnect();
+    }
+
+    @Then("^the session of the caller '(.+)' should be disconnected$")
+    public void checkDisconnected(String caller) throws Throwable {
+        verify(leasedSessions.get(caller), times(1)).disconnect();
+    }
+
+    @Then("^(\\d+) sessions? should be connected by the pool$")
+    public void checkConnectedCount(int count) throws Throwable {
+        assertEquals(count, connectedSessions.size());
+    }
+}
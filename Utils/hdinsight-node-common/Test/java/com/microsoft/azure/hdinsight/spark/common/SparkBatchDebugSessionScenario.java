@@ -26,19 +26,22 @@ import com.jcraft.jsch.Session;
 import cucumber.api.java.Before;
 import cucumber.api.java.en.Then;
 
+import java.net.UnknownServiceException;
+
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Answers.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.spy;
 
 public class SparkBatchDebugSessionScenario {
     private SparkBatchDebugSession debugSessionMock =
-            mock(SparkBatchDebugSession.class, CALLS_REAL_METHODS);
+            spy(new SparkBatchDebugSession("localhost", "user"));
     private Session jschSessionMock = mock(Session.class, CALLS_REAL_METHODS);
 
     @Before
     public void setUp() {
-        when(debugSessionMock.getPortForwardingSession()).thenReturn(jschSessionMock);
+        doReturn(jschSessionMock).when(debugSessionMock).getPortForwardingSession();
     }
 
     @Then("^parsing local port from getting Port Forwarding Local result '(.+)' with host '(.+)' and (\\d+) should get local port (\\d+)$")
@@ -47,8 +50,26 @@ public class SparkBatchDebugSessionScenario {
             String remoteHost,
             int remotePort,
             int expectedPort) throws Throwable{
-        when(jschSessionMock.getPortForwardingL()).thenReturn(new String[] { forwardingMock });
+        doReturn(expectedPort).when(jschSessionMock).setPortForwardingL(0, remoteHost, remotePort);
+        doReturn(new String[] { forwardingMock }).when(jschSessionMock).getPortForwardingL();
 
+        debugSessionMock.forwardToRemotePort(remoteHost, remotePort);
         assertEquals(expectedPort, debugSessionMock.getForwardedLocalPort(remoteHost, remotePort));
     }
+
+    @Then("^the Port Forwarding Local result '(.+)' not forwarded by the session with host '(.+)' and (\\d+) should not be got$")
+    public void checkGetForwardedLocalPortByOthers(
+            String forwardingMock,
+            String remoteHost,
+            int remotePort) throws Throwable{
+        doReturn(new String[] { forwardingMock }).when(jschSessionMock).getPortForwardingL();
+
+        try {
+            debugSessionMock.getForwardedLocalPort(remoteHost, remotePort);
+        } catch (UnknownServiceException ignored) {
+            return;
+        }
+
+        throw new AssertionError("The local port forwarded by other sessions shouldn't be got");
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ */
+
+package com.microsoft.azure.hdinsight.spark.jobs;
+
+import com.google.common.cache.Cache;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class JobViewCacheManagerScenario {
+    private Cache<String, Integer> weightedCache;
+
+    private static List<Integer> parseWeights(String weights) {
+        return Arrays.stream(weights.split(",\\s*")).map(Integer::valueOf).collect(Collectors.toList());
+    }
+
+    @Given("^a job view weighted cache with max weight (\\d+)$")
+    public void buildWeightedCache(long maxWeight) {
+        weightedCache = JobViewCacheManager.<String, Integer>weightedCacheBuilder((key, weight) -> weight, maxWeight)
+                .build();
+    }
+
+    @When("^the entries weighing '(.+)' are put into the weighted cache$")
+    public void putEntries(String weights) {
+        parseWeights(weights).forEach(weight -> weightedCache.put("entry" + weight, weight));
+    }
+
+    @Then("^the weighted cache should have the entries weighing '(.+)'$")
+    public void checkEntries(String weights) {
+        assertEquals(
+                parseWeights(weights).stream().sorted().collect(Collectors.toList()),
+                weightedCache.asMap().values().stream().sorted().collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ */
+
+package com.microsoft.azure.hdinsight.spark.jobs;
+
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class YarnContainerLogFetcherScenario {
+    private YarnContainerLogFetcher.ContainerLog containerLog;
+
+    private static String unescapeLineBreaks(String text) {
+        return text.replace("\\n", "\n");
+    }
+
+    @Given("^a Yarn container log page '(.+)'$")
+    public void extractLogFromPage(String page) throws Throwable {
+        byte[] pageBytes = unescapeLineBreaks(page).getBytes(StandardCharsets.UTF_8);
+
+        containerLog = YarnContainerLogFetcher.extractLog(
+                new InputStreamReader(new ByteArrayInputStream(pageBytes), StandardCharsets.ISO_8859_1),
+                StandardCharsets.UTF_8);
+    }
+
+    @Then("^the extracted log should be '(.+)' with (\\d+) bytes consumed$")
+    public void checkExtractedLog(String expectedLog, long expectedByteCount) throws Throwable {
+        assertEquals(unescapeLineBreaks(expectedLog), containerLog.getText());
+        assertEquals(expectedByteCount, containerLog.getByteCount());
+    }
+
+    @Then("^the log '(.+)' split into ranges of (\\d+) bytes should produce lines:$")
+    public void checkLogLineBuffer(String log, int rangeSize, List<String> expectedLines) throws Throwable {
+        byte[] logBytes = unescapeLineBreaks(log).getBytes(StandardCharsets.UTF_8);
+        LogLineBuffer lineBuffer = new LogLineBuffer();
+        List<String> lines = new ArrayList<>();
+
+        for (int start = 0; start < logBytes.length; start += rangeSize) {
+            byte[] range = Arrays.copyOfRange(logBytes, start, Math.min(start + rangeSize, logBytes.length));
+            lines.addAll(lineBuffer.append(range, StandardCharsets.UTF_8));
+        }
+
+        lines.addAll(lineBuffer.flush(StandardCharsets.UTF_8));
+
+        assertEquals(expectedLines, lines);
+    }
+}
@@ -0,0 +1,35 @@
+Feature: Task Executor Testing
+  Scenario: The cluster slot of a cancelled running task is kept until the task body returns
+    Given the per cluster limit of the task executor is 2
+    And 2 blocked tasks are submitted for the cluster 'https://cluster1'
+    When the blocked tasks are cancelled
+    And a task is submitted for the cluster 'https://cluster1'
+    Then the last task should not start in 500 milliseconds
+    And the last task should start after the blocked tasks return
+
+  Scenario: A cancelled task waiting for the cluster slot is dropped from the queue
+    Given the per cluster limit of the task executor is 1
+    And 1 blocked tasks are submitted for the cluster 'https://cluster2'
+    And a task is submitted for the cluster 'https://cluster2'
+    Then the queue depth of the task executor should be 1
+    When the last task is cancelled
+    Then the queue depth of the task executor should be 0
+
+  Scenario: The interactive tasks are taken before the background ones
+    Given the per cluster limit of the task executor is 1
+    And 1 blocked tasks are submitted for the cluster 'https://cluster3'
+    And the tasks 'b1, i1, b2, i2' are submitted for the cluster 'https://cluster3' with the priorities 'BACKGROUND, INTERACTIVE, BACKGROUND, INTERACTIVE'
+    When the blocked tasks return
+    Then the tasks should run in the order 'i1, i2, b1, b2'
+
+  Scenario: The task fails instead of running in the submitting thread when the queue is full
+    Given the task executor is filled up with blocked tasks
+    When a task is submitted without cluster
+    Then the last task should fail with RejectedExecutionException
+    And the last task should not run in the submitting thread
+
+  Scenario: The task latencies are recorded
+    Given the recorded task latency counts
+    When a task is submitted without cluster
+    Then the last task should complete
+    And the queue and run latency counts should increase
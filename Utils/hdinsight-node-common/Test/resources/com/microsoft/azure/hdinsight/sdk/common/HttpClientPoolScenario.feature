@@ -0,0 +1,22 @@
+Feature: HTTP Client Pool Testing
+  Scenario: The retired client is kept until the response in use is read
+    When a request is sent by the pooled client without reading the response
+    And all the pooled clients are closed
+    And the retired clients are checked
+    Then 1 retired client should be kept
+    And the response should be read as 'hello'
+    When the retired clients are checked
+    Then 0 retired clients should be kept
+    And the request by the retired client should be rejected
+
+  Scenario: The retired client without connection in use is closed at once
+    When a request is sent by the pooled client and the response is read
+    And all the pooled clients are closed
+    Then 0 retired clients should be kept
+    And the request by the retired client should be rejected
+
+  Scenario: The retired client is kept within the grace period
+    Given the HTTP client pool keeping the retired clients for 60 seconds
+    When a request is sent by the pooled client and the response is read
+    And all the pooled clients are closed
+    Then 1 retired client should be kept
@@ -0,0 +1,42 @@
+Feature: SSH Session Pool Testing
+  Scenario: The session is shared by the callers and kept when some of them release it
+    Given the callers 'a,b' acquire the session to 'cluster1-ssh.azurehdinsight.net'
+    Then the callers 'a,b' should share the same session
+    And 1 session should be connected by the pool
+    When the caller 'a' releases the session
+    And the idle sessions are checked
+    Then the session of the caller 'b' should have 1 lease
+    And the session of the caller 'b' should be connected
+
+  Scenario: The broken session is kept for the lessees until they release it
+    Given the callers 'a,b' acquire the session to 'cluster2-ssh.azurehdinsight.net'
+    When the session of the caller 'a' is broken
+    And the callers 'c' acquire the session to 'cluster2-ssh.azurehdinsight.net'
+    Then the callers 'a' and 'c' should get different sessions
+    And 2 sessions should be connected by the pool
+    When the caller 'a' releases the session
+    Then the session of the caller 'a' should have 1 lease
+    And the session of the caller 'a' should be connected
+    When the caller 'b' releases the session
+    Then the session of the caller 'a' should be disconnected
+    And the session of the caller 'c' should have 1 lease
+    And the session of the caller 'c' should be connected
+
+  Scenario: The broken session is closed when the last lease is released
+    Given the callers 'a' acquire the session to 'cluster3-ssh.azurehdinsight.net'
+    When the session of the caller 'a' is broken
+    And the caller 'a' releases the session
+    Then the session of the caller 'a' should be disconnected
+    When the callers 'b' acquire the session to 'cluster3-ssh.azurehdinsight.net'
+    Then the callers 'a' and 'b' should get different sessions
+
+  Scenario: The idle check only closes the broken sessions without lease
+    Given the callers 'a' acquire the session to 'cluster4-ssh.azurehdinsight.net'
+    And the callers 'b' acquire the session to 'cluster5-ssh.azurehdinsight.net'
+    When the session of the caller 'a' is broken
+    And the session of the caller 'b' is broken
+    And the caller 'b' releases the session
+    And the idle sessions are checked
+    Then the session of the caller 'a' should be connected
+    And the session of the caller 'a' should have 1 lease
+    And the session of the caller 'b' should be disconnected
@@ -1,3 +1,6 @@
 Feature: Spark Batch Debug Session Testing
   Scenario: getForwardedLocalPort() unit test
-    Then parsing local port from getting Port Forwarding Local result '6534:10.0.0.4:6006' with host '10.0.0.4' and 6006 should get local port 6534
\ No newline at end of file
+    Then parsing local port from getting Port Forwarding Local result '6534:10.0.0.4:6006' with host '10.0.0.4' and 6006 should get local port 6534
+
+  Scenario: getForwardedLocalPort() ignores the forwardings of other sessions
+    Then the Port Forwarding Local result '6534:10.0.0.4:6006' not forwarded by the session with host '10.0.0.4' and 6006 should not be got
@@ -0,0 +1,10 @@
+Feature: Job View Cache Manager Testing
+  Scenario: An entry heavier than a segment's share of the max weight is kept
+    Given a job view weighted cache with max weight 100
+    When the entries weighing '60' are put into the weighted cache
+    Then the weighted cache should have the entries weighing '60'
+
+  Scenario: The least recently used entries are evicted beyond the max weight
+    Given a job view weighted cache with max weight 100
+    When the entries weighing '40, 30, 50' are put into the weighted cache
+    Then the weighted cache should have the entries weighing '30, 50'
@@ -0,0 +1,14 @@
+Feature: Yarn Container Log Fetcher Testing
+  Scenario: extractLog() gets the raw log bytes and the bytes consumed from the page hint
+    Given a Yarn container log page '<html><body><p>Showing 16 bytes. Click here for full log</p><pre>a &lt;b&gt; &#233; ñ</pre></body></html>'
+    Then the extracted log should be 'a <b> é ñ' with 16 bytes consumed
+
+  Scenario: extractLog() takes the log bytes as consumed without the page hint
+    Given a Yarn container log page '<html><body><pre>héllo\n</pre></body></html>'
+    Then the extracted log should be 'héllo\n' with 7 bytes consumed
+
+  Scenario: LogLineBuffer decodes a multi-byte character split across the ranges
+    Then the log 'line1\nhé\nwörld' split into ranges of 4 bytes should produce lines:
+      | line1 |
+      | hé    |
+      | wörld |
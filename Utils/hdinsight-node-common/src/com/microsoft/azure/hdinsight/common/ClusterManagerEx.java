@@ -29,6 +29,8 @@ import com.microsoft.azure.hdinsight.metadata.ClusterMetaDataService;
 import com.microsoft.azure.hdinsight.sdk.cluster.*;
 import com.microsoft.azuretools.authmanage.AuthMethodManager;
 import com.microsoft.azuretools.authmanage.models.SubscriptionDetail;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
 import com.microsoft.azuretools.azurecommons.helpers.StringHelper;
 import com.microsoft.tooling.msservices.components.DefaultLoader;
 import com.microsoft.azure.hdinsight.sdk.common.AggregatedException;
@@ -36,25 +38,43 @@ import com.microsoft.azure.hdinsight.sdk.common.AuthenticationErrorHandler;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
 import com.microsoft.azure.hdinsight.sdk.storage.HDStorageAccount;
 
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ClusterManagerEx {
 
     private static final String OSTYPE = "linux";
+    private static final int CONFIG_PREFETCH_CONCURRENT = 4;
 
     private static ClusterManagerEx instance = null;
 
     private List<IClusterDetail> hdinsightAdditionalClusterDetails = new ArrayList<>();
     private List<IClusterDetail> emulatorClusterDetails = new ArrayList<>();
 
-    private boolean isListClusterSuccess = false;
-    private boolean isLIstAdditionalClusterSuccess = false;
-    private boolean isListEmulatorClusterSuccess = false;
-    private boolean isSelectedSubscriptionExist = false;
+    private volatile boolean isListClusterSuccess = false;
+    private volatile boolean isLIstAdditionalClusterSuccess = false;
+    private volatile boolean isListEmulatorClusterSuccess = false;
+    private volatile boolean isSelectedSubscriptionExist = false;
+
+    private final AtomicBoolean isRefreshingClusters = new AtomicBoolean(false);
+
+    private final Object clusterDetailsListingLock = new Object();
+    @Nullable
+    private Observable<IClusterDetail> clusterDetailsListing;
+    private long clusterDetailsListingGeneration = 0;
 
     private ClusterManagerEx() {
+        try {
+            // The clusters snapshot belongs to the account signed out
+            AuthMethodManager.getInstance().addSignOutEventListener(() -> ClusterMetaDataService.getInstance().clearSnapshot());
+        } catch (Exception ignored) {
+        }
     }
 
     public static ClusterManagerEx getInstance() {
@@ -92,7 +112,7 @@ public class ClusterManagerEx {
         final ImmutableList<IClusterDetail> cachedClusterDetails =
                 Optional.of(ClusterMetaDataService.getInstance().getCachedClusterDetails())
                         .filter(clusters -> !clusters.isEmpty())
-                        .orElseGet(this::getClusterDetails);
+                        .orElseGet(this::getClusterDetailsFromSnapshot);
 
         if (isIgnoreErrorCluster) {
             List<IClusterDetail> result = new ArrayList<>();
@@ -123,9 +143,128 @@ public class ClusterManagerEx {
                 });
     }
 
-    public synchronized ImmutableList<IClusterDetail> getClusterDetails() {
-        List<IClusterDetail> clusterDetails = new ArrayList<>();
+    public ImmutableList<IClusterDetail> getClusterDetails() {
+        // Wait for the listing in flight if any, instead of listing again
+        getClusterDetailsStream().toBlocking().lastOrDefault(null);
+
+        return ClusterMetaDataService.getInstance().getCachedClusterDetails();
+    }
+
+    /**
+     * List the clusters as a stream. The additional and emulator clusters are emitted first, then the Azure
+     * subscription clusters are emitted and added into cache as soon as their subscriptions respond. The cache is
+     * merged with all clusters listed when the stream completes.
+     *
+     * The listing in flight is shared by the concurrent subscribers, the clusters emitted before are replayed to
+     * the late ones. The listing is cancelled when all subscribers unsubscribe.
+     */
+    public Observable<IClusterDetail> getClusterDetailsStream() {
+        return Observable.defer(() -> {
+            synchronized (clusterDetailsListingLock) {
+                if (clusterDetailsListing == null) {
+                    final long generation = ++clusterDetailsListingGeneration;
+
+                    clusterDetailsListing = listClusterDetails()
+                            .doAfterTerminate(() -> clearClusterDetailsListing(generation))
+                            .doOnUnsubscribe(() -> clearClusterDetailsListing(generation))
+                            .replay()
+                            .refCount();
+                }
+
+                return clusterDetailsListing;
+            }
+        });
+    }
+
+    private void clearClusterDetailsListing(long generation) {
+        synchronized (clusterDetailsListingLock) {
+            if (clusterDetailsListingGeneration == generation) {
+                clusterDetailsListing = null;
+            }
+        }
+    }
+
+    private Observable<IClusterDetail> listClusterDetails() {
+        return Observable.defer(() -> {
+            final List<IClusterDetail> localClusterDetails = getLocalClusters();
+
+            isListClusterSuccess = false;
+            com.microsoft.azuretools.sdkmanage.AzureManager manager;
+            try {
+                manager = AuthMethodManager.getInstance().getAzureManager();
+            } catch (Exception ex) {
+                // not authenticated
+                ClusterMetaDataService.getInstance().addCachedClusters(localClusterDetails);
+                return Observable.from(localClusterDetails);
+            }
 
+            List<SubscriptionDetail> subscriptionList = null;
+            try {
+                subscriptionList = manager.getSubscriptionManager().getSubscriptionDetails();
+            } catch (Exception ex) {
+                DefaultLoader.getUIHelper().showError("Failed to get HDInsight Clusters","List HDInsight Cluster Error");
+            }
+
+            isSelectedSubscriptionExist = subscriptionList != null && !subscriptionList.isEmpty();
+
+            final List<IClusterDetail> clusterDetails = Collections.synchronizedList(new ArrayList<>());
+            final Observable<IClusterDetail> azureClusterDetails = subscriptionList == null ?
+                    Observable.empty() :
+                    ClusterManager.getInstance().getHDInsightClustersWithSpecificTypeStream(subscriptionList, OSTYPE)
+                            .doOnNext(clusterDetail -> {
+                                clusterDetails.add(clusterDetail);
+                                ClusterMetaDataService.getInstance().addClusterToCache(clusterDetail);
+                            })
+                            .doOnCompleted(() -> {
+                                // TODO: so far we have not a good way to judge whether it is token expired as we have changed the way to list hdinsight clusters
+                                isListClusterSuccess = !clusterDetails.isEmpty();
+                                if (isListClusterSuccess) {
+                                    ClusterMetaDataService.getInstance().saveSnapshot(clusterDetails);
+                                }
+                            })
+                            .onErrorResumeNext(err -> {
+                                if (!(err instanceof AggregatedException)) {
+                                    DefaultLoader.getUIHelper().showError("Failed to get HDInsight Clusters","List HDInsight Cluster Error");
+                                } else if (dealWithAggregatedException((AggregatedException) err)) {
+                                    DefaultLoader.getUIHelper().showError("Failed to get HDInsight Cluster, Please make sure there's no login problem first","List HDInsight Cluster Error");
+                                }
+
+                                return Observable.empty();
+                            });
+
+            return Observable.from(localClusterDetails)
+                    .concatWith(azureClusterDetails)
+                    .doOnCompleted(() -> {
+                        List<IClusterDetail> allClusterDetails = new ArrayList<>(clusterDetails);
+                        allClusterDetails.addAll(localClusterDetails);
+                        ClusterMetaDataService.getInstance().addCachedClusters(allClusterDetails);
+
+                        prefetchConfigurations(ClusterMetaDataService.getInstance().getCachedClusterDetails());
+                    });
+        });
+    }
+
+    /**
+     * Get the configurations of the running Azure clusters in background with bounded concurrency, so that the
+     * cluster credential and storage accounts are ready before they are used
+     */
+    public void prefetchConfigurations(@NotNull List<IClusterDetail> clusterDetails) {
+        Observable.from(clusterDetails)
+                .filter(clusterDetail -> clusterDetail instanceof ClusterDetail &&
+                        !clusterDetail.isConfigInfoAvailable() &&
+                        "Running".equalsIgnoreCase(clusterDetail.getState()))
+                .flatMap(clusterDetail -> Observable
+                                .fromCallable(() -> {
+                                    clusterDetail.getConfigurationInfo();
+                                    return clusterDetail;
+                                })
+                                .subscribeOn(Schedulers.io())
+                                .onErrorResumeNext(Observable.empty()),
+                        CONFIG_PREFETCH_CONCURRENT)
+                .subscribe(clusterDetail -> {}, err -> {});
+    }
+
+    private synchronized List<IClusterDetail> getLocalClusters() {
         if(!isLIstAdditionalClusterSuccess) {
             hdinsightAdditionalClusterDetails = getAdditionalClusters();
         }
@@ -134,41 +273,56 @@ public class ClusterManagerEx {
             emulatorClusterDetails = getEmulatorClusters();
         }
 
-        isListClusterSuccess = false;
-        com.microsoft.azuretools.sdkmanage.AzureManager manager;
-        try {
-            manager = AuthMethodManager.getInstance().getAzureManager();
-        } catch (Exception ex) {
-            // not authenticated
-            clusterDetails.addAll(hdinsightAdditionalClusterDetails);
-            clusterDetails.addAll(emulatorClusterDetails);
-            ClusterMetaDataService.getInstance().addCachedClusters(clusterDetails);
-            return ClusterMetaDataService.getInstance().getCachedClusterDetails();
+        List<IClusterDetail> clusterDetails = new ArrayList<>(hdinsightAdditionalClusterDetails);
+        clusterDetails.addAll(emulatorClusterDetails);
+        return clusterDetails;
+    }
+
+    /**
+     * Serve the clusters from the snapshot saved by the last successful listing at once and refresh them in
+     * background, the differences found by refreshing are merged into cache as cluster change events.
+     * Fall back to list the clusters synchronously if there is no snapshot.
+     */
+    private ImmutableList<IClusterDetail> getClusterDetailsFromSnapshot() {
+        ImmutableList<IClusterDetail> snapshot = isSignedIn() ?
+                ClusterMetaDataService.getInstance().loadSnapshot() :
+                ImmutableList.of();
+
+        if (snapshot.isEmpty()) {
+            return getClusterDetails();
         }
 
-        List<SubscriptionDetail> subscriptionList = null;
-        try {
-            subscriptionList = manager.getSubscriptionManager().getSubscriptionDetails();
-            clusterDetails = ClusterManager.getInstance().getHDInsightClustersWithSpecificType(subscriptionList, OSTYPE);
-
-            // TODO: so far we have not a good way to judge whether it is token expired as we have changed the way to list hdinsight clusters
-            isListClusterSuccess = clusterDetails.size() != 0;
-        } catch (AggregatedException aggregateException) {
-            if (dealWithAggregatedException(aggregateException)) {
-                DefaultLoader.getUIHelper().showError("Failed to get HDInsight Cluster, Please make sure there's no login problem first","List HDInsight Cluster Error");
+        synchronized (this) {
+            if (ClusterMetaDataService.getInstance().getCachedClusterDetails().isEmpty()) {
+                List<IClusterDetail> clusterDetails = new ArrayList<>(snapshot);
+                clusterDetails.addAll(getLocalClusters());
+                ClusterMetaDataService.getInstance().addCachedClusters(clusterDetails);
             }
-        } catch (Exception ex) {
-            DefaultLoader.getUIHelper().showError("Failed to get HDInsight Clusters","List HDInsight Cluster Error");
         }
 
-        isSelectedSubscriptionExist = subscriptionList != null && !subscriptionList.isEmpty();
-
-        clusterDetails.addAll(hdinsightAdditionalClusterDetails);
-        clusterDetails.addAll(emulatorClusterDetails);
-        ClusterMetaDataService.getInstance().addCachedClusters(clusterDetails);
+        refreshClusterDetailsInBackground();
         return ClusterMetaDataService.getInstance().getCachedClusterDetails();
     }
 
+    public void refreshClusterDetailsInBackground() {
+        if (!isRefreshingClusters.compareAndSet(false, true)) {
+            return;
+        }
+
+        getClusterDetailsStream()
+                .subscribeOn(Schedulers.io())
+                .doAfterTerminate(() -> isRefreshingClusters.set(false))
+                .subscribe(clusterDetail -> {}, err -> {});
+    }
+
+    private boolean isSignedIn() {
+        try {
+            return AuthMethodManager.getInstance().isSignedIn();
+        } catch (Exception ignored) {
+            return false;
+        }
+    }
+
     public synchronized  void addEmulatorCluster(EmulatorClusterDetail emulatorClusterDetail) {
         emulatorClusterDetails.add(emulatorClusterDetail);
         ClusterMetaDataService.getInstance().addClusterToCache(emulatorClusterDetail);
@@ -208,7 +362,7 @@ public class ClusterManagerEx {
         final ImmutableList<IClusterDetail> cachedClusterDetails =
                 Optional.of(ClusterMetaDataService.getInstance().getCachedClusterDetails())
                         .filter(clusters -> !clusters.isEmpty())
-                        .orElseGet(this::getClusterDetails);
+                        .orElseGet(this::getClusterDetailsFromSnapshot);
 
         for (IClusterDetail clusterDetail : cachedClusterDetails) {
             if (clusterDetail.getName().equals(clusterName)) {
@@ -238,7 +392,7 @@ public class ClusterManagerEx {
         final ImmutableList<IClusterDetail> cachedClusterDetails =
                 Optional.of(ClusterMetaDataService.getInstance().getCachedClusterDetails())
                         .filter(clusters -> !clusters.isEmpty())
-                        .orElseGet(this::getClusterDetails);
+                        .orElseGet(this::getClusterDetailsFromSnapshot);
 
         for( IClusterDetail clusterDetail : cachedClusterDetails) {
             if( clusterDetail.getName().equals(clusterName)) {
@@ -46,5 +46,7 @@ public class CommonConst {
 
     public static final String HDINSIGHT_ADDITIONAL_CLUSTERS = "com.microsoft.azure.hdinsight.AdditionalClusters";
     public static final String EMULATOR_CLUSTERS = "com.microsoft.azure.hdinsight.EmulatorClusters";
+    public static final String HDINSIGHT_CLUSTERS_SNAPSHOT = "com.microsoft.azure.hdinsight.ClustersSnapshot";
+    public static final String SPARK_UPLOADED_ARTIFACTS = "com.microsoft.azure.hdinsight.UploadedArtifacts";
     public static final String CACHED_SPARK_SDK_PATHS = "com.microsoft.azure.hdinsight.cachedSparkSDKpath";
 }
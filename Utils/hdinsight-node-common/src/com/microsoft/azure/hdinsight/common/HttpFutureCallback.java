@@ -23,12 +23,12 @@ package com.microsoft.azure.hdinsight.common;
 
 
 import com.google.common.util.concurrent.FutureCallback;
+import com.microsoft.azure.hdinsight.spark.jobs.JobUtils;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
 import com.sun.net.httpserver.HttpExchange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.OutputStream;
 
 public abstract class  HttpFutureCallback implements FutureCallback<String> {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpFutureCallback.class);
@@ -46,14 +46,6 @@ public abstract class  HttpFutureCallback implements FutureCallback<String> {
 
     protected static void dealWithFailure(@NotNull Throwable throwable,@NotNull final HttpExchange httpExchange) {
         httpExchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        try {
-            String str = throwable.getMessage();
-            httpExchange.sendResponseHeaders(200, str.length());
-            OutputStream stream = httpExchange.getResponseBody();
-            stream.write(str.getBytes());
-            stream.close();
-        }catch (Exception e) {
-            LOGGER.error("get Job History",e);
-        }
+        JobUtils.setResponse(httpExchange, String.valueOf(throwable.getMessage()));
     }
 }
@@ -22,10 +22,10 @@
 package com.microsoft.azure.hdinsight.common;
 
 import com.google.common.util.concurrent.FutureCallback;
+import com.microsoft.azure.hdinsight.spark.jobs.JobUtils;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
 import com.sun.net.httpserver.HttpExchange;
 
-import java.io.OutputStream;
 import java.util.List;
 
 public abstract class MultiHttpFutureCallback implements FutureCallback<List<String>> {
@@ -42,14 +42,6 @@ public abstract class MultiHttpFutureCallback implements FutureCallback<List<Str
 
     private static void dealWithFailure(@NotNull Throwable throwable,@NotNull final HttpExchange httpExchange) {
         httpExchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-        try {
-            String str = throwable.getMessage();
-            httpExchange.sendResponseHeaders(200, str.length());
-            OutputStream stream = httpExchange.getResponseBody();
-            stream.write(str.getBytes());
-            stream.close();
-        }catch (Exception e) {
-            //LOGGER.error("Get job history error", e);
-        }
+        JobUtils.setResponse(httpExchange, String.valueOf(throwable.getMessage()));
     }
 }
@@ -24,8 +24,11 @@ package com.microsoft.azure.hdinsight.common;
 import com.microsoft.azure.hdinsight.sdk.common.HttpResponse;
 import com.microsoft.azure.hdinsight.sdk.storage.IHDIStorageAccount;
 import com.microsoft.azure.hdinsight.sdk.storage.adls.WebHDFSUtils;
+import com.microsoft.azure.hdinsight.spark.common.SparkArtifactIndex;
 import com.microsoft.azuretools.authmanage.AuthMethodManager;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+import com.microsoft.tooling.msservices.helpers.CallableSingleArg;
 import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -118,14 +121,36 @@ public class StreamUtil {
     private static ClassLoader classLoader = streamUtil.getClass().getClassLoader();
     private static final String SPARK_SUBMISSION_FOLDER = "SparkSubmission";
 
-    public static String uploadArtifactToADLS(@NotNull File localFile, IHDIStorageAccount storageAccount, @NotNull String uploadFolderPath) throws Exception {
+    public static String uploadArtifactToADLS(@NotNull File localFile,
+                                              IHDIStorageAccount storageAccount,
+                                              @NotNull String uploadFolderPath,
+                                              @Nullable CallableSingleArg<Void, Long> uploadInProcessHandler) throws Exception {
         String rootPath = storageAccount.getDefaultContainerOrRootPath();
         if(rootPath.startsWith("/")) {
             rootPath = rootPath.substring(1);
         }
 
         final String remoteFilePath = String.format("%s%s/%s/%s", rootPath, SPARK_SUBMISSION_FOLDER, uploadFolderPath, localFile.getName());
-        WebHDFSUtils.uploadFileToADLS(storageAccount, localFile, remoteFilePath, true);
-        return String.format("adl://%s.azuredatalakestore.net/%s", storageAccount.getName(), remoteFilePath);
+        final String uploadedPath = String.format("adl://%s.azuredatalakestore.net/%s", storageAccount.getName(), remoteFilePath);
+
+        // The content-addressed artifact is uploaded only if it isn't there, the recent upload record is renewed only
+        // when the artifact is found in storage, so that a deleted artifact isn't trusted beyond the record's lifetime
+        final boolean isContentAddressed = SparkArtifactIndex.isContentAddressed(uploadFolderPath);
+        if (isContentAddressed && SparkArtifactIndex.getInstance().isRecentlyUploaded(uploadedPath)) {
+            return uploadedPath;
+        }
+
+        if (isContentAddressed && WebHDFSUtils.getFileLength(storageAccount, remoteFilePath) == localFile.length()) {
+            SparkArtifactIndex.getInstance().markUploaded(uploadedPath);
+            return uploadedPath;
+        }
+
+        WebHDFSUtils.uploadFileToADLS(storageAccount, localFile, remoteFilePath, true, uploadInProcessHandler);
+
+        if (isContentAddressed) {
+            SparkArtifactIndex.getInstance().markUploaded(uploadedPath);
+        }
+
+        return uploadedPath;
     }
 }
@@ -24,6 +24,7 @@ package com.microsoft.azure.hdinsight.common.task;
 import com.google.common.util.concurrent.FutureCallback;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.common.HttpClientPool;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
@@ -34,7 +35,6 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.log4j.Logger;
 
 import java.nio.charset.Charset;
@@ -58,16 +58,20 @@ public class LivyTask extends Task<String> {
         }
     }
 
+    @Override
+    public String getConcurrencyKey() {
+        return clusterDetail.getConnectionUrl();
+    }
+
     @Override
     public String call() throws Exception {
-        CloseableHttpClient httpclient = HttpClients.custom().setDefaultCredentialsProvider(credentialsProvider).build();
+        CloseableHttpClient httpclient = HttpClientPool.getInstance().getClient(clusterDetail.getConnectionUrl(), credentialsProvider);
         HttpGet httpGet = new HttpGet(path);
         httpGet.addHeader("Content-Type", "application/json");
-        CloseableHttpResponse response = httpclient.execute(httpGet);
-        int code = response.getStatusLine().getStatusCode();
+        try (CloseableHttpResponse response = httpclient.execute(httpGet)) {
+            HttpEntity httpEntity = response.getEntity();
 
-        HttpEntity httpEntity = response.getEntity();
-
-        return IOUtils.toString(httpEntity.getContent(), Charset.forName("utf-8"));
+            return IOUtils.toString(httpEntity.getContent(), Charset.forName("utf-8"));
+        }
     }
 }
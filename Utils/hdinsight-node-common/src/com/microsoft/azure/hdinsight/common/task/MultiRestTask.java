@@ -25,6 +25,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.microsoft.azure.hdinsight.common.HttpResponseWithoutHeader;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.common.HttpClientPool;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -33,7 +34,6 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
 import java.util.ArrayList;
@@ -55,19 +55,25 @@ public class MultiRestTask extends Task<List<String>> {
         }
     }
 
+    @Override
+    public String getConcurrencyKey() {
+        return clusterDetail.getConnectionUrl();
+    }
+
     @Override
     public List<String> call() throws Exception {
-        CloseableHttpClient httpclient = HttpClients.custom().setDefaultCredentialsProvider(credentialsProvider).build();
+        CloseableHttpClient httpclient = HttpClientPool.getInstance().getClient(clusterDetail.getConnectionUrl(), credentialsProvider);
         List<String> results = new ArrayList<>();
         for(String path: paths) {
             HttpGet httpGet = new HttpGet(path);
             httpGet.addHeader("Content-Type", "application/json");
-            CloseableHttpResponse response = httpclient.execute(httpGet);
-            int code = response.getStatusLine().getStatusCode();
-            if(code == 200 || code == 201) {
-                results.add(EntityUtils.toString(response.getEntity()));
-            } else {
-                throw new HDIException(response.getStatusLine().getReasonPhrase(), code);
+            try (CloseableHttpResponse response = httpclient.execute(httpGet)) {
+                int code = response.getStatusLine().getStatusCode();
+                if (code == 200 || code == 201) {
+                    results.add(EntityUtils.toString(response.getEntity()));
+                } else {
+                    throw new HDIException(response.getStatusLine().getReasonPhrase(), code);
+                }
             }
         }
 
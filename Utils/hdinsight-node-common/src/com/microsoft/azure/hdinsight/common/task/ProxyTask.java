@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.common.task;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
+import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.common.HttpClientPool;
+import com.microsoft.azure.hdinsight.spark.jobs.JobUtils;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * The task to stream the upstream response to the job view HTTP exchanges as is, the status code, the content type
+ * and the raw body bytes are passed through without decoding or buffering. The task result is the status code.
+ */
+public class ProxyTask extends Task<Integer> {
+    private static final Logger LOG = LoggerFactory.getLogger(ProxyTask.class);
+
+    protected final IClusterDetail clusterDetail;
+    protected final String path;
+    private final Supplier<Collection<HttpExchange>> httpExchanges;
+    private final CredentialsProvider credentialsProvider =  new BasicCredentialsProvider();
+
+    public ProxyTask(@NotNull IClusterDetail clusterDetail,
+                     @NotNull String path,
+                     @NotNull HttpExchange httpExchange,
+                     @NotNull FutureCallback<Integer> callback) {
+        this(clusterDetail, path, () -> Collections.singletonList(httpExchange), callback);
+    }
+
+    /**
+     * @param httpExchanges the supplier of the exchanges to stream to, which is called when the upstream responds
+     */
+    public ProxyTask(@NotNull IClusterDetail clusterDetail,
+                     @NotNull String path,
+                     @NotNull Supplier<Collection<HttpExchange>> httpExchanges,
+                     @NotNull FutureCallback<Integer> callback) {
+        super(callback);
+        this.clusterDetail = clusterDetail;
+        this.path = path;
+        this.httpExchanges = httpExchanges;
+        try {
+            credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(clusterDetail.getHttpUserName(), clusterDetail.getHttpPassword()));
+        } catch (HDIException e) {
+            LOG.warn("Failed to get the HTTP credential of the cluster " + clusterDetail.getName(), e);
+        }
+    }
+
+    @Override
+    public String getConcurrencyKey() {
+        return clusterDetail.getConnectionUrl();
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        CloseableHttpClient httpclient = HttpClientPool.getInstance().getClient(clusterDetail.getConnectionUrl(), credentialsProvider);
+        HttpGet httpGet = new HttpGet(path);
+        httpGet.addHeader("Content-Type", "application/json");
+
+        try (CloseableHttpResponse response = httpclient.execute(httpGet)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            JobUtils.setResponse(httpExchanges.get(), response.getEntity(), statusCode);
+
+            return statusCode;
+        }
+    }
+}
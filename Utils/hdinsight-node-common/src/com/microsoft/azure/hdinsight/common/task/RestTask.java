@@ -24,6 +24,7 @@ package com.microsoft.azure.hdinsight.common.task;
 import com.google.common.util.concurrent.FutureCallback;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.common.HttpClientPool;
 import com.microsoft.azure.hdinsight.sdk.common.HttpResponse;
 import com.microsoft.azure.hdinsight.common.HttpResponseWithoutHeader;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
@@ -35,7 +36,6 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -59,18 +59,24 @@ public class RestTask extends Task<String> {
         }
     }
 
+    @Override
+    public String getConcurrencyKey() {
+        return clusterDetail.getConnectionUrl();
+    }
+
     @Override
     public String call() throws Exception {
-        CloseableHttpClient httpclient = HttpClients.custom().setDefaultCredentialsProvider(credentialsProvider).build();
+        CloseableHttpClient httpclient = HttpClientPool.getInstance().getClient(clusterDetail.getConnectionUrl(), credentialsProvider);
         HttpGet httpGet = new HttpGet(path);
         httpGet.addHeader("Content-Type", "application/json");
 
-        CloseableHttpResponse response = httpclient.execute(httpGet);
-        HttpResponseWithoutHeader header = getResultFromHttpResponse(response);
-        if(header.getStatusCode() == 200 || header.getStatusCode() == 201) {
-            return header.getMessage();
-        } else {
-            throw new HDIException(header.getReason(), header.getStatusCode());
+        try (CloseableHttpResponse response = httpclient.execute(httpGet)) {
+            HttpResponseWithoutHeader header = getResultFromHttpResponse(response);
+            if (header.getStatusCode() == 200 || header.getStatusCode() == 201) {
+                return header.getMessage();
+            } else {
+                throw new HDIException(header.getReason(), header.getStatusCode());
+            }
         }
     }
 
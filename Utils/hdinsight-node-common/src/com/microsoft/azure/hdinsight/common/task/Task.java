@@ -22,6 +22,7 @@
 package com.microsoft.azure.hdinsight.common.task;
 
 import com.google.common.util.concurrent.FutureCallback;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
 import com.microsoft.azuretools.azurecommons.helpers.Nullable;
 
 import java.util.concurrent.Callable;
@@ -33,10 +34,39 @@ public abstract class Task<V> implements Callable<V> {
 
     protected FutureCallback<V> callback;
 
+    private Priority priority = Priority.INTERACTIVE;
+
     public Task(@Nullable FutureCallback<V> callback) {
             this.callback = callback;
     }
 
+    /**
+     * The task priority, the interactive tasks are taken from the queue before the background ones
+     */
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public Task<V> setPriority(@NotNull Priority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Get the key to limit the concurrent running tasks with, such as the cluster connection URL
+     *
+     * @return the concurrency key, null for no limit
+     */
+    @Nullable
+    public String getConcurrencyKey() {
+        return null;
+    }
+
     public static final FutureCallback<Object> EMPTY_CALLBACK = new FutureCallback<Object>() {
         @Override
         public void onSuccess(Object o) {
@@ -48,4 +78,9 @@ public abstract class Task<V> implements Callable<V> {
             logger.info("task failed");
         }
     };
+
+    @SuppressWarnings("unchecked")
+    public static <V> FutureCallback<V> emptyCallback() {
+        return (FutureCallback<V>) EMPTY_CALLBACK;
+    }
 }
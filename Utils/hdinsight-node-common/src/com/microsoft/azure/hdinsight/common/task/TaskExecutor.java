@@ -23,20 +23,314 @@ package com.microsoft.azure.hdinsight.common.task;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * The shared executor of the HDInsight tasks, with a bounded thread pool and work queue. The interactive tasks
+ * are taken before the background ones, and the tasks with the same concurrency key (the cluster) are limited
+ * to run at most {@link #getPerClusterLimit()} at a time. When the queue is full, the task fails with
+ * {@link RejectedExecutionException} instead of running in the submitting thread, which may be a timer thread.
+ *
+ * A task cancelled before it starts is removed from the queue. A running task keeps its cluster slot until the
+ * task body returns, even if it has been cancelled.
+ *
+ * The sizes can be configured with the system properties hdinsight.task.threads, hdinsight.task.queueCapacity
+ * and hdinsight.task.perClusterLimit.
+ */
 public class TaskExecutor {
-    private static ListeningExecutorService executors = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+    public static final int THREADS = Integer.getInteger("hdinsight.task.threads", 16);
+    public static final int QUEUE_CAPACITY = Integer.getInteger("hdinsight.task.queueCapacity", 256);
+    public static final int DEFAULT_PER_CLUSTER_LIMIT = Integer.getInteger("hdinsight.task.perClusterLimit", 6);
+
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final ThreadPoolExecutor executors = new ThreadPoolExecutor(
+            THREADS,
+            THREADS,
+            60L,
+            TimeUnit.SECONDS,
+            new BoundedPriorityBlockingQueue(QUEUE_CAPACITY),
+            new ThreadFactoryBuilder().setNameFormat("hdinsight-task-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    static {
+        executors.allowCoreThreadTimeOut(true);
+    }
+
+    private static final ConcurrentMap<String, KeyLimiter> limiters = new ConcurrentHashMap<>();
+    private static volatile int perClusterLimit = DEFAULT_PER_CLUSTER_LIMIT;
+
+    private static final TaskLatencyHistogram queueLatency = new TaskLatencyHistogram();
+    private static final TaskLatencyHistogram runLatency = new TaskLatencyHistogram();
 
     public static <T> ListenableFuture<T> submit(@NotNull Task<T> task) {
-        final ListenableFuture<T> listenableFuture = executors.submit(task);
-        Futures.addCallback(listenableFuture, task.callback);
-        return listenableFuture;
+        final String key = task.getConcurrencyKey();
+        final KeyLimiter limiter = key == null ? null : limiters.computeIfAbsent(key.toLowerCase(), k -> new KeyLimiter());
+        final PrioritizedCommand<T> command = new PrioritizedCommand<>(task, limiter, sequence.getAndIncrement());
+
+        if (task.callback != null) {
+            Futures.addCallback(command.future, task.callback);
+        }
+
+        // Drop the command from the queues once cancelled, the listener is also called when the task completes
+        command.future.addListener(() -> {
+            if (command.future.isCancelled()) {
+                command.withdraw();
+            }
+        }, MoreExecutors.directExecutor());
+
+        if (limiter == null) {
+            dispatch(command);
+        } else {
+            limiter.execute(command);
+        }
+
+        return command.future;
+    }
+
+    /**
+     * Submit the background work, such as the cache refreshing, which is taken after the interactive tasks
+     *
+     * @param concurrencyKey the key to limit the concurrent running tasks with, null for no limit
+     * @param callable the work to run
+     */
+    public static <T> ListenableFuture<T> submitBackground(@Nullable final String concurrencyKey,
+                                                           @NotNull final Callable<T> callable) {
+        return submit(new Task<T>(null) {
+            @Override
+            public String getConcurrencyKey() {
+                return concurrencyKey;
+            }
+
+            @Override
+            public T call() throws Exception {
+                return callable.call();
+            }
+        }.setPriority(Task.Priority.BACKGROUND));
+    }
+
+    public static int getPerClusterLimit() {
+        return perClusterLimit;
+    }
+
+    /**
+     * Set the max running tasks of one cluster, it takes effect for the tasks to dispatch
+     */
+    public static void setPerClusterLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The per cluster limit should be positive: " + limit);
+        }
+
+        perClusterLimit = limit;
+    }
+
+    /**
+     * Get the count of the tasks waiting, both in the work queue and held by the per cluster limits
+     */
+    public static int getQueueDepth() {
+        return executors.getQueue().size() + limiters.values().stream().mapToInt(KeyLimiter::getPendingCount).sum();
+    }
+
+    public static int getActiveCount() {
+        return executors.getActiveCount();
+    }
+
+    public static long getCompletedTaskCount() {
+        return executors.getCompletedTaskCount();
+    }
+
+    /**
+     * Get the latency histogram from the task submitted to started
+     */
+    @NotNull
+    public static TaskLatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * Get the latency histogram of the task running
+     */
+    @NotNull
+    public static TaskLatencyHistogram getRunLatency() {
+        return runLatency;
+    }
+
+    /**
+     * Hand the command to the pool, or fail it if the work queue is full
+     *
+     * @return false if the command is rejected
+     */
+    private static boolean dispatch(@NotNull PrioritizedCommand<?> command) {
+        try {
+            executors.execute(command);
+            return true;
+        } catch (RejectedExecutionException e) {
+            command.reject(e);
+            return false;
+        }
+    }
+
+    private static class PrioritizedCommand<T> implements Runnable, Comparable<PrioritizedCommand<?>> {
+        private final ListenableFutureTask<T> future;
+        private final Task.Priority priority;
+        private final long sequence;
+        @Nullable
+        private final KeyLimiter limiter;
+        private final long submitNanos = System.nanoTime();
+        // Set when the command leaves the queues for good, to release the cluster slot only once
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        @Nullable
+        private volatile RejectedExecutionException rejection;
+
+        PrioritizedCommand(@NotNull Task<T> task, @Nullable KeyLimiter limiter, long sequence) {
+            this.priority = task.getPriority();
+            this.limiter = limiter;
+            this.sequence = sequence;
+            this.future = ListenableFutureTask.create(() -> {
+                if (rejection != null) {
+                    throw rejection;
+                }
+
+                final long startNanos = System.nanoTime();
+                queueLatency.record(startNanos - submitNanos);
+
+                try {
+                    return task.call();
+                } finally {
+                    runLatency.record(System.nanoTime() - startNanos);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Returns after the task body returns, even if the task is cancelled while running
+                future.run();
+            } finally {
+                finish();
+            }
+        }
+
+        /**
+         * Fail the task without running it
+         */
+        void reject(@NotNull RejectedExecutionException e) {
+            rejection = e;
+            future.run();
+            finished.set(true);
+        }
+
+        /**
+         * Remove the cancelled command from the queues, the command taken by a worker is finished by the worker
+         */
+        void withdraw() {
+            if (executors.remove(this)) {
+                finish();
+            } else if (limiter != null) {
+                limiter.remove(this);
+            }
+        }
+
+        private void finish() {
+            if (finished.compareAndSet(false, true) && limiter != null) {
+                limiter.release();
+            }
+        }
+
+        @Override
+        public int compareTo(@NotNull PrioritizedCommand<?> other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * The priority queue refusing the offers beyond the capacity, for the executor to apply the rejection policy
+     */
+    private static class BoundedPriorityBlockingQueue extends PriorityBlockingQueue<Runnable> {
+        private final int capacity;
+
+        BoundedPriorityBlockingQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            return size() < capacity && super.offer(runnable);
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return Math.max(0, capacity - size());
+        }
+    }
+
+    /**
+     * The running limit of the tasks with the same key, the tasks beyond the limit are held until one finishes
+     */
+    private static class KeyLimiter {
+        private final Queue<PrioritizedCommand<?>> pending = new PriorityQueue<>();
+        private int running = 0;
+
+        void execute(@NotNull PrioritizedCommand<?> command) {
+            synchronized (this) {
+                if (running >= perClusterLimit) {
+                    pending.add(command);
+                    return;
+                }
+
+                running++;
+            }
+
+            dispatchOrNext(command);
+        }
+
+        synchronized int getPendingCount() {
+            return pending.size();
+        }
+
+        synchronized void remove(@NotNull PrioritizedCommand<?> command) {
+            pending.remove(command);
+        }
+
+        /**
+         * Called when a running command finishes, its slot is taken by the next pending one
+         */
+        void release() {
+            dispatchOrNext(next());
+        }
+
+        private void dispatchOrNext(@Nullable PrioritizedCommand<?> command) {
+            // A rejected command doesn't hold the slot, try the next pending one
+            while (command != null && !dispatch(command)) {
+                command = next();
+            }
+        }
+
+        @Nullable
+        private synchronized PrioritizedCommand<?> next() {
+            PrioritizedCommand<?> next = pending.poll();
+            if (next == null) {
+                running--;
+            }
+
+            return next;
+        }
     }
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.common.task;
+
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The fixed buckets latency histogram, thread-safe and lock-free for recording
+ */
+public class TaskLatencyHistogram {
+    // The inclusive upper bounds of the buckets in milliseconds, the last bucket is for the rest
+    private static final long[] BUCKET_BOUNDS_MS = { 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, Long.MAX_VALUE };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS_MS.length);
+
+    public void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (millis > BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+
+        counts.incrementAndGet(bucket);
+    }
+
+    @NotNull
+    public long[] getBucketBoundsMs() {
+        return BUCKET_BOUNDS_MS.clone();
+    }
+
+    /**
+     * Get the snapshot of the counts, indexed as the bucket bounds
+     */
+    @NotNull
+    public long[] getCounts() {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+
+        return snapshot;
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int i = 0; i < counts.length(); i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+
+            result.append(BUCKET_BOUNDS_MS[i] == Long.MAX_VALUE ? "inf" : "<=" + BUCKET_BOUNDS_MS[i] + "ms")
+                  .append(": ")
+                  .append(counts.get(i));
+        }
+
+        return result.append("}").toString();
+    }
+}
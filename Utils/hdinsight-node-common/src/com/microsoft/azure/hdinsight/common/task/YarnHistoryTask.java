@@ -52,6 +52,11 @@ public class YarnHistoryTask extends Task<String> {
         }
     }
 
+    @Override
+    public String getConcurrencyKey() {
+        return clusterDetail.getConnectionUrl();
+    }
+
     @Override
     public String call() throws Exception {
         WEB_CLIENT.setCredentialsProvider(credentialsProvider);
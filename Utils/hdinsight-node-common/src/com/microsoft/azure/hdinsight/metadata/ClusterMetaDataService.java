@@ -22,16 +22,42 @@
 package com.microsoft.azure.hdinsight.metadata;
 
 import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.microsoft.azure.hdinsight.common.CommonConst;
+import com.microsoft.azure.hdinsight.sdk.cluster.ClusterDetail;
+import com.microsoft.azure.hdinsight.sdk.cluster.ClusterRawInfo;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
+import com.microsoft.azuretools.authmanage.AuthMethodManager;
+import com.microsoft.azuretools.authmanage.models.AuthMethodDetails;
+import com.microsoft.azuretools.authmanage.models.SubscriptionDetail;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+import com.microsoft.azuretools.azurecommons.helpers.StringHelper;
+import com.microsoft.tooling.msservices.components.DefaultLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.subjects.PublishSubject;
+import rx.subjects.SerializedSubject;
+import rx.subjects.Subject;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 
 public class ClusterMetaDataService {
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterMetaDataService.class);
+    private static final int SNAPSHOT_VERSION = 1;
+
     private static ClusterMetaDataService instance = new ClusterMetaDataService();
-    private ImmutableList<IClusterDetail> cachedClusters = ImmutableList.of();
+    private volatile ImmutableList<IClusterDetail> cachedClusters = ImmutableList.of();
+    private final Subject<ClusterChangeEvent, ClusterChangeEvent> clusterChanges =
+            new SerializedSubject<>(PublishSubject.create());
 
     private ClusterMetaDataService() {
     }
@@ -44,17 +70,58 @@ public class ClusterMetaDataService {
         return cachedClusters;
     }
 
+    /**
+     * Get the changes of the cached clusters, the events are emitted after the cache is changed
+     */
+    public Observable<ClusterChangeEvent> getClusterChanges() {
+        return clusterChanges;
+    }
+
+    /**
+     * Merge the clusters listed into the cache. The clusters unchanged keep their instances in cache with the
+     * configuration got, and the changes are emitted as events.
+     */
     public void addCachedClusters(@NotNull List<IClusterDetail> clusterDetails) {
-        cachedClusters = ImmutableList.copyOf(clusterDetails);
+        List<ClusterChangeEvent> changes = new ArrayList<>();
+
+        synchronized (this) {
+            Map<String, IClusterDetail> existing = new LinkedHashMap<>();
+            cachedClusters.forEach(cluster -> existing.put(cluster.getName(), cluster));
+
+            ImmutableList.Builder<IClusterDetail> merged = new ImmutableList.Builder<>();
+            for (IClusterDetail cluster : clusterDetails) {
+                IClusterDetail old = existing.remove(cluster.getName());
+
+                if (old == null) {
+                    merged.add(cluster);
+                    changes.add(new ClusterChangeEvent(ClusterChangeEvent.Type.ADDED, cluster));
+                } else if (isSameCluster(old, cluster)) {
+                    merged.add(old);
+                } else {
+                    merged.add(cluster);
+                    changes.add(new ClusterChangeEvent(ClusterChangeEvent.Type.UPDATED, cluster));
+                }
+            }
+
+            existing.values().forEach(cluster ->
+                    changes.add(new ClusterChangeEvent(ClusterChangeEvent.Type.REMOVED, cluster)));
+
+            cachedClusters = merged.build();
+        }
+
+        changes.forEach(clusterChanges::onNext);
     }
 
     public boolean addClusterToCache(@NotNull IClusterDetail clusterDetail) {
-        if (cachedClusters.stream().map(IClusterDetail::getName).anyMatch(clusterDetail.getName()::equals)) {
-            return false;
-        }
+        synchronized (this) {
+            if (cachedClusters.stream().map(IClusterDetail::getName).anyMatch(clusterDetail.getName()::equals)) {
+                return false;
+            }
 
-        cachedClusters = new ImmutableList.Builder<IClusterDetail>().addAll(cachedClusters).add(clusterDetail).build();
+            cachedClusters = new ImmutableList.Builder<IClusterDetail>().addAll(cachedClusters).add(clusterDetail).build();
+        }
 
+        clusterChanges.onNext(new ClusterChangeEvent(ClusterChangeEvent.Type.ADDED, clusterDetail));
         return true;
     }
 
@@ -68,16 +135,157 @@ public class ClusterMetaDataService {
     }
 
     public boolean removeClusterFromCache(@NotNull IClusterDetail clusterDetailToRemove) {
-        if (cachedClusters.stream().map(IClusterDetail::getName).noneMatch(clusterDetailToRemove.getName()::equals)) {
-            return false;
-        }
+        synchronized (this) {
+            if (cachedClusters.stream().map(IClusterDetail::getName).noneMatch(clusterDetailToRemove.getName()::equals)) {
+                return false;
+            }
 
-        cachedClusters = new ImmutableList.Builder<IClusterDetail>()
-                .addAll(cachedClusters.stream()
-                                      .filter(clusterDetail -> !clusterDetail.getName().equals(clusterDetailToRemove.getName()))
-                                      .collect(Collectors.toList()))
-                .build();
+            cachedClusters = new ImmutableList.Builder<IClusterDetail>()
+                    .addAll(cachedClusters.stream()
+                                          .filter(clusterDetail -> !clusterDetail.getName().equals(clusterDetailToRemove.getName()))
+                                          .collect(Collectors.toList()))
+                    .build();
+        }
 
+        clusterChanges.onNext(new ClusterChangeEvent(ClusterChangeEvent.Type.REMOVED, clusterDetailToRemove));
         return true;
     }
+
+    /**
+     * Save the snapshot of the Azure subscription clusters for the next start. Only the subscription and the
+     * raw cluster information listed are saved, the cluster credentials and configurations are not.
+     * The snapshot is owned by the account signed in, and won't be loaded for other accounts.
+     */
+    public void saveSnapshot(@NotNull List<IClusterDetail> clusterDetails) {
+        String account = getSignedInAccount();
+        if (account == null) {
+            return;
+        }
+
+        ClusterSnapshot snapshot = new ClusterSnapshot();
+        snapshot.version = SNAPSHOT_VERSION;
+        snapshot.account = account;
+        snapshot.savedTime = System.currentTimeMillis();
+        snapshot.clusters = clusterDetails.stream()
+                .filter(cluster -> cluster instanceof ClusterDetail)
+                .map(cluster -> new ClusterSnapshot.Entry(
+                        ((ClusterDetail) cluster).getSubscription(), ((ClusterDetail) cluster).getClusterRawInfo()))
+                .collect(Collectors.toList());
+
+        try {
+            DefaultLoader.getIdeHelper().setApplicationProperty(CommonConst.HDINSIGHT_CLUSTERS_SNAPSHOT, new Gson().toJson(snapshot));
+        } catch (Exception ex) {
+            LOG.warn("Failed to save the HDInsight clusters snapshot", ex);
+        }
+    }
+
+    /**
+     * Load the Azure subscription clusters saved by the last {@link #saveSnapshot(List)} of the account signed in
+     *
+     * @return the clusters saved, empty for no valid snapshot
+     */
+    @NotNull
+    public ImmutableList<IClusterDetail> loadSnapshot() {
+        try {
+            String json = DefaultLoader.getIdeHelper().getApplicationProperty(CommonConst.HDINSIGHT_CLUSTERS_SNAPSHOT);
+            if (StringHelper.isNullOrWhiteSpace(json)) {
+                return ImmutableList.of();
+            }
+
+            ClusterSnapshot snapshot = new Gson().fromJson(json, ClusterSnapshot.class);
+            if (snapshot == null || snapshot.version != SNAPSHOT_VERSION || snapshot.clusters == null ||
+                    !Objects.equals(snapshot.account, getSignedInAccount())) {
+                return ImmutableList.of();
+            }
+
+            ImmutableList.Builder<IClusterDetail> clusters = new ImmutableList.Builder<>();
+            for (ClusterSnapshot.Entry entry : snapshot.clusters) {
+                try {
+                    clusters.add(new ClusterDetail(entry.subscription, entry.clusterRawInfo));
+                } catch (Exception ignored) {
+                    // Skip the incomplete entry
+                }
+            }
+
+            return clusters.build();
+        } catch (JsonParseException ex) {
+            LOG.warn("Ignore the broken HDInsight clusters snapshot", ex);
+            DefaultLoader.getIdeHelper().unsetApplicationProperty(CommonConst.HDINSIGHT_CLUSTERS_SNAPSHOT);
+        } catch (Exception ex) {
+            LOG.warn("Failed to load the HDInsight clusters snapshot", ex);
+        }
+
+        return ImmutableList.of();
+    }
+
+    /**
+     * Remove the snapshot saved, such as the account signed out
+     */
+    public void clearSnapshot() {
+        try {
+            DefaultLoader.getIdeHelper().unsetApplicationProperty(CommonConst.HDINSIGHT_CLUSTERS_SNAPSHOT);
+        } catch (Exception ex) {
+            LOG.warn("Failed to clear the HDInsight clusters snapshot", ex);
+        }
+    }
+
+    /**
+     * Get the identity of the account signed in, by the authentication method with the account email
+     * or the service principal credential file
+     *
+     * @return the account identity, null for not signed in
+     */
+    @Nullable
+    private static String getSignedInAccount() {
+        try {
+            AuthMethodManager authMethodManager = AuthMethodManager.getInstance();
+            if (!authMethodManager.isSignedIn()) {
+                return null;
+            }
+
+            AuthMethodDetails details = authMethodManager.getAuthMethodDetails();
+            String identity = details.getAuthMethod() == null ? null :
+                    (StringHelper.isNullOrWhiteSpace(details.getAccountEmail()) ? details.getCredFilePath() : details.getAccountEmail());
+
+            return identity == null ? null : details.getAuthMethod() + ":" + identity.toLowerCase();
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    private static boolean isSameCluster(@NotNull IClusterDetail old, @NotNull IClusterDetail cluster) {
+        if (old == cluster) {
+            return true;
+        }
+
+        if (old instanceof ClusterDetail && cluster instanceof ClusterDetail) {
+            Gson gson = new Gson();
+            ClusterDetail oldDetail = (ClusterDetail) old;
+            ClusterDetail newDetail = (ClusterDetail) cluster;
+
+            return Objects.equals(oldDetail.getSubscription(), newDetail.getSubscription()) &&
+                    gson.toJson(oldDetail.getClusterRawInfo()).equals(gson.toJson(newDetail.getClusterRawInfo()));
+        }
+
+        return false;
+    }
+
+    private static class ClusterSnapshot {
+        private int version;
+        private long savedTime;
+        @Nullable
+        private String account;
+        @Nullable
+        private List<Entry> clusters;
+
+        private static class Entry {
+            private SubscriptionDetail subscription;
+            private ClusterRawInfo clusterRawInfo;
+
+            Entry(SubscriptionDetail subscription, ClusterRawInfo clusterRawInfo) {
+                this.subscription = subscription;
+                this.clusterRawInfo = clusterRawInfo;
+            }
+        }
+    }
 }
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -59,7 +60,13 @@ public class ClusterDetail implements IClusterDetail {
     private IHDIStorageAccount defaultStorageAccount;
     private List<HDStorageAccount> additionalStorageAccounts;
 
-    private boolean isConfigInfoAvailable = false;
+    /**
+     * The minutes for the configuration got to be reused before getting it again
+     */
+    public static final long CONFIG_INFO_TTL_MINUTES = 30;
+
+    private volatile boolean isConfigInfoAvailable = false;
+    private volatile long configInfoExpireTime = 0;
 
     public ClusterDetail(SubscriptionDetail paramSubscription, ClusterRawInfo paramClusterRawInfo){
         this.subscription = paramSubscription;
@@ -70,7 +77,12 @@ public class ClusterDetail implements IClusterDetail {
     public boolean isEmulator () { return false; }
 
     public boolean isConfigInfoAvailable(){
-        return isConfigInfoAvailable;
+        return isConfigInfoAvailable && System.currentTimeMillis() < configInfoExpireTime;
+    }
+
+    @Override
+    public void invalidateConfigurationInfo() {
+        isConfigInfoAvailable = false;
     }
 
     public String getName(){
@@ -152,6 +164,10 @@ public class ClusterDetail implements IClusterDetail {
         return subscription;
     }
 
+    public ClusterRawInfo getClusterRawInfo(){
+        return clusterRawInfo;
+    }
+
     public int getDataNodes(){
         return dataNodes;
     }
@@ -199,7 +215,15 @@ public class ClusterDetail implements IClusterDetail {
         }
     }
 
-    public void getConfigurationInfo() throws IOException, HDIException, AzureCmdException {
+    /**
+     * Get the cluster configuration, the configuration got is reused within {@link #CONFIG_INFO_TTL_MINUTES} minutes
+     * until it's invalidated. The previous credential and storage accounts are kept for use while getting again.
+     */
+    public synchronized void getConfigurationInfo() throws IOException, HDIException, AzureCmdException {
+        if (isConfigInfoAvailable()) {
+            return;
+        }
+
         IClusterOperation clusterOperation = new ClusterOperationImpl();
         ClusterConfiguration clusterConfiguration =
                 clusterOperation.getClusterConfiguration(subscription, clusterRawInfo.getId());
@@ -219,6 +243,7 @@ public class ClusterDetail implements IClusterDetail {
             }
         }
 
+        configInfoExpireTime = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(CONFIG_INFO_TTL_MINUTES);
         isConfigInfoAvailable = true;
     }
 
@@ -22,24 +22,23 @@
 package com.microsoft.azure.hdinsight.sdk.cluster;
 
 import com.microsoft.azure.hdinsight.sdk.common.AggregatedException;
-import com.microsoft.azure.hdinsight.sdk.common.CommonRunnable;
+import com.microsoft.azure.hdinsight.sdk.common.AuthenticationErrorHandler;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
 import com.microsoft.azuretools.authmanage.models.SubscriptionDetail;
-import com.microsoft.azuretools.azurecommons.helpers.AzureCmdException;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import rx.Observable;
+import rx.schedulers.Schedulers;
 
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class ClusterManager {
 
     private final int MAX_CONCURRENT = 5;
-    private final int TIME_OUT = 5 * 60;
+    private final int SUBSCRIPTION_TIME_OUT = 60;
+    private final int SUBSCRIPTION_RETRIES = 2;
 
     // Singleton Instance
     private static ClusterManager instance = null;
@@ -70,7 +69,7 @@ public class ClusterManager {
     public synchronized List<IClusterDetail> getHDInsightClusers(
             List<SubscriptionDetail> subscriptions) throws AggregatedException {
 
-        return getClusterDetails(subscriptions);
+        return toBlockingList(getClusterDetails(subscriptions));
     }
 
     /**
@@ -83,69 +82,85 @@ public class ClusterManager {
     public synchronized List<IClusterDetail> getHDInsightClustersWithSpecificType(
             List<SubscriptionDetail> subscriptions,
             String osType) throws AggregatedException {
-        List<IClusterDetail> clusterDetailList = getClusterDetails(subscriptions);
-
-        Map<String, IClusterDetail> filterClusterDetailMap = new HashMap<>();
-        for (IClusterDetail clusterDetail : clusterDetailList) {
-            ClusterType clusterType = clusterDetail.getType();
-            String myOsType = clusterDetail.getOSType();
-            if (clusterType.equals(ClusterType.rserver) || clusterType.equals(ClusterType.spark)) {
-
-                // remove Windows cluster
-               if (myOsType != null && osType != null && !myOsType.equalsIgnoreCase(osType)) {
-                   continue;
-               }
-               filterClusterDetailMap.put(clusterDetail.getName(), clusterDetail);
-            }
-        }
+        return toBlockingList(getHDInsightClustersWithSpecificTypeStream(subscriptions, osType));
+    }
 
-        List<IClusterDetail> filterClusterDetailList = new ArrayList<>();
-        filterClusterDetailList.addAll(filterClusterDetailMap.values());
+    /**
+     * get hdinsight detailed cluster info stream with specific cluster type: Spark and RServer
+     *
+     * The clusters are emitted as soon as their subscription responds, each subscription is listed with its own
+     * timeout and retries. The failures of subscriptions are emitted as an AggregatedException after all clusters
+     * listed. Unsubscribing cancels the listing.
+     *
+     * @param subscriptions
+     * @return detailed cluster info stream with specific cluster type
+     */
+    public Observable<IClusterDetail> getHDInsightClustersWithSpecificTypeStream(
+            @NotNull List<SubscriptionDetail> subscriptions,
+            String osType) {
+        return getClusterDetails(subscriptions)
+                .filter(clusterDetail -> {
+                    ClusterType clusterType = clusterDetail.getType();
+                    String myOsType = clusterDetail.getOSType();
+
+                    // remove Windows cluster
+                    return (clusterType.equals(ClusterType.rserver) || clusterType.equals(ClusterType.spark)) &&
+                            (myOsType == null || osType == null || myOsType.equalsIgnoreCase(osType));
+                })
+                .distinct(IClusterDetail::getName);
+    }
 
-        return filterClusterDetailList;
+    private Observable<IClusterDetail> getClusterDetails(List<SubscriptionDetail> subscriptions) {
+        return Observable.defer(() -> {
+            final List<Exception> aggregateExceptions = Collections.synchronizedList(new ArrayList<>());
+
+            return Observable.from(subscriptions)
+                    .flatMap(subscription -> listClusters(subscription)
+                                    .onErrorResumeNext(err -> {
+                                        aggregateExceptions.add(err instanceof Exception ?
+                                                (Exception) err :
+                                                new HDIException(String.valueOf(err.getMessage()), err));
+
+                                        return Observable.empty();
+                                    }),
+                            MAX_CONCURRENT)
+                    .concatWith(Observable.defer(() -> aggregateExceptions.isEmpty() ?
+                            Observable.empty() :
+                            Observable.error(new AggregatedException(new ArrayList<>(aggregateExceptions)))));
+        });
     }
 
-    private List<IClusterDetail> getClusterDetails(List<SubscriptionDetail> subscriptions) throws AggregatedException {
-        ExecutorService taskExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT);
-        final List<IClusterDetail> cachedClusterList = new ArrayList<>();
-        final List<Exception> aggregateExceptions = new ArrayList<>();
-
-        for (SubscriptionDetail subscription : subscriptions) {
-            taskExecutor.execute(new CommonRunnable<SubscriptionDetail, Exception>(subscription) {
-                @Override
-                public void runSpecificParameter(SubscriptionDetail parameter) throws IOException, HDIException, AzureCmdException {
-                    IClusterOperation clusterOperation = new ClusterOperationImpl();
-                    List<ClusterRawInfo> clusterRawInfoList = clusterOperation.listCluster(parameter);
-                    if (clusterRawInfoList != null) {
-                        for (ClusterRawInfo item : clusterRawInfoList) {
-                            IClusterDetail tempClusterDetail = new ClusterDetail(parameter, item);
-                            synchronized (ClusterManager.class) {
-                                cachedClusterList.add(tempClusterDetail);
-                            }
-                        }
-                    }
-                }
+    private Observable<IClusterDetail> listClusters(SubscriptionDetail subscription) {
+        return Observable.fromCallable(() -> new ClusterOperationImpl().listCluster(subscription))
+                .subscribeOn(Schedulers.io())
+                .timeout(SUBSCRIPTION_TIME_OUT, TimeUnit.SECONDS)
+                .retry((retries, err) -> retries <= SUBSCRIPTION_RETRIES && !isAuthenticationError(err))
+                .flatMapIterable(clusterRawInfoList -> clusterRawInfoList == null ?
+                        Collections.<ClusterRawInfo>emptyList() :
+                        clusterRawInfoList)
+                .map(item -> new ClusterDetail(subscription, item));
+    }
 
-                @Override
-                public void exceptionHandle(Exception e) {
-                    synchronized (aggregateExceptions) {
-                        aggregateExceptions.add(e);
-                    }
-                }
-            });
+    private static boolean isAuthenticationError(Throwable err) {
+        for (Throwable cause = err; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HDIException &&
+                    ((HDIException) cause).getErrorCode() == AuthenticationErrorHandler.AUTH_ERROR_CODE) {
+                return true;
+            }
         }
 
-        taskExecutor.shutdown();
+        return false;
+    }
+
+    private static List<IClusterDetail> toBlockingList(Observable<IClusterDetail> clusterDetails) throws AggregatedException {
         try {
-            taskExecutor.awaitTermination(TIME_OUT, TimeUnit.SECONDS);
-        } catch (InterruptedException exception) {
-            aggregateExceptions.add(exception);
-        }
+            return clusterDetails.toList().toBlocking().single();
+        } catch (RuntimeException ex) {
+            if (ex.getCause() instanceof AggregatedException) {
+                throw (AggregatedException) ex.getCause();
+            }
 
-        if (aggregateExceptions.size() > 0) {
-            throw new AggregatedException(aggregateExceptions);
+            throw ex;
         }
-
-        return cachedClusterList;
     }
-}
\ No newline at end of file
+}
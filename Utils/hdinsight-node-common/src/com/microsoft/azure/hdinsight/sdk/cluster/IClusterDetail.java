@@ -69,5 +69,11 @@ public interface IClusterDetail {
 
     void getConfigurationInfo() throws IOException, HDIException, AzureCmdException;
 
+    /**
+     * Invalidate the configuration got, such as the credential is rejected, to get it again next time
+     */
+    default void invalidateConfigurationInfo() {
+    }
+
     String getSparkVersion();
 }
\ No newline at end of file
@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.sdk.common;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared HTTP clients for HDInsight REST calls (Livy, Yarn, Spark history and so on).
+ *
+ * One pooled client is kept per cluster endpoint and credential, so that the TLS handshake and the connection
+ * to the cluster gateway are reused between requests instead of being established for every call.
+ *
+ * The caller MUST consume or close the response entity to release the connection back into the pool.
+ *
+ * A client removed from the pool (idle expired or by closeAll) is retired rather than closed at once, since a caller
+ * could still be sending a request or reading a response with it. The retired client is closed after a grace period,
+ * once none of its connections is leased.
+ */
+public class HttpClientPool {
+    /**
+     * The maximum connections for all routes of one client
+     */
+    private static final int MAX_TOTAL_CONNECTIONS = 40;
+
+    /**
+     * The maximum connections for one route, HDInsight clusters are reached through only one gateway route
+     */
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 20;
+
+    /**
+     * The keep alive duration if the server doesn't specify one with Keep-Alive header
+     */
+    private static final long DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * The idle duration for a pooled connection to be evicted
+     */
+    private static final long IDLE_CONNECTION_EVICT_SECONDS = 60;
+
+    /**
+     * The idle duration for a client (with its pool) to be closed
+     */
+    private static final long IDLE_CLIENT_EXPIRE_MINUTES = 30;
+
+    /**
+     * The minimum duration for a retired client to be kept, covering the caller which has got the client but not
+     * leased a connection yet
+     */
+    private static final long RETIRED_CLIENT_GRACE_SECONDS = 60;
+
+    private static final long RETIRED_CLIENT_CHECK_INTERVAL_SECONDS = 30;
+
+    private static final int CONNECT_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(30);
+
+    private static HttpClientPool instance = new HttpClientPool();
+
+    private final LoadingCache<ClientKey, PooledClient> clients = CacheBuilder.newBuilder()
+            .expireAfterAccess(IDLE_CLIENT_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .removalListener((RemovalListener<ClientKey, PooledClient>) notification -> retire(notification.getValue()))
+            .build(new CacheLoader<ClientKey, PooledClient>() {
+                @Override
+                public PooledClient load(ClientKey key) throws Exception {
+                    return createClient(key);
+                }
+            });
+
+    // The clients removed from the pool, waiting for their leased connections to be released
+    private final Queue<PooledClient> retiredClients = new ConcurrentLinkedQueue<>();
+
+    private final long retiredClientGraceMillis;
+
+    private HttpClientPool() {
+        this(true, TimeUnit.SECONDS.toMillis(RETIRED_CLIENT_GRACE_SECONDS));
+    }
+
+    HttpClientPool(boolean isRetiredClientCheckScheduled, long retiredClientGraceMillis) {
+        this.retiredClientGraceMillis = retiredClientGraceMillis;
+
+        if (isRetiredClientCheckScheduled) {
+            ScheduledExecutorService retiredClientChecker = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("http-client-pool-%d").setDaemon(true).build());
+
+            retiredClientChecker.scheduleWithFixedDelay(this::closeRetiredClients,
+                    RETIRED_CLIENT_CHECK_INTERVAL_SECONDS, RETIRED_CLIENT_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public static HttpClientPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get the shared client for the cluster, with the cluster HTTP credential set
+     *
+     * @param clusterDetail the cluster to connect
+     * @return the pooled HTTP client
+     * @throws HDIException the exception for getting cluster credential
+     */
+    @NotNull
+    public CloseableHttpClient getClient(@NotNull IClusterDetail clusterDetail) throws HDIException {
+        return getClient(clusterDetail.getConnectionUrl(), clusterDetail.getHttpUserName(), clusterDetail.getHttpPassword());
+    }
+
+    /**
+     * Get the shared client for the endpoint of the URL, with the credential got from the provider
+     *
+     * @param url the URL to connect, only the scheme and authority parts are used as the key
+     * @param credentialsProvider the credential provider, null for no credential
+     * @return the pooled HTTP client
+     */
+    @NotNull
+    public CloseableHttpClient getClient(@NotNull String url, @Nullable CredentialsProvider credentialsProvider) {
+        Credentials credentials = credentialsProvider == null ? null : credentialsProvider.getCredentials(AuthScope.ANY);
+
+        if (credentials == null) {
+            return getClient(url, null, null);
+        }
+
+        return getClient(url,
+                         credentials.getUserPrincipal() == null ? null : credentials.getUserPrincipal().getName(),
+                         credentials.getPassword());
+    }
+
+    /**
+     * Get the shared client for the endpoint of the URL, with the username and password
+     *
+     * @param url the URL to connect, only the scheme and authority parts are used as the key
+     * @param username the username, null for no credential
+     * @param password the password
+     * @return the pooled HTTP client
+     */
+    @NotNull
+    public CloseableHttpClient getClient(@NotNull String url, @Nullable String username, @Nullable String password) {
+        try {
+            return clients.getUnchecked(new ClientKey(getEndpoint(url), username, password)).client;
+        } catch (UncheckedExecutionException ex) {
+            throw new IllegalStateException("Failed to create HTTP client for " + url, ex.getCause());
+        }
+    }
+
+    /**
+     * Close all the clients and their pooled connections, the clients with connections in use are closed after the
+     * connections are released
+     */
+    public void closeAll() {
+        clients.invalidateAll();
+        closeRetiredClients();
+    }
+
+    private void retire(@NotNull PooledClient pooled) {
+        pooled.retiredTime = System.currentTimeMillis();
+        retiredClients.add(pooled);
+    }
+
+    /**
+     * Close the retired clients which have passed the grace period and have no connection leased or being leased
+     */
+    void closeRetiredClients() {
+        long graceExpireTime = System.currentTimeMillis() - retiredClientGraceMillis;
+
+        retiredClients.removeIf(pooled -> {
+            if (pooled.retiredTime > graceExpireTime) {
+                return false;
+            }
+
+            PoolStats stats = pooled.connectionManager.getTotalStats();
+            if (stats.getLeased() > 0 || stats.getPending() > 0) {
+                return false;
+            }
+
+            IOUtils.closeQuietly(pooled.client);
+            return true;
+        });
+    }
+
+    int getRetiredClientCount() {
+        return retiredClients.size();
+    }
+
+    @NotNull
+    private static String getEndpoint(@NotNull String url) {
+        try {
+            URI uri = URI.create(url.trim());
+
+            if (uri.getScheme() != null && uri.getRawAuthority() != null) {
+                return (uri.getScheme() + "://" + uri.getRawAuthority()).toLowerCase();
+            }
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        return url.toLowerCase();
+    }
+
+    @NotNull
+    private static PooledClient createClient(@NotNull ClientKey key) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        // Check the stale connection which is closed by the gateway before leasing it out
+        connectionManager.setValidateAfterInactivity((int) TimeUnit.SECONDS.toMillis(2));
+
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long keepAliveMs = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+
+            return keepAliveMs > 0 ? keepAliveMs : TimeUnit.SECONDS.toMillis(DEFAULT_KEEP_ALIVE_SECONDS);
+        };
+
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        if (key.username != null) {
+            credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(key.username, key.password));
+        }
+
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_EVICT_SECONDS, TimeUnit.SECONDS)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(CONNECT_TIMEOUT_MS)
+                        .setConnectionRequestTimeout(CONNECT_TIMEOUT_MS)
+                        .build())
+                .setDefaultCredentialsProvider(credentialsProvider)
+                .build();
+
+        return new PooledClient(client, connectionManager);
+    }
+
+    private static final class PooledClient {
+        private final CloseableHttpClient client;
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private volatile long retiredTime;
+
+        PooledClient(@NotNull CloseableHttpClient client, @NotNull PoolingHttpClientConnectionManager connectionManager) {
+            this.client = client;
+            this.connectionManager = connectionManager;
+        }
+    }
+
+    private static final class ClientKey {
+        private final String endpoint;
+        private final String username;
+        private final String password;
+
+        ClientKey(@NotNull String endpoint, @Nullable String username, @Nullable String password) {
+            this.endpoint = endpoint;
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, username, password);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+
+            if (!(obj instanceof ClientKey)) {
+                return false;
+            }
+
+            ClientKey that = (ClientKey) obj;
+            return endpoint.equals(that.endpoint) &&
+                    Objects.equals(username, that.username) &&
+                    Objects.equals(password, that.password);
+        }
+    }
+}
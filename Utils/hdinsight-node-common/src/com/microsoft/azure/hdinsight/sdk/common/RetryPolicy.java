@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.sdk.common;
+
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * The retry policy for polling REST services, with exponential backoff, jitter and an overall deadline.
+ *
+ * An attempt returns an empty result for not ready yet, or throws an exception which is retried only if it matches
+ * the retry-on predicate.
+ */
+public class RetryPolicy {
+    /**
+     * One attempt of the call with retries
+     */
+    @FunctionalInterface
+    public interface Attempt<T> {
+        Optional<T> call() throws IOException;
+    }
+
+    private final int maxAttempts;
+    private final long initialDelayMs;
+    private long maxDelayMs = TimeUnit.MINUTES.toMillis(1);
+    private double multiplier = 2;
+    private double jitter = 0.2;
+    private long deadlineMs = 0;
+    private Predicate<Throwable> retryOn = err -> err instanceof IOException;
+
+    /**
+     * @param maxAttempts the maximum attempts, at least one attempt is made
+     * @param initialDelayMs the delay before the first retry, each following one is multiplied
+     */
+    public RetryPolicy(int maxAttempts, long initialDelayMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialDelayMs = Math.max(0, initialDelayMs);
+    }
+
+    public RetryPolicy setMaxDelayMs(long maxDelayMs) {
+        this.maxDelayMs = maxDelayMs;
+        return this;
+    }
+
+    public RetryPolicy setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Set the ratio of random variation of delays, to spread the retries from multiple callers
+     */
+    public RetryPolicy setJitter(double jitter) {
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * Set the overall duration for all attempts, no more retries after it passes. 0 for no deadline.
+     */
+    public RetryPolicy setDeadlineMs(long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+        return this;
+    }
+
+    /**
+     * Set the predicate of the exceptions to retry on, the others are thrown at once
+     */
+    public RetryPolicy setRetryOn(@NotNull Predicate<Throwable> retryOn) {
+        this.retryOn = retryOn;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Call the attempt until it returns a result, or the attempts are used up or the deadline passes
+     *
+     * @return the result got, empty for none got after all attempts
+     * @throws IOException the exception not to retry on, or interrupted when waiting
+     */
+    @NotNull
+    public <T> Optional<T> call(@NotNull Attempt<T> attempt) throws IOException {
+        final long deadline = deadlineMs > 0 ? System.currentTimeMillis() + deadlineMs : Long.MAX_VALUE;
+        long delayMs = initialDelayMs;
+
+        for (int attempts = 1; ; attempts++) {
+            try {
+                Optional<T> result = attempt.call();
+
+                if (result.isPresent()) {
+                    return result;
+                }
+            } catch (IOException | RuntimeException err) {
+                if (!retryOn.test(err)) {
+                    throw err;
+                }
+            }
+
+            long waitMs = getJitteredDelay(delayMs);
+            if (attempts >= maxAttempts || System.currentTimeMillis() + waitMs > deadline) {
+                return Optional.empty();
+            }
+
+            try {
+                Thread.sleep(waitMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted in retry attempting", ex);
+            }
+
+            delayMs = Math.min(maxDelayMs, (long) (delayMs * multiplier));
+        }
+    }
+
+    private long getJitteredDelay(long delayMs) {
+        if (jitter <= 0 || delayMs == 0) {
+            return delayMs;
+        }
+
+        return (long) (delayMs * (1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter)));
+    }
+}
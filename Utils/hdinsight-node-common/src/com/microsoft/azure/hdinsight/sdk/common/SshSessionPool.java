@@ -0,0 +1,362 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.sdk.common;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.microsoft.azure.hdinsight.common.logger.ILogger;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared SSH sessions to HDInsight clusters and emulators, for Spark remote debugging and uploading.
+ *
+ * One authenticated session is kept per host, port, user and credential. The session is leased out to several
+ * callers at the same time, since the port forwardings and channels are multiplexed on the SSH connection. The
+ * session is kept alive with SSH keep-alive messages, and the idle ones are health-checked and closed periodically.
+ *
+ * The caller MUST release the leased session instead of disconnecting it.
+ */
+public class SshSessionPool implements ILogger {
+    public static final int DEFAULT_SSH_PORT = 22;
+
+    /**
+     * The interval to send SSH keep-alive message to the server
+     */
+    private static final int SERVER_ALIVE_INTERVAL_MS = (int) TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * The unanswered keep-alive messages count for the session to be disconnected
+     */
+    private static final int SERVER_ALIVE_COUNT_MAX = 3;
+
+    private static final int CONNECT_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * The idle duration for a session without lease to be closed
+     */
+    private static final long IDLE_SESSION_EXPIRE_MINUTES = 10;
+
+    private static final long HEALTH_CHECK_INTERVAL_SECONDS = 60;
+
+    private static SshSessionPool instance = new SshSessionPool();
+
+    /**
+     * The slot of each host and user, holding the session to lease out to the new callers
+     */
+    private final ConcurrentMap<SessionKey, SessionSlot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * All the sessions not closed yet, including the replaced ones still leased by some callers
+     */
+    private final ConcurrentMap<Session, PooledSession> pooledSessions = new ConcurrentHashMap<>();
+
+    private SshSessionPool() {
+        this(true);
+    }
+
+    SshSessionPool(boolean isHealthCheckScheduled) {
+        if (isHealthCheckScheduled) {
+            ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("ssh-session-pool-%d").setDaemon(true).build());
+
+            healthChecker.scheduleWithFixedDelay(
+                    this::checkIdleSessions, HEALTH_CHECK_INTERVAL_SECONDS, HEALTH_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public static SshSessionPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Lease a connected session for the host and user, the pooled one is reused if it's still alive
+     *
+     * @param host the SSH host
+     * @param port the SSH port
+     * @param user the SSH user
+     * @param password the password, null if the private key file is used
+     * @param privateKeyFile the private key file, null if the password is used
+     * @return the connected session, which should be given back by {@link #release(Session)}
+     * @throws JSchException JSch connecting or authentication exceptions
+     */
+    @NotNull
+    public Session acquire(@NotNull String host,
+                           int port,
+                           @NotNull String user,
+                           @Nullable String password,
+                           @Nullable File privateKeyFile) throws JSchException {
+        SessionKey key = new SessionKey(host, port, user, password, privateKeyFile);
+
+        while (true) {
+            SessionSlot slot = slots.computeIfAbsent(key, SessionSlot::new);
+
+            synchronized (slot) {
+                if (slots.get(key) != slot) {
+                    // Closed by the health checker just now, try the new one
+                    continue;
+                }
+
+                PooledSession pooled = slot.current;
+
+                if (pooled == null || !pooled.session.isConnected()) {
+                    if (pooled != null) {
+                        // The lessees keep the broken session until they release it
+                        retire(pooled);
+                    }
+
+                    Session session;
+                    try {
+                        session = connect(key);
+                    } catch (JSchException ex) {
+                        slots.remove(key, slot);
+
+                        throw ex;
+                    }
+
+                    pooled = new PooledSession(slot, session);
+                    pooledSessions.put(session, pooled);
+                    slot.current = pooled;
+                }
+
+                pooled.leases++;
+
+                return pooled.session;
+            }
+        }
+    }
+
+    /**
+     * Give back the leased session into the pool, the session replaced or broken is closed when all its leases
+     * are given back
+     *
+     * @param session the session got by {@link #acquire(String, int, String, String, File)}
+     */
+    public void release(@NotNull Session session) {
+        PooledSession pooled = pooledSessions.get(session);
+        if (pooled == null) {
+            return;
+        }
+
+        synchronized (pooled.slot) {
+            pooled.leases = Math.max(0, pooled.leases - 1);
+            pooled.lastReleasedTime = System.currentTimeMillis();
+
+            if (pooled.leases == 0 && (pooled.slot.current != pooled || !session.isConnected())) {
+                if (pooled.slot.current == pooled) {
+                    slots.remove(pooled.slot.key, pooled.slot);
+                }
+
+                retire(pooled);
+            }
+        }
+    }
+
+    /**
+     * Disconnect all the pooled sessions
+     */
+    public void closeAll() {
+        pooledSessions.keySet().forEach(Session::disconnect);
+
+        pooledSessions.clear();
+        slots.clear();
+    }
+
+    /**
+     * Get the leases count of the session
+     *
+     * @param session the session got by {@link #acquire(String, int, String, String, File)}
+     * @return the leases count, 0 if the session has been closed by the pool
+     */
+    int getLeases(@NotNull Session session) {
+        PooledSession pooled = pooledSessions.get(session);
+        if (pooled == null) {
+            return 0;
+        }
+
+        synchronized (pooled.slot) {
+            return pooled.leases;
+        }
+    }
+
+    @NotNull
+    Session connect(@NotNull SessionKey key) throws JSchException {
+        JSch jsch = new JSch();
+
+        if (key.privateKeyFile != null) {
+            jsch.addIdentity(key.privateKeyFile);
+        }
+
+        Session session = jsch.getSession(key.user, key.host, key.port);
+
+        if (key.password != null) {
+            session.setPassword(key.password);
+        }
+
+        Properties config = new Properties();
+        config.put("StrictHostKeyChecking", "no");
+        session.setConfig(config);
+
+        session.setServerAliveInterval(SERVER_ALIVE_INTERVAL_MS);
+        session.setServerAliveCountMax(SERVER_ALIVE_COUNT_MAX);
+        session.connect(CONNECT_TIMEOUT_MS);
+
+        return session;
+    }
+
+    /*
+     * Stop leasing the session out, it's closed now if no one holds it, or by the last release
+     * The caller MUST hold the lock of the session slot
+     */
+    private void retire(@NotNull PooledSession pooled) {
+        if (pooled.slot.current == pooled) {
+            pooled.slot.current = null;
+        }
+
+        if (pooled.leases == 0) {
+            pooledSessions.remove(pooled.session, pooled);
+            pooled.session.disconnect();
+        }
+    }
+
+    /*
+     * Close the sessions idle for too long and the ones not answering the keep-alive message
+     */
+    void checkIdleSessions() {
+        long expireTime = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(IDLE_SESSION_EXPIRE_MINUTES);
+
+        for (Map.Entry<SessionKey, SessionSlot> entry : slots.entrySet()) {
+            SessionSlot slot = entry.getValue();
+
+            synchronized (slot) {
+                PooledSession pooled = slot.current;
+
+                if (pooled != null && pooled.leases > 0) {
+                    continue;
+                }
+
+                boolean isHealthy = pooled != null &&
+                        pooled.session.isConnected() &&
+                        pooled.lastReleasedTime > expireTime;
+
+                if (isHealthy) {
+                    try {
+                        pooled.session.sendKeepAliveMsg();
+                    } catch (Exception ex) {
+                        log().debug("SSH session to " + entry.getKey().host + " is broken: " + ex);
+                        isHealthy = false;
+                    }
+                }
+
+                if (!isHealthy) {
+                    slots.remove(entry.getKey(), slot);
+
+                    if (pooled != null) {
+                        retire(pooled);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The sessions of a host and user, also the lock of them
+     */
+    private static final class SessionSlot {
+        private final SessionKey key;
+        private PooledSession current;
+
+        SessionSlot(@NotNull SessionKey key) {
+            this.key = key;
+        }
+    }
+
+    private static final class PooledSession {
+        private final SessionSlot slot;
+        private final Session session;
+        private int leases = 0;
+        private long lastReleasedTime = System.currentTimeMillis();
+
+        PooledSession(@NotNull SessionSlot slot, @NotNull Session session) {
+            this.slot = slot;
+            this.session = session;
+        }
+    }
+
+    static final class SessionKey {
+        private final String host;
+        private final int port;
+        private final String user;
+        private final String password;
+        private final String privateKeyFile;
+        private final long privateKeyModifiedTime;
+
+        SessionKey(@NotNull String host,
+                   int port,
+                   @NotNull String user,
+                   @Nullable String password,
+                   @Nullable File privateKeyFile) {
+            this.host = host.toLowerCase();
+            this.port = port;
+            this.user = user;
+            this.password = password;
+            this.privateKeyFile = privateKeyFile == null ? null : privateKeyFile.getPath();
+            this.privateKeyModifiedTime = privateKeyFile == null ? 0 : privateKeyFile.lastModified();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, port, user, password, privateKeyFile, privateKeyModifiedTime);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+
+            if (!(obj instanceof SessionKey)) {
+                return false;
+            }
+
+            SessionKey that = (SessionKey) obj;
+            return host.equals(that.host) &&
+                    port == that.port &&
+                    user.equals(that.user) &&
+                    Objects.equals(password, that.password) &&
+                    Objects.equals(privateKeyFile, that.privateKeyFile) &&
+                    privateKeyModifiedTime == that.privateKeyModifiedTime;
+        }
+    }
+}
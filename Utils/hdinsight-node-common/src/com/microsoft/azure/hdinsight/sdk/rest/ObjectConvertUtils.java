@@ -24,15 +24,15 @@ package com.microsoft.azure.hdinsight.sdk.rest;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.CollectionType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
 import com.microsoft.tooling.msservices.helpers.azure.rest.RestServiceManager;
 import org.apache.http.HttpEntity;
-import org.apache.http.entity.ContentType;
-import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -56,28 +56,40 @@ public final class ObjectConvertUtils {
     }
 
     public static <T> Optional<T> convertEntityToObject(@NotNull HttpEntity entity, @NotNull Class<T> tClass) throws IOException {
-        final String type = entity.getContentType().getValue().toLowerCase();
-
-        switch (type) {
-            case "application/json" :
-                return convertJsonToObject(EntityUtils.toString(entity), tClass);
-            case "application/xml" :
-                return convertXmlToObject(EntityUtils.toString(entity), tClass);
+        // Deserialize from the content stream directly without buffering the whole response into a String
+        try (InputStream content = entity.getContent()) {
+            switch (getMimeType(entity)) {
+                case "application/json" :
+                    return Optional.ofNullable(objectMapper.readValue(content, tClass));
+                case "application/xml" :
+                    return Optional.ofNullable(xmlMapper.readValue(content, tClass));
+            }
         }
         return Optional.empty();
     }
 
     public static <T> Optional<List<T>> convertEntityToList(@NotNull HttpEntity entity, @NotNull Class<T> tClass) throws IOException {
-        final String type = entity.getContentType().getValue().toLowerCase();
-        switch (type) {
-            case "application/json" :
-                return convertJsonToList(EntityUtils.toString(entity), tClass);
-            case "application/xml" :
-                return convertJsonToList(EntityUtils.toString(entity), tClass);
+        final CollectionType listType = TypeFactory.defaultInstance().constructCollectionType(List.class, tClass);
+
+        try (InputStream content = entity.getContent()) {
+            switch (getMimeType(entity)) {
+                case "application/json" :
+                    return Optional.ofNullable(objectMapper.readValue(content, listType));
+                case "application/xml" :
+                    return Optional.ofNullable(xmlMapper.readValue(content, listType));
+            }
         }
         return Optional.empty();
     }
 
+    @NotNull
+    private static String getMimeType(@NotNull HttpEntity entity) {
+        // The Content-Type may carry parameters, such as `application/json; charset=utf-8`
+        return Optional.ofNullable(entity.getContentType())
+                .map(header -> header.getValue().split(";")[0].trim().toLowerCase())
+                .orElse("");
+    }
+
     public static <T> Optional<List<T>> convertJsonToList(@NotNull String jsonString, Class<T> tClass) throws IOException {
         List<T> myLists = objectMapper.readValue(jsonString, TypeFactory.defaultInstance().constructCollectionType(List.class, tClass));
         return Optional.ofNullable(myLists);
@@ -39,7 +39,7 @@ import java.util.List;
  *   GET
  *
  * Query Parameters Supported
- *   None
+ *   states, user, applicationTypes, finishedTimeBegin, finishedTimeEnd and so on
  */
 public class YarnApplications implements IConvertible {
     @JsonProperty(value = "app")
@@ -21,6 +21,7 @@
  */
 package com.microsoft.azure.hdinsight.sdk.storage.adls;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.aad.adal4j.*;
 import com.microsoft.azure.datalake.store.ADLException;
 import com.microsoft.azure.datalake.store.ADLStoreClient;
@@ -30,19 +31,45 @@ import com.microsoft.azure.hdinsight.sdk.common.HDIException;
 import com.microsoft.azure.hdinsight.sdk.storage.ADLSCertificateInfo;
 import com.microsoft.azure.hdinsight.sdk.storage.ADLSStorageAccount;
 import com.microsoft.azure.hdinsight.sdk.storage.IHDIStorageAccount;
-import com.microsoft.azure.management.dns.HttpStatusCode;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+import com.microsoft.tooling.msservices.helpers.CallableSingleArg;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
 
 import java.io.*;
 import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class WebHDFSUtils {
+    /**
+     * The files larger than the chunk size are uploaded as parallel part files, then concatenated
+     */
+    private static final long CHUNK_SIZE = 32L * 1024 * 1024;
+    private static final int UPLOAD_CONCURRENT = 4;
+    private static final int CHUNK_RETRIES = 3;
+    private static final int COPY_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The access token is acquired again when it's going to expire within the duration
+     */
+    private static final long TOKEN_REFRESH_BEFORE_EXPIRY_MS = TimeUnit.MINUTES.toMillis(5);
+
     private static ExecutorService service = null;
+    private static ExecutorService uploadService = null;
+
+    // The certificate tokens, keyed by tenant, client id and resource
+    private static final ConcurrentMap<String, AuthenticationResult> tokenCache = new ConcurrentHashMap<>();
 
     private static String getUserAgent() {
         final String installID = HDInsightLoader.getHDInsightHelper().getInstallationId();
@@ -52,38 +79,62 @@ public class WebHDFSUtils {
     }
 
     private static String getAccessTokenFromCertificate(@NotNull ADLSStorageAccount storageAccount) throws ExecutionException, InterruptedException, MalformedURLException, HDIException {
-        if (service == null) {
-            synchronized (WebHDFSUtils.class) {
-                if (service == null) {
-                    service = Executors.newFixedThreadPool(5);
-                }
+        final ADLSCertificateInfo certificateInfo = storageAccount.getCertificateInfo();
+        final String tokenKey = String.join("|",
+                certificateInfo.getAadTenantId(), certificateInfo.getClientId(), certificateInfo.getResourceUri());
+
+        AuthenticationResult cached = tokenCache.get(tokenKey);
+        if (isTokenValid(cached)) {
+            return cached.getAccessToken();
+        }
+
+        synchronized (tokenCache) {
+            cached = tokenCache.get(tokenKey);
+            if (isTokenValid(cached)) {
+                return cached.getAccessToken();
             }
+
+            if (service == null) {
+                service = Executors.newFixedThreadPool(5);
+            }
+
+            AuthenticationContext ctx = new AuthenticationContext(certificateInfo.getAadTenantId(), true, service);
+            AsymmetricKeyCredential asymmetricKeyCredential = AsymmetricKeyCredential.create(certificateInfo.getClientId(), certificateInfo.getKey(), certificateInfo.getCertificate());
+            final Future<AuthenticationResult> result = ctx.acquireToken(certificateInfo.getResourceUri(), asymmetricKeyCredential , null);
+            final AuthenticationResult ar = result.get();
+            tokenCache.put(tokenKey, ar);
+
+            return ar.getAccessToken();
         }
+    }
 
-        final ADLSCertificateInfo certificateInfo = storageAccount.getCertificateInfo();
-        AuthenticationContext ctx = new AuthenticationContext(certificateInfo.getAadTenantId(), true, service);
-        AsymmetricKeyCredential asymmetricKeyCredential = AsymmetricKeyCredential.create(certificateInfo.getClientId(), certificateInfo.getKey(), certificateInfo.getCertificate());
-        final Future<AuthenticationResult> result = ctx.acquireToken(certificateInfo.getResourceUri(), asymmetricKeyCredential , null);
-        final AuthenticationResult ar = result.get();
-        return ar.getAccessToken();
+    private static boolean isTokenValid(@Nullable AuthenticationResult token) {
+        return token != null && token.getExpiresOnDate() != null &&
+                token.getExpiresOnDate().getTime() - System.currentTimeMillis() > TOKEN_REFRESH_BEFORE_EXPIRY_MS;
     }
 
-    public static void uploadFileToADLS(@NotNull IHDIStorageAccount storageAccount, @NotNull File localFile, @NotNull String remotePath, boolean overWrite) throws Exception {
+    /**
+     * Upload the local file to ADLS, the large file is uploaded as parallel chunks with retries for each chunk
+     *
+     * @param uploadInProcessHandler the progress callback with the bytes uploaded, null for no callback
+     */
+    public static void uploadFileToADLS(@NotNull IHDIStorageAccount storageAccount,
+                                        @NotNull File localFile,
+                                        @NotNull String remotePath,
+                                        boolean overWrite,
+                                        @Nullable CallableSingleArg<Void, Long> uploadInProcessHandler) throws Exception {
         if (!(storageAccount instanceof ADLSStorageAccount)) {
             throw new HDIException("the storage type should be ADLS");
         }
 
-        ADLSStorageAccount adlsStorageAccount = (ADLSStorageAccount)storageAccount;
-        String accessToken = getAccessTokenFromCertificate(adlsStorageAccount);
-        // TODO: accountFQDN should work for Mooncake
-        String storageName = storageAccount.getName();
-        ADLStoreClient client = ADLStoreClient.createClient(String.format("%s.azuredatalakestore.net", storageName), accessToken);
-        OutputStream stream = null;
+        ADLStoreClient client = createClient((ADLSStorageAccount) storageAccount);
         try {
-            stream = client.createFile(remotePath, IfExists.OVERWRITE);
-            IOUtils.copy(new FileInputStream(localFile), stream);
-            stream.flush();
-            stream.close();
+            if (localFile.length() > CHUNK_SIZE) {
+                uploadChunks(client, localFile, remotePath, overWrite, uploadInProcessHandler);
+            } else {
+                uploadChunk(client, localFile, 0, localFile.length(), remotePath,
+                        overWrite ? IfExists.OVERWRITE : IfExists.FAIL, new AtomicLong(), uploadInProcessHandler);
+            }
         } catch (ADLException e) {
             // 403 error can be expected in:
             //      1. In interactive login model
@@ -92,15 +143,164 @@ public class WebHDFSUtils {
             //          the adls was attached to HDInsight by Service Principle (hdi sp).
             //          Currently we don't have a better way to use hdi sp to grant write access to ADLS, so we just
             //          try to write adls directly use the login sp account(may have no access to target ADLS)
-            if (e.httpResponseCode == 403 || HttpStatusCode.valueOf(e.httpResponseMessage) == HttpStatusCode.FORBIDDEN) {
+            if (isForbidden(e)) {
                 throw new HDIException("Forbidden. " +
                         "This problem could be: " +
                         "1. Attached Azure DataLake Store is not supported in Automated login model. Please logout first and try Interactive login model" +
                         "2. Login account have no write permission on attached ADLS storage. " +
                             "Please grant write access from storage account admin(or other roles who have permission to do it)", 403);
             }
-        } finally {
-            IOUtils.closeQuietly(stream);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Get the length of the file in ADLS
+     *
+     * @return the length in bytes, -1 for the file doesn't exist
+     */
+    public static long getFileLength(@NotNull IHDIStorageAccount storageAccount, @NotNull String remotePath) throws Exception {
+        if (!(storageAccount instanceof ADLSStorageAccount)) {
+            throw new HDIException("the storage type should be ADLS");
+        }
+
+        ADLStoreClient client = createClient((ADLSStorageAccount) storageAccount);
+
+        return client.checkExists(remotePath) ? client.getDirectoryEntry(remotePath).length : -1;
+    }
+
+    @NotNull
+    private static ADLStoreClient createClient(@NotNull ADLSStorageAccount storageAccount) throws Exception {
+        String accessToken = getAccessTokenFromCertificate(storageAccount);
+        // TODO: accountFQDN should work for Mooncake
+        String storageName = storageAccount.getName();
+        return ADLStoreClient.createClient(String.format("%s.azuredatalakestore.net", storageName), accessToken);
+    }
+
+    private static void uploadChunks(@NotNull ADLStoreClient client,
+                                     @NotNull File localFile,
+                                     @NotNull String remotePath,
+                                     boolean overWrite,
+                                     @Nullable CallableSingleArg<Void, Long> uploadInProcessHandler) throws Exception {
+        final long length = localFile.length();
+        final String partPrefix = String.format("%s.%s.part", remotePath, UUID.randomUUID());
+        final AtomicLong uploadedBytes = new AtomicLong();
+        final List<String> partPaths = new ArrayList<>();
+        final List<Future<?>> partUploads = new ArrayList<>();
+
+        for (long offset = 0; offset < length; offset += CHUNK_SIZE) {
+            final long chunkOffset = offset;
+            final String partPath = partPrefix + partPaths.size();
+
+            partPaths.add(partPath);
+            partUploads.add(getUploadService().submit(() -> {
+                uploadChunk(client, localFile, chunkOffset, Math.min(CHUNK_SIZE, length - chunkOffset), partPath,
+                        IfExists.OVERWRITE, uploadedBytes, uploadInProcessHandler);
+                return null;
+            }));
         }
+
+        try {
+            for (Future<?> partUpload : partUploads) {
+                partUpload.get();
+            }
+
+            // The target of concatenation should not exist
+            if (overWrite && client.checkExists(remotePath)) {
+                client.delete(remotePath);
+            }
+
+            client.concatenateFiles(remotePath, partPaths);
+        } catch (ExecutionException e) {
+            partUploads.forEach(partUpload -> partUpload.cancel(true));
+            deletePartsQuietly(client, partPaths);
+
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        } catch (Exception e) {
+            partUploads.forEach(partUpload -> partUpload.cancel(true));
+            deletePartsQuietly(client, partPaths);
+
+            throw e;
+        }
+    }
+
+    private static void uploadChunk(@NotNull ADLStoreClient client,
+                                    @NotNull File localFile,
+                                    long offset,
+                                    long size,
+                                    @NotNull String path,
+                                    @NotNull IfExists ifExists,
+                                    @NotNull AtomicLong uploadedBytes,
+                                    @Nullable CallableSingleArg<Void, Long> uploadInProcessHandler) throws Exception {
+        for (int retries = 0; ; retries++) {
+            long written = 0;
+
+            try (RandomAccessFile input = new RandomAccessFile(localFile, "r")) {
+                OutputStream stream = null;
+                try {
+                    stream = client.createFile(path, ifExists);
+                    input.seek(offset);
+
+                    byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, Math.max(size, 1))];
+                    while (written < size) {
+                        int read = input.read(buffer, 0, (int) Math.min(buffer.length, size - written));
+                        if (read < 0) {
+                            throw new EOFException("Unexpected end of file " + localFile.getPath());
+                        }
+
+                        stream.write(buffer, 0, read);
+                        written += read;
+
+                        if (uploadInProcessHandler != null) {
+                            uploadInProcessHandler.call(uploadedBytes.addAndGet(read));
+                        } else {
+                            uploadedBytes.addAndGet(read);
+                        }
+                    }
+
+                    stream.close();
+                    return;
+                } finally {
+                    IOUtils.closeQuietly(stream);
+                }
+            } catch (IOException e) {
+                uploadedBytes.addAndGet(-written);
+
+                if (retries >= CHUNK_RETRIES || Thread.currentThread().isInterrupted() ||
+                        (e instanceof ADLException && isForbidden((ADLException) e)) ||
+                        (e instanceof ADLException && ifExists == IfExists.FAIL)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static void deletePartsQuietly(@NotNull ADLStoreClient client, @NotNull List<String> partPaths) {
+        for (String partPath : partPaths) {
+            try {
+                client.delete(partPath);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private static boolean isForbidden(@NotNull ADLException e) {
+        // The response message is the reason phrase such as "Forbidden", which isn't an HttpStatusCode enum name
+        return e.httpResponseCode == HttpStatus.SC_FORBIDDEN;
+    }
+
+    @NotNull
+    private static synchronized ExecutorService getUploadService() {
+        if (uploadService == null) {
+            uploadService = Executors.newFixedThreadPool(UPLOAD_CONCURRENT,
+                    new ThreadFactoryBuilder().setNameFormat("adls-upload-%d").setDaemon(true).build());
+        }
+
+        return uploadService;
     }
 }
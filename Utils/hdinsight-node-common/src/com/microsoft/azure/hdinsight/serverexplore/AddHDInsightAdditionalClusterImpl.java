@@ -23,20 +23,17 @@ package com.microsoft.azure.hdinsight.serverexplore;
 
 import com.microsoft.azure.hdinsight.common.StreamUtil;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.common.HttpClientPool;
 import com.microsoft.azure.hdinsight.sdk.storage.HDStorageAccount;
 import com.microsoft.azure.management.storage.implementation.StorageManagementClientImpl;
 import com.microsoft.azuretools.azurecommons.helpers.AzureCmdException;
 import com.microsoft.azuretools.azurecommons.helpers.StringHelper;
 import com.microsoft.tooling.msservices.helpers.azure.sdk.StorageClientSDKManager;
 import com.microsoft.tooling.msservices.model.storage.ClientStorageAccount;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
+import org.apache.commons.io.IOUtils;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
@@ -90,10 +87,7 @@ public class AddHDInsightAdditionalClusterImpl {
 
         String linuxClusterConfigureFileUrl = String.format(clusterConfigureFileUrl, clusterName, clusterName);
 
-        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-
-        credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(userName.trim(), passwd));
-        CloseableHttpClient httpClient = HttpClients.custom().setDefaultCredentialsProvider(credentialsProvider).build();
+        CloseableHttpClient httpClient = HttpClientPool.getInstance().getClient(linuxClusterConfigureFileUrl, userName.trim(), passwd);
 
         CloseableHttpResponse response = null;
         int responseCode = -1;
@@ -106,17 +100,21 @@ public class AddHDInsightAdditionalClusterImpl {
             throw new HDIException("Something wrong with the cluster! Please try again later");
         }
 
-        responseCode = response.getStatusLine().getStatusCode();
-        if (responseCode == 200) {
-            try {
-                return StreamUtil.getResultFromHttpResponse(response).getMessage();
-            } catch (IOException e) {
-                throw new HDIException("Not support cluster");
+        try {
+            responseCode = response.getStatusLine().getStatusCode();
+            if (responseCode == 200) {
+                try {
+                    return StreamUtil.getResultFromHttpResponse(response).getMessage();
+                } catch (IOException e) {
+                    throw new HDIException("Not support cluster");
+                }
+            } else if (responseCode == 401 || responseCode == 403) {
+                throw new HDIException("Invalid Cluster Name or Password");
+            } else {
+                throw new HDIException("Something wrong with the cluster! Please try again later");
             }
-        } else if (responseCode == 401 || responseCode == 403) {
-            throw new HDIException("Invalid Cluster Name or Password");
-        } else {
-            throw new HDIException("Something wrong with the cluster! Please try again later");
+        } finally {
+            IOUtils.closeQuietly(response);
         }
     }
 
@@ -23,17 +23,25 @@ package com.microsoft.azure.hdinsight.serverexplore;
 
 import com.microsoft.azure.hdinsight.common.ClusterManagerEx;
 import com.microsoft.azure.hdinsight.common.CommonConst;
+import com.microsoft.azure.hdinsight.metadata.ClusterChangeEvent;
+import com.microsoft.azure.hdinsight.metadata.ClusterMetaDataService;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.serverexplore.hdinsightnode.ClusterNode;
 import com.microsoft.azure.hdinsight.serverexplore.hdinsightnode.HDInsightRootModule;
 import com.microsoft.azuretools.authmanage.AuthMethodManager;
 import com.microsoft.tooling.msservices.components.DefaultLoader;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
 import com.microsoft.azuretools.azurecommons.helpers.AzureCmdException;
 import com.microsoft.tooling.msservices.serviceexplorer.Node;
 import com.microsoft.tooling.msservices.serviceexplorer.NodeActionEvent;
 
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class HDInsightRootModuleImpl extends HDInsightRootModule {
 
@@ -47,6 +55,12 @@ public class HDInsightRootModuleImpl extends HDInsightRootModule {
 
     private List<IClusterDetail> clusterDetailList;
 
+    // The cluster nodes shown, by the cluster name, to apply the cluster change events to
+    private final Map<String, ClusterNode> clusterNodes = new HashMap<>();
+
+    @Nullable
+    private Subscription clusterChangesSubscription;
+
     @Override
     public HDInsightRootModule getNewNode(@NotNull Node node) {
         return new HDInsightRootModuleImpl(node);
@@ -57,12 +71,18 @@ public class HDInsightRootModuleImpl extends HDInsightRootModule {
         synchronized (this) { //todo???
 //            TelemetryManager.postEvent(TelemetryCommon.HDInsightExplorerHDInsightNodeExpand, null, null);
 
-            clusterDetailList = ClusterManagerEx.getInstance().getClusterDetails();
+            subscribeClusterChanges();
 
-            if (clusterDetailList != null) {
-                for (IClusterDetail clusterDetail : clusterDetailList) {
-                    addChildNode(new ClusterNode(this, clusterDetail));
-                }
+            // Render the clusters cached or saved by the last listing at once, the differences found by the
+            // listing in background are applied by the cluster change events
+            boolean isCached = !ClusterMetaDataService.getInstance().getCachedClusterDetails().isEmpty();
+            clusterDetailList = ClusterManagerEx.getInstance().getClusterDetailsWithoutAsync();
+
+            clusterNodes.clear();
+            clusterDetailList.forEach(this::addClusterNode);
+
+            if (isCached) {
+                ClusterManagerEx.getInstance().refreshClusterDetailsInBackground();
             }
         }
     }
@@ -71,15 +91,59 @@ public class HDInsightRootModuleImpl extends HDInsightRootModule {
     public void refreshWithoutAsync() {
         synchronized (this) {
             removeAllChildNodes();
-            clusterDetailList = ClusterManagerEx.getInstance().getClusterDetailsWithoutAsync();
+            clusterNodes.clear();
+            clusterDetailList = ClusterMetaDataService.getInstance().getCachedClusterDetails();
 
             if (clusterDetailList != null) {
                 for (IClusterDetail clusterDetail : clusterDetailList) {
-                    addChildNode(new ClusterNode(this, clusterDetail));
+                    addClusterNode(clusterDetail);
                 }
             }
         }
 
     }
 
-}
\ No newline at end of file
+    private void subscribeClusterChanges() {
+        if (clusterChangesSubscription != null) {
+            return;
+        }
+
+        // Apply the changes in another thread, the listing thread emitting them mustn't wait for the refresh lock
+        clusterChangesSubscription = ClusterMetaDataService.getInstance().getClusterChanges()
+                .onBackpressureBuffer()
+                .observeOn(Schedulers.io())
+                .subscribe(this::applyClusterChange, err -> {});
+    }
+
+    private void applyClusterChange(@NotNull ClusterChangeEvent change) {
+        synchronized (this) {
+            IClusterDetail cluster = change.getCluster();
+            ClusterNode clusterNode = clusterNodes.get(cluster.getName());
+
+            if (clusterNode != null && clusterNode.getClusterDetail() == cluster &&
+                    change.getType() != ClusterChangeEvent.Type.REMOVED) {
+                // Rendered already by the refreshing
+                return;
+            }
+
+            clusterNodes.remove(cluster.getName());
+
+            if (clusterNode != null) {
+                removeDirectChildNode(clusterNode);
+            }
+
+            if (change.getType() != ClusterChangeEvent.Type.REMOVED) {
+                addClusterNode(cluster);
+            }
+
+            clusterDetailList = ClusterMetaDataService.getInstance().getCachedClusterDetails();
+        }
+    }
+
+    private void addClusterNode(@NotNull IClusterDetail clusterDetail) {
+        ClusterNode clusterNode = new ClusterNode(this, clusterDetail);
+
+        clusterNodes.put(clusterDetail.getName(), clusterNode);
+        addChildNode(clusterNode);
+    }
+}
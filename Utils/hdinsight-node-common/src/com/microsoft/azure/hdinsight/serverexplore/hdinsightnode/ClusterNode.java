@@ -58,6 +58,10 @@ public class ClusterNode extends RefreshableNode implements TelemetryProperties
         this.load(false);
     }
 
+    public IClusterDetail getClusterDetail() {
+        return clusterDetail;
+    }
+
     @Override
     protected void loadActions() {
         super.loadActions();
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.spark.common;
+
+import com.google.gson.Gson;
+import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.common.HttpResponse;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Livy batch job log lines as a stream. The log is fetched in bounded pages and the batch state is only
+ * polled when there is no new output, the poll interval backs off while the job is quiet and resets once
+ * new lines arrive. The stream completes after the job reaches a final state and the rest logs are drained.
+ */
+public class LivyBatchLogStream {
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    public static final int MIN_INTERVAL_MS = 1000;
+    public static final int MAX_INTERVAL_MS = 5000;
+
+    @NotNull
+    private final SparkBatchSubmission submission;
+    @NotNull
+    private final String livyBatchesUrl;
+    private final int batchId;
+    private final int pageSize;
+
+    @Nullable
+    private volatile String state;
+
+    /**
+     * @param submission the Livy submission to get the log and state with
+     * @param livyBatchesUrl the Livy batches URL, eg http://localhost:8998/batches
+     * @param batchId the batch Id
+     */
+    public LivyBatchLogStream(@NotNull SparkBatchSubmission submission, @NotNull String livyBatchesUrl, int batchId) {
+        this(submission, livyBatchesUrl, batchId, DEFAULT_PAGE_SIZE);
+    }
+
+    public LivyBatchLogStream(@NotNull SparkBatchSubmission submission,
+                              @NotNull String livyBatchesUrl,
+                              int batchId,
+                              int pageSize) {
+        this.submission = submission;
+        this.livyBatchesUrl = livyBatchesUrl;
+        this.batchId = batchId;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Get the last batch state polled, null for not polled yet
+     */
+    @Nullable
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * Check whether the batch job ended with a failure, only meaningful after the log stream completes
+     */
+    public boolean isFailed() {
+        return "error".equalsIgnoreCase(state) || "dead".equalsIgnoreCase(state);
+    }
+
+    /**
+     * Get the log lines Observable, blank lines are kept for the line numbers. The polling runs in the
+     * subscribing thread and stops when unsubscribed.
+     */
+    @NotNull
+    public Observable<String> getLogs() {
+        return Observable.create((Observable.OnSubscribe<String>) ob -> {
+            int from = 0;
+            int interval = MIN_INTERVAL_MS;
+
+            try {
+                while (!ob.isUnsubscribed()) {
+                    SparkJobLog page = getLogPage(from);
+                    List<String> lines = page.getLog() == null ? Collections.emptyList() : page.getLog();
+
+                    // Livy only keeps the recent lines, skip the gap if the lines before were dropped
+                    from = Math.max(from, page.getFrom()) + lines.size();
+                    for (String line : lines) {
+                        if (ob.isUnsubscribed()) {
+                            return;
+                        }
+
+                        ob.onNext(line);
+                    }
+
+                    if (lines.size() >= pageSize) {
+                        // More lines are pending, get the next page at once
+                        continue;
+                    }
+
+                    if (lines.isEmpty()) {
+                        SparkSubmitResponse status = getStatus();
+                        state = status.getState();
+
+                        if (!status.isAlive()) {
+                            drain(ob, from);
+                            break;
+                        }
+
+                        interval = Math.min(interval * 2, MAX_INTERVAL_MS);
+                    } else {
+                        interval = MIN_INTERVAL_MS;
+                    }
+
+                    Thread.sleep(interval);
+                }
+
+                ob.onCompleted();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                // Interrupted by the unsubscribing, or the stream is stopped without reaching the batch end
+                if (!ob.isUnsubscribed()) {
+                    ob.onError(e);
+                }
+            } catch (Exception e) {
+                ob.onError(e);
+            }
+        });
+    }
+
+    private void drain(@NotNull Subscriber<? super String> ob, int from) throws IOException, HDIException {
+        while (!ob.isUnsubscribed()) {
+            SparkJobLog page = getLogPage(from);
+            List<String> lines = page.getLog() == null ? Collections.emptyList() : page.getLog();
+
+            from = Math.max(from, page.getFrom()) + lines.size();
+            lines.forEach(ob::onNext);
+
+            if (lines.size() < pageSize) {
+                return;
+            }
+        }
+    }
+
+    @NotNull
+    private SparkJobLog getLogPage(int from) throws IOException, HDIException {
+        HttpResponse response = submission.getBatchJobLog(livyBatchesUrl, batchId, from, pageSize);
+        checkResponse(response);
+
+        SparkJobLog page = new Gson().fromJson(response.getMessage(), SparkJobLog.class);
+        if (page == null) {
+            throw new HDIException("Failed to parse the log of Livy batch " + batchId, response.getCode());
+        }
+
+        return page;
+    }
+
+    @NotNull
+    private SparkSubmitResponse getStatus() throws IOException, HDIException {
+        HttpResponse response = submission.getBatchSparkJobStatus(livyBatchesUrl, batchId);
+        checkResponse(response);
+
+        SparkSubmitResponse status = SparkSubmitResponse.parseJSON(response.getMessage());
+        if (status == null || status.getState() == null) {
+            throw new HDIException("Failed to parse the state of Livy batch " + batchId, response.getCode());
+        }
+
+        return status;
+    }
+
+    private void checkResponse(@NotNull HttpResponse response) throws HDIException {
+        if (response.getCode() < 200 || response.getCode() >= 300) {
+            throw new HDIException(
+                    String.format("Failed to get Livy batch %d: %s", batchId, response.getMessage()),
+                    response.getCode());
+        }
+    }
+}
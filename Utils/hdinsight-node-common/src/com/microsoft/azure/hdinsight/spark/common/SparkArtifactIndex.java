@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.spark.common;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.microsoft.azure.hdinsight.common.CommonConst;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.StringHelper;
+import com.microsoft.tooling.msservices.components.DefaultLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The content-addressed Spark artifacts. An artifact is uploaded into the folder named by its SHA-256 hash, so that
+ * the unchanged artifact is found in storage and needn't be uploaded again.
+ *
+ * The artifacts uploaded recently are remembered locally to skip even the existence check in storage.
+ */
+public class SparkArtifactIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(SparkArtifactIndex.class);
+
+    public static final String ARTIFACTS_FOLDER = "artifacts";
+
+    private static final long RECENT_UPLOAD_DAYS = 7;
+    private static final int MAX_RECENT_UPLOADS = 200;
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private static SparkArtifactIndex instance = new SparkArtifactIndex();
+
+    // The artifact hashes keyed by the local path, length and last modified time
+    private final Cache<String, String> localHashes = CacheBuilder.newBuilder()
+            .maximumSize(MAX_RECENT_UPLOADS)
+            .build();
+
+    // The artifact URIs uploaded recently with the upload time, loaded lazily
+    private Map<String, Long> recentUploads = null;
+
+    private SparkArtifactIndex() {
+    }
+
+    public static SparkArtifactIndex getInstance() {
+        return instance;
+    }
+
+    /**
+     * Get the content-addressed upload folder path of the artifact, such as artifacts/{sha256}
+     */
+    @NotNull
+    public String getUploadFolderPath(@NotNull File artifact) throws IOException {
+        return ARTIFACTS_FOLDER + "/" + getSha256(artifact);
+    }
+
+    public static boolean isContentAddressed(@NotNull String uploadFolderPath) {
+        return uploadFolderPath.startsWith(ARTIFACTS_FOLDER + "/");
+    }
+
+    /**
+     * Get the SHA-256 hash of the artifact in hex, the hash is reused until the file is modified
+     */
+    @NotNull
+    public String getSha256(@NotNull File artifact) throws IOException {
+        String key = String.format("%s|%d|%d", artifact.getAbsolutePath(), artifact.length(), artifact.lastModified());
+        String hash = localHashes.getIfPresent(key);
+
+        if (hash == null) {
+            hash = computeSha256(artifact);
+            localHashes.put(key, hash);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Check whether the artifact was uploaded or found in storage within the recent days. The record isn't renewed
+     * by the check, call {@link #markUploaded(String)} only after the artifact is uploaded or found in storage.
+     */
+    public synchronized boolean isRecentlyUploaded(@NotNull String artifactUri) {
+        Long uploadTime = getRecentUploads().get(artifactUri);
+
+        return uploadTime != null &&
+                System.currentTimeMillis() - uploadTime < TimeUnit.DAYS.toMillis(RECENT_UPLOAD_DAYS);
+    }
+
+    public synchronized void markUploaded(@NotNull String artifactUri) {
+        Map<String, Long> uploads = getRecentUploads();
+
+        uploads.remove(artifactUri);
+        uploads.put(artifactUri, System.currentTimeMillis());
+        uploads.entrySet().removeIf(upload ->
+                System.currentTimeMillis() - upload.getValue() >= TimeUnit.DAYS.toMillis(RECENT_UPLOAD_DAYS));
+
+        while (uploads.size() > MAX_RECENT_UPLOADS) {
+            uploads.remove(uploads.keySet().iterator().next());
+        }
+
+        try {
+            DefaultLoader.getIdeHelper().setApplicationProperty(CommonConst.SPARK_UPLOADED_ARTIFACTS, new Gson().toJson(uploads));
+        } catch (Exception ex) {
+            LOG.warn("Failed to save the uploaded Spark artifacts", ex);
+        }
+    }
+
+    @NotNull
+    private Map<String, Long> getRecentUploads() {
+        if (recentUploads == null) {
+            recentUploads = new LinkedHashMap<>();
+
+            try {
+                String json = DefaultLoader.getIdeHelper().getApplicationProperty(CommonConst.SPARK_UPLOADED_ARTIFACTS);
+                if (!StringHelper.isNullOrWhiteSpace(json)) {
+                    Map<String, Long> saved = new Gson().fromJson(json, new TypeToken<LinkedHashMap<String, Long>>() {
+                    }.getType());
+
+                    if (saved != null) {
+                        recentUploads.putAll(saved);
+                    }
+                }
+            } catch (JsonParseException ex) {
+                DefaultLoader.getIdeHelper().unsetApplicationProperty(CommonConst.SPARK_UPLOADED_ARTIFACTS);
+            } catch (Exception ex) {
+                LOG.warn("Failed to load the uploaded Spark artifacts", ex);
+            }
+        }
+
+        return recentUploads;
+    }
+
+    @NotNull
+    private static String computeSha256(@NotNull File artifact) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported", e);
+        }
+
+        try (InputStream input = new FileInputStream(artifact)) {
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
+}
@@ -22,28 +22,35 @@
 
 package com.microsoft.azure.hdinsight.spark.common;
 
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 
 import com.microsoft.azure.hdinsight.common.logger.ILogger;
+import com.microsoft.azure.hdinsight.sdk.common.SshSessionPool;
 import rx.Subscription;
 
 import java.io.File;
 import java.net.UnknownServiceException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /*
- * Spark Batch Job debug session with SSH tunnel
+ * Spark Batch Job debug session with SSH tunnel, the SSH session is leased from the shared pool
+ * and only the port forwardings created by this debug session are removed when it's closed
  */
 public class SparkBatchDebugSession implements ILogger{
+    private final String host;
+    private final String user;
+    private String password;
+    private File privateKeyFile;
     private Session portForwardingSession;
-    private JSch jsch;
+    private final List<Integer> forwardedLocalPorts = new ArrayList<>();
     private Subscription logSubscription;
 
-    SparkBatchDebugSession(JSch jsch, Session portForwardingSession) {
-        this.jsch = jsch;
-        this.portForwardingSession = portForwardingSession;
+    SparkBatchDebugSession(String host, String user) {
+        this.host = host;
+        this.user = user;
     }
 
     /**
@@ -64,19 +71,10 @@ public class SparkBatchDebugSession implements ILogger{
         this.logSubscription = logSubscription;
     }
 
-    /**
-     * Getter of the jsch instance
-     *
-     * @return jsch instance
-     */
-    public JSch getJsch() {
-        return jsch;
-    }
-
     /**
      * Getter of the port forwarding session instance
      *
-     * @return portForwardingSession instance
+     * @return portForwardingSession instance, null if the debug session is not opened
      */
     public Session getPortForwardingSession() {
         return portForwardingSession;
@@ -90,7 +88,11 @@ public class SparkBatchDebugSession implements ILogger{
      * @throws JSchException JSch operation exceptions
      */
     public SparkBatchDebugSession setPrivateKeyFile(File file) throws JSchException {
-        this.getJsch().addIdentity(file.getPath());
+        if (!file.isFile()) {
+            throw new JSchException("The private key file " + file.getPath() + " is not found");
+        }
+
+        this.privateKeyFile = file;
 
         return this;
     }
@@ -102,13 +104,13 @@ public class SparkBatchDebugSession implements ILogger{
      * @return the current instance for chain calling
      */
     public SparkBatchDebugSession setPassword(String password) {
-        this.getPortForwardingSession().setPassword(password);
+        this.password = password;
 
         return this;
     }
 
     /**
-     * Close the SSH port forwarding session
+     * Close the SSH port forwarding session, the forwardings are removed and the SSH session is released to the pool
      *
      * @return the current instance for chain calling
      */
@@ -117,19 +119,42 @@ public class SparkBatchDebugSession implements ILogger{
             getLogSubscription().unsubscribe();
         }
 
-        this.getPortForwardingSession().disconnect();
+        Session session = this.getPortForwardingSession();
+        if (session == null) {
+            return this;
+        }
+
+        synchronized (forwardedLocalPorts) {
+            for (int localPort : forwardedLocalPorts) {
+                try {
+                    session.delPortForwardingL(localPort);
+                } catch (JSchException ex) {
+                    // The session is shared with others, the broken one is evicted by the pool when all released
+                    log().debug("Failed to remove the port forwarding of local port " + localPort + ": " + ex);
+                }
+            }
+
+            forwardedLocalPorts.clear();
+        }
+
+        SshSessionPool.getInstance().release(session);
+
+        this.portForwardingSession = null;
 
         return this;
     }
 
     /**
-     * Open the SSH port forwarding session
+     * Open the SSH port forwarding session, an authenticated one in the pool is reused if possible
      *
      * @return the current instance for chain calling
      * @throws JSchException JSch operation exceptions
      */
     public SparkBatchDebugSession open() throws JSchException {
-        this.getPortForwardingSession().connect();
+        if (this.portForwardingSession == null) {
+            this.portForwardingSession = SshSessionPool.getInstance().acquire(
+                    host, SshSessionPool.DEFAULT_SSH_PORT, user, password, privateKeyFile);
+        }
 
         return this;
     }
@@ -144,7 +169,11 @@ public class SparkBatchDebugSession implements ILogger{
      */
     public SparkBatchDebugSession forwardToRemotePort(String remoteHost, int remotePort) throws JSchException {
         // 0 means to select the local automatically
-        this.getPortForwardingSession().setPortForwardingL(0, remoteHost, remotePort);
+        int localPort = this.getPortForwardingSession().setPortForwardingL(0, remoteHost, remotePort);
+
+        synchronized (forwardedLocalPorts) {
+            forwardedLocalPorts.add(localPort);
+        }
 
         return this;
     }
@@ -163,6 +192,7 @@ public class SparkBatchDebugSession implements ILogger{
                    UnknownServiceException {
         String localPort = Arrays.stream(this.getPortForwardingSession().getPortForwardingL())
                 .filter((forwarding) -> forwarding.matches("\\d+:" + remoteHost + ":" + remotePort))
+                .filter((forwarding) -> isForwardedBySelf(Integer.parseInt(forwarding.split(":")[0])))
                 .findFirst()
                 .map((forwarding) -> forwarding.split(":")[0])
                 .orElseThrow(() -> new UnknownServiceException(
@@ -171,24 +201,23 @@ public class SparkBatchDebugSession implements ILogger{
         return Integer.parseInt(localPort);
     }
 
+    /*
+     * The pooled SSH session could be shared with other debug sessions, only the own forwardings are counted
+     */
+    private boolean isForwardedBySelf(int localPort) {
+        synchronized (forwardedLocalPorts) {
+            return forwardedLocalPorts.contains(localPort);
+        }
+    }
+
     /**
      * Create a SparkBatchDebugSession instance for specified host and user
      *
      * @param host The SSH host
      * @param user The SSH user
      * @return an SparkBatchDebugSession instance
-     * @throws JSchException JSch operation exceptions
      */
-    static public SparkBatchDebugSession factory(String host, String user) throws JSchException {
-        JSch jsch = new JSch();
-        Session session = jsch.getSession(user, host);
-
-        java.util.Properties config = new java.util.Properties() {{
-            put("StrictHostKeyChecking", "no");
-        }};
-
-        session.setConfig(config);
-
-        return new SparkBatchDebugSession(jsch, session);
+    static public SparkBatchDebugSession factory(String host, String user) {
+        return new SparkBatchDebugSession(host, user);
     }
 }
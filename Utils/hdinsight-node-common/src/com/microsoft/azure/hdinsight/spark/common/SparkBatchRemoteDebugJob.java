@@ -24,6 +24,7 @@ package com.microsoft.azure.hdinsight.spark.common;
 
 import com.microsoft.azure.hdinsight.common.logger.ILogger;
 import com.microsoft.azure.hdinsight.sdk.common.HttpResponse;
+import com.microsoft.azure.hdinsight.sdk.common.RetryPolicy;
 import com.microsoft.azure.hdinsight.sdk.rest.ObjectConvertUtils;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.App;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.AppResponse;
@@ -37,12 +38,11 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
-import static java.lang.Thread.sleep;
-
 public class SparkBatchRemoteDebugJob implements ISparkBatchDebugJob, ILogger {
     /**
      * The base connection URI for HDInsight Spark Job service, such as: http://livy:8998/batches
@@ -70,10 +70,20 @@ public class SparkBatchRemoteDebugJob implements ISparkBatchDebugJob, ILogger {
     private int retriesMax = 3;
 
     /**
-     * The setting of delay seconds between tries in RestAPI calling
+     * The setting of delay seconds before the first retry in RestAPI calling, the following delays are doubled
      */
     private int delaySeconds = 10;
 
+    /**
+     * The setting of overall seconds for all tries in RestAPI calling, 0 for no limit
+     */
+    private int deadlineSeconds = 5 * 60;
+
+    /**
+     * The latest Livy batch job status got by polling, shared by the pollings for different fields
+     */
+    private volatile SparkSubmitResponse latestBatchStatus;
+
     /**
      * Getter of Spark Batch Job submission parameter
      *
@@ -153,6 +163,41 @@ public class SparkBatchRemoteDebugJob implements ISparkBatchDebugJob, ILogger {
         this.delaySeconds = delaySeconds;
     }
 
+    /**
+     * Getter of the overall seconds for all tries in RestAPI calling
+     *
+     * @return the overall seconds for all tries in RestAPI calling, 0 for no limit
+     */
+    public int getDeadlineSeconds() {
+        return deadlineSeconds;
+    }
+
+    /**
+     * Setter of the overall seconds for all tries in RestAPI calling
+     * @param deadlineSeconds the overall seconds for all tries in RestAPI calling, 0 for no limit
+     */
+    public void setDeadlineSeconds(int deadlineSeconds) {
+        this.deadlineSeconds = deadlineSeconds;
+    }
+
+    /**
+     * Get the retry policy for RestAPI calling with the retry settings
+     *
+     * @return the retry policy with exponential backoff
+     */
+    protected RetryPolicy getRetryPolicy() {
+        return new RetryPolicy(this.getRetriesMax(), TimeUnit.SECONDS.toMillis(this.getDelaySeconds()))
+                .setDeadlineMs(TimeUnit.SECONDS.toMillis(this.getDeadlineSeconds()))
+                .setRetryOn(err -> {
+                    if (!(err instanceof IOException)) {
+                        return false;
+                    }
+
+                    log().debug("Got exception " + err.toString() + ", waiting for a while to try", err);
+                    return true;
+                });
+    }
+
     SparkBatchRemoteDebugJob(
             URI connectUri,
             SparkSubmissionParameter submissionParameter,
@@ -323,37 +368,8 @@ public class SparkBatchRemoteDebugJob implements ISparkBatchDebugJob, ILogger {
      * @throws IOException exceptions in transaction
      */
     protected String getSparkJobApplicationId(URI batchBaseUri, int batchId) throws IOException {
-        int retries = 0;
-
-        do {
-            try {
-                HttpResponse httpResponse = this.getSubmission().getBatchSparkJobStatus(
-                        batchBaseUri.toString(), batchId);
-
-                if (httpResponse.getCode() >= 200 && httpResponse.getCode() < 300) {
-                    SparkSubmitResponse jobResp = ObjectConvertUtils.convertJsonToObject(
-                            httpResponse.getMessage(), SparkSubmitResponse.class)
-                            .orElseThrow(() -> new UnknownServiceException(
-                                    "Bad spark job response: " + httpResponse.getMessage()));
-
-                    if (jobResp.getAppId() != null) {
-                        return jobResp.getAppId();
-                    }
-                }
-            } catch (IOException ignore) {
-                log().debug("Got exception " + ignore.toString() + ", waiting for a while to try",
-                            ignore);
-            }
-
-            try {
-                // Retry interval
-                sleep(TimeUnit.SECONDS.toMillis(this.getDelaySeconds()));
-            } catch (InterruptedException ex) {
-                throw new IOException("Interrupted in retry attempting", ex);
-            }
-        } while (++retries < this.getRetriesMax());
-
-        throw new UnknownServiceException("Unknown service error after " + --retries + " retries");
+        return this.pollBatchStatus(batchBaseUri, batchId, jobResp -> jobResp.getAppId() != null)
+                .getAppId();
     }
 
     /**
@@ -365,39 +381,29 @@ public class SparkBatchRemoteDebugJob implements ISparkBatchDebugJob, ILogger {
      * @throws IOException exceptions in transaction
      */
     protected App getSparkJobYarnApplication(URI batchBaseUri, String applicationID) throws IOException {
-        int retries = 0;
-
-        do {
-            // TODO: An issue here when the yarnui not sharing root with Livy batch job URI
-            URI getYarnClusterAppURI = batchBaseUri.resolve("/yarnui/ws/v1/cluster/apps/" + applicationID);
-
-            try {
-                HttpResponse httpResponse = this.getSubmission()
-                        .getHttpResponseViaGet(getYarnClusterAppURI.toString());
-
-                if (httpResponse.getCode() >= 200 && httpResponse.getCode() < 300) {
-                    Optional<AppResponse> appResponse = ObjectConvertUtils.convertJsonToObject(
-                            httpResponse.getMessage(), AppResponse.class);
-                    return appResponse
-                            .orElseThrow(() -> new UnknownServiceException(
-                                    "Bad response when getting from " + getYarnClusterAppURI + ", " +
-                                            "response " + httpResponse.getMessage()))
-                            .getApp();
-                }
-            } catch (IOException ignore) {
-                log().debug("Got exception " + ignore.toString() + ", waiting for a while to try",
-                        ignore);
-            }
-
-            try {
-                // Retry interval
-                sleep(TimeUnit.SECONDS.toMillis(this.getDelaySeconds()));
-            } catch (InterruptedException ex) {
-                throw new IOException("Interrupted in retry attempting", ex);
-            }
-        } while (++retries < this.getRetriesMax());
-
-        throw new UnknownServiceException("Unknown service error after " + --retries + " retries");
+        // TODO: An issue here when the yarnui not sharing root with Livy batch job URI
+        URI getYarnClusterAppURI = batchBaseUri.resolve("/yarnui/ws/v1/cluster/apps/" + applicationID);
+        RetryPolicy retryPolicy = this.getRetryPolicy();
+
+        return retryPolicy
+                .call(() -> {
+                    HttpResponse httpResponse = this.getSubmission()
+                            .getHttpResponseViaGet(getYarnClusterAppURI.toString());
+
+                    if (httpResponse.getCode() >= 200 && httpResponse.getCode() < 300) {
+                        Optional<AppResponse> appResponse = ObjectConvertUtils.convertJsonToObject(
+                                httpResponse.getMessage(), AppResponse.class);
+                        return Optional.of(appResponse
+                                .orElseThrow(() -> new UnknownServiceException(
+                                        "Bad response when getting from " + getYarnClusterAppURI + ", " +
+                                                "response " + httpResponse.getMessage()))
+                                .getApp());
+                    }
+
+                    return Optional.empty();
+                })
+                .orElseThrow(() -> new UnknownServiceException(
+                        "Unknown service error after " + (retryPolicy.getMaxAttempts() - 1) + " retries"));
     }
 
     /**
@@ -409,38 +415,64 @@ public class SparkBatchRemoteDebugJob implements ISparkBatchDebugJob, ILogger {
      * @throws IOException exceptions in transaction
      */
     public String getSparkJobDriverLogUrl(URI batchBaseUri, int batchId) throws IOException {
-        int retries = 0;
+        return this.pollBatchStatus(batchBaseUri, batchId, jobResp ->
+                        jobResp.getAppId() != null &&
+                                jobResp.getAppInfo() != null &&
+                                jobResp.getAppInfo().get("driverLogUrl") != null)
+                .getAppInfo().get("driverLogUrl").toString();
+    }
+
+    /**
+     * Poll the Livy batch job status with retries until the fields wanted are available. The status got is shared
+     * by the pollings for different fields, so a field available already in the latest status is taken without
+     * another request.
+     *
+     * @param batchBaseUri the connection URI
+     * @param batchId the Livy batch job ID
+     * @param isReady the predicate for the fields wanted being available in the status
+     * @return the Livy batch job status with the fields wanted
+     * @throws IOException exceptions in transaction, or the job is finished without the fields wanted
+     */
+    protected SparkSubmitResponse pollBatchStatus(URI batchBaseUri,
+                                                  int batchId,
+                                                  Predicate<SparkSubmitResponse> isReady) throws IOException {
+        SparkSubmitResponse latest = this.latestBatchStatus;
+        if (latest != null && latest.getId() == batchId && isReady.test(latest)) {
+            return latest;
+        }
+
+        RetryPolicy retryPolicy = this.getRetryPolicy();
+
+        SparkSubmitResponse status = retryPolicy
+                .call(() -> {
+                    HttpResponse httpResponse = this.getSubmission().getBatchSparkJobStatus(
+                            batchBaseUri.toString(), batchId);
 
-        do {
-            HttpResponse httpResponse = this.getSubmission().getBatchSparkJobStatus(
-                    batchBaseUri.toString(), batchId);
+                    if (httpResponse.getCode() >= 200 && httpResponse.getCode() < 300) {
+                        SparkSubmitResponse jobResp = ObjectConvertUtils.convertJsonToObject(
+                                httpResponse.getMessage(), SparkSubmitResponse.class)
+                                .orElseThrow(() -> new UnknownServiceException(
+                                        "Bad spark job response: " + httpResponse.getMessage()));
 
-            try {
-                if (httpResponse.getCode() >= 200 && httpResponse.getCode() < 300) {
-                    SparkSubmitResponse jobResp = ObjectConvertUtils.convertJsonToObject(
-                            httpResponse.getMessage(), SparkSubmitResponse.class)
-                            .orElseThrow(() -> new UnknownServiceException(
-                                    "Bad spark job response: " + httpResponse.getMessage()));
+                        this.latestBatchStatus = jobResp;
 
-                    if (jobResp.getAppId() != null && jobResp.getAppInfo().get("driverLogUrl") != null) {
-                        return jobResp.getAppInfo().get("driverLogUrl").toString();
+                        // Stop polling for the finished job
+                        if (isReady.test(jobResp) || (jobResp.getState() != null && !jobResp.isAlive())) {
+                            return Optional.of(jobResp);
+                        }
                     }
-                }
-            } catch (IOException ignore) {
-                log().debug("Got exception " + ignore.toString() + ", waiting for a while to try",
-                        ignore);
-            }
-
-
-            try {
-                // Retry interval
-                sleep(TimeUnit.SECONDS.toMillis(this.getDelaySeconds()));
-            } catch (InterruptedException ex) {
-                throw new IOException("Interrupted in retry attempting", ex);
-            }
-        } while (++retries < this.getRetriesMax());
-
-        throw new UnknownServiceException("Unknown service error after " + --retries + " retries");
+
+                    return Optional.empty();
+                })
+                .orElseThrow(() -> new UnknownServiceException(
+                        "Unknown service error after " + (retryPolicy.getMaxAttempts() - 1) + " retries"));
+
+        if (!isReady.test(status)) {
+            throw new UnknownServiceException(String.format(
+                    "The Livy job %d is %s before the status wanted is available.", batchId, status.getState()));
+        }
+
+        return status;
     }
 
 
@@ -23,6 +23,7 @@ package com.microsoft.azure.hdinsight.spark.common;
 
 import com.microsoft.azure.hdinsight.common.HDInsightLoader;
 import com.microsoft.azure.hdinsight.common.StreamUtil;
+import com.microsoft.azure.hdinsight.sdk.common.HttpClientPool;
 import com.microsoft.azure.hdinsight.sdk.common.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -34,7 +35,6 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 
 import java.io.IOException;
 
@@ -80,7 +80,7 @@ public class SparkBatchSubmission {
     }
 
     public HttpResponse getHttpResponseViaGet(String connectUrl) throws IOException {
-        CloseableHttpClient httpclient = HttpClients.custom().setDefaultCredentialsProvider(credentialsProvider).build();
+        CloseableHttpClient httpclient = HttpClientPool.getInstance().getClient(connectUrl, credentialsProvider);
 
         HttpGet httpGet = new HttpGet(connectUrl);
         httpGet.addHeader("Content-Type", "application/json");
@@ -108,7 +108,7 @@ public class SparkBatchSubmission {
      * @return response result
      */
     public HttpResponse createBatchSparkJob(String connectUrl, SparkSubmissionParameter submissionParameter)throws IOException{
-        CloseableHttpClient httpclient = HttpClients.custom().setDefaultCredentialsProvider(credentialsProvider).build();
+        CloseableHttpClient httpclient = HttpClientPool.getInstance().getClient(connectUrl, credentialsProvider);
         HttpPost httpPost = new HttpPost(connectUrl);
         httpPost.addHeader("Content-Type", "application/json");
         httpPost.addHeader("User-Agent", userAgentName);
@@ -138,7 +138,7 @@ public class SparkBatchSubmission {
      * @throws IOException
      */
     public HttpResponse killBatchJob(String connectUrl, int batchId)throws IOException {
-        CloseableHttpClient httpclient = HttpClients.custom().setDefaultCredentialsProvider(credentialsProvider).build();
+        CloseableHttpClient httpclient = HttpClientPool.getInstance().getClient(connectUrl, credentialsProvider);
         HttpDelete httpDelete = new HttpDelete(connectUrl +  "/" + batchId);
         httpDelete.addHeader("User-Agent", userAgentName);
         httpDelete.addHeader("Content-Type", "application/json");
@@ -156,6 +156,19 @@ public class SparkBatchSubmission {
      * @throws IOException
      */
     public HttpResponse getBatchJobFullLog(String connectUrl, int batchId)throws IOException {
-        return getHttpResponseViaGet(String.format("%s/%d/log?from=%d&size=%d", connectUrl, batchId, 0, Integer.MAX_VALUE));
+        return getBatchJobLog(connectUrl, batchId, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * get a page of batch job log
+     * @param connectUrl : eg http://localhost:8998/batches
+     * @param batchId : batch Id
+     * @param from : the line offset to start from
+     * @param size : the max lines to get
+     * @return response result
+     * @throws IOException
+     */
+    public HttpResponse getBatchJobLog(String connectUrl, int batchId, int from, int size)throws IOException {
+        return getHttpResponseViaGet(String.format("%s/%d/log?from=%d&size=%d", connectUrl, batchId, from, size));
     }
 }
@@ -21,18 +21,13 @@
  */
 package com.microsoft.azure.hdinsight.spark.jobs;
 
-import com.gargoylesoftware.htmlunit.BrowserVersion;
-import com.gargoylesoftware.htmlunit.Cache;
-import com.gargoylesoftware.htmlunit.WebClient;
-import com.gargoylesoftware.htmlunit.html.DomElement;
-import com.gargoylesoftware.htmlunit.html.DomNodeList;
-import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import com.microsoft.azure.hdinsight.common.HDInsightLoader;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.common.HttpClientPool;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.App;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.ApplicationMasterLogs;
 import com.microsoft.azure.hdinsight.spark.jobs.livy.LivyBatchesInformation;
@@ -51,7 +46,7 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
@@ -63,31 +58,177 @@ import java.io.*;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 public class JobUtils {
     private static Logger LOGGER = LoggerFactory.getLogger(JobUtils.class);
     private static final String JobLogFolderName = "SparkJobLog";
+    private static final int GZIP_MIN_LENGTH = 1024;
     private static String yarnUIHisotryFormat = "%s/yarnui/hn/cluster/app/%s";
 
     private static String sparkUIHistoryFormat = "%s/sparkhistory/history/%s/%s/jobs";
 
-    private static CredentialsProvider provider = new BasicCredentialsProvider();
-
     public static void setResponse(@NotNull HttpExchange httpExchange, @NotNull String message) {
         setResponse(httpExchange, message, 200);
     }
 
     public static void setResponse(@NotNull HttpExchange httpExchange, @NotNull String message, @NotNull int code) {
-        try {
-            httpExchange.sendResponseHeaders(code, message.length());
-            OutputStream stream = httpExchange.getResponseBody();
-            stream.write(message.getBytes());
-            stream.flush();
-            httpExchange.close();
+        setResponse(httpExchange, message.getBytes(StandardCharsets.UTF_8), code, null);
+    }
+
+    /**
+     * Send the response body with the correct byte length, the body is gzipped if the client accepts it
+     *
+     * @param httpExchange the HTTP exchange to response
+     * @param body the response body bytes
+     * @param code the response status code
+     * @param contentType the response content type, null for not set
+     */
+    public static void setResponse(@NotNull HttpExchange httpExchange,
+                                   @NotNull byte[] body,
+                                   int code,
+                                   @Nullable String contentType) {
+        boolean isGzip = body.length >= GZIP_MIN_LENGTH && isGzipAccepted(httpExchange);
+        if (!sendResponseHeaders(httpExchange, code, body.length, contentType, isGzip)) {
+            return;
+        }
+
+        try (OutputStream stream = isGzip ? new GZIPOutputStream(httpExchange.getResponseBody()) : httpExchange.getResponseBody()) {
+            stream.write(body);
         } catch (IOException e) {
             LOGGER.error("JobUtils set Response error", e);
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    /**
+     * Stream the upstream entity to the response without buffering it, the body is gzipped on the fly if the client
+     * accepts it and the entity isn't known to be shorter than the gzip threshold
+     *
+     * @param httpExchange the HTTP exchange to response
+     * @param entity the upstream response entity, null for no body
+     * @param code the response status code
+     */
+    public static void setResponse(@NotNull HttpExchange httpExchange, @Nullable HttpEntity entity, int code) {
+        setResponse(Collections.singletonList(httpExchange), entity, code);
+    }
+
+    /**
+     * Stream the upstream entity to the responses of the identical requests at once, each one is gzipped on the fly
+     * if its client accepts it. An exchange failing to write is dropped, the others go on.
+     *
+     * @param httpExchanges the HTTP exchanges to response
+     * @param entity the upstream response entity, null for no body
+     * @param code the response status code
+     */
+    public static void setResponse(@NotNull Collection<HttpExchange> httpExchanges,
+                                   @Nullable HttpEntity entity,
+                                   int code) {
+        long length = entity == null ? 0 : entity.getContentLength();
+        String contentType = entity == null || entity.getContentType() == null ? null : entity.getContentType().getValue();
+        Map<HttpExchange, OutputStream> streams = new LinkedHashMap<>();
+
+        try {
+            for (HttpExchange httpExchange : httpExchanges) {
+                boolean isGzip = entity != null && (length < 0 || length >= GZIP_MIN_LENGTH) && isGzipAccepted(httpExchange);
+                if (!sendResponseHeaders(httpExchange, code, length, contentType, isGzip)) {
+                    continue;
+                }
+
+                try {
+                    streams.put(httpExchange,
+                                isGzip ? new GZIPOutputStream(httpExchange.getResponseBody()) : httpExchange.getResponseBody());
+                } catch (IOException e) {
+                    LOGGER.error("JobUtils set Response error", e);
+                    httpExchange.close();
+                }
+            }
+
+            if (entity == null || streams.isEmpty()) {
+                return;
+            }
+
+            try (InputStream content = entity.getContent()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while (!streams.isEmpty() && (read = content.read(buffer)) != -1) {
+                    Iterator<Map.Entry<HttpExchange, OutputStream>> iterator = streams.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<HttpExchange, OutputStream> stream = iterator.next();
+                        try {
+                            stream.getValue().write(buffer, 0, read);
+                        } catch (IOException e) {
+                            // The client has gone, keep streaming to the others
+                            LOGGER.warn("JobUtils set Response error, drop the response", e);
+                            stream.getKey().close();
+                            iterator.remove();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("JobUtils set Response error", e);
+            }
+        } finally {
+            streams.forEach((httpExchange, stream) -> {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    LOGGER.error("JobUtils set Response error", e);
+                } finally {
+                    httpExchange.close();
+                }
+            });
+        }
+    }
+
+    private static boolean isGzipAccepted(@NotNull HttpExchange httpExchange) {
+        String acceptEncoding = httpExchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    /**
+     * Send the response headers once, the streaming response and the timeout response of a request may race
+     *
+     * @param length the body byte length, negative for unknown
+     * @return false if the response headers have been sent by others
+     */
+    private static boolean sendResponseHeaders(@NotNull HttpExchange httpExchange,
+                                               int code,
+                                               long length,
+                                               @Nullable String contentType,
+                                               boolean isGzip) {
+        synchronized (httpExchange) {
+            if (httpExchange.getResponseCode() != -1) {
+                return false;
+            }
+
+            try {
+                if (contentType != null) {
+                    httpExchange.getResponseHeaders().set("Content-Type", contentType);
+                }
+
+                if (isGzip) {
+                    httpExchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+
+                // Length 0 for chunked transfer when the sent length is unknown before compressing or streaming
+                httpExchange.sendResponseHeaders(code, isGzip || length < 0 ? 0 : (length == 0 ? -1 : length));
+                return true;
+            } catch (IOException e) {
+                LOGGER.error("JobUtils set Response error", e);
+                httpExchange.close();
+                return false;
+            }
         }
     }
 
@@ -163,8 +304,6 @@ public class JobUtils {
         }
     }
 
-    private static final Cache globalCache = new Cache();
-
     private static final String DRIVER_LOG_INFO_URL = "%s/yarnui/jobhistory/logs/%s/port/%s/%s/%s/livy";
 
     public static ApplicationMasterLogs getYarnLogs(@NotNull ApplicationKey key) throws IOException, ExecutionException, HDIException {
@@ -211,30 +350,23 @@ public class JobUtils {
                                                       @NotNull String type,
                                                       long start,
                                                       int size) {
-        final WebClient HTTP_WEB_CLIENT = new WebClient(BrowserVersion.CHROME);
-        HTTP_WEB_CLIENT.setCache(globalCache);
-
-        if (credentialsProvider != null) {
-            HTTP_WEB_CLIENT.setCredentialsProvider(credentialsProvider);
-        }
+        return getYarnContainerLog(credentialsProvider, baseUrl, type, start, size).getText();
+    }
 
+    @NotNull
+    private static YarnContainerLogFetcher.ContainerLog getYarnContainerLog(final CredentialsProvider credentialsProvider,
+                                                                            @NotNull String baseUrl,
+                                                                            @NotNull String type,
+                                                                            long start,
+                                                                            int size) {
         try {
-            URI url = new URI(baseUrl + "/").resolve(
-                    String.format("%s?start=%d", type, start) +
-                        (size <= 0 ? "" : String.format("&&end=%d", start + size)));
-            HtmlPage htmlPage = HTTP_WEB_CLIENT.getPage(url.toString());
-            // parse pre tag from html response
-            // there's only one 'pre' in response
-            DomNodeList<DomElement> preTagElements = htmlPage.getElementsByTagName("pre");
-            if (preTagElements.size() != 0) {
-                return preTagElements.get(preTagElements.size() - 1).asText();
-            }
+            return YarnContainerLogFetcher.fetch(credentialsProvider, baseUrl, type, start, size);
         } catch (URISyntaxException e) {
             LOGGER.error("baseUrl has syntax error: " + baseUrl);
         } catch (Exception e) {
             LOGGER.error("get Driver Log Error", e);
         }
-        return "";
+        return YarnContainerLogFetcher.ContainerLog.EMPTY;
     }
 
     /**
@@ -259,8 +391,9 @@ public class JobUtils {
 
         return Observable.create((Observable.OnSubscribe<String>) ob -> {
             long nextStart = 0;
-            String remainedLine = "";
-            String logs;
+            // The raw bytes after the last line break are kept to join with the next block
+            LogLineBuffer lineBuffer = new LogLineBuffer();
+            YarnContainerLogFetcher.ContainerLog containerLog;
             Thread currentThread = Thread.currentThread();
 
             // Refer to the Observable.window() operation:
@@ -271,35 +404,16 @@ public class JobUtils {
 
             try {
                 while (!ob.isUnsubscribed()) {
-                    logs = JobUtils.getInformationFromYarnLogDom(
-                            credentialsProvider, containerLogUrl, type, nextStart, blockSize);
-                    int lastLineBreak = logs.lastIndexOf('\n');
-
-                    if (lastLineBreak < 0) {
-                        if (logs.isEmpty() && !remainedLine.isEmpty()) {
-                            // Remained line is a full line since the backend producing logs line by line
-                            ob.onNext(remainedLine);
-                            remainedLine = "";
-                        } else {
-                            remainedLine += logs;
-                            nextStart += logs.length();
-                        }
+                    containerLog = getYarnContainerLog(credentialsProvider, containerLogUrl, type, nextStart, blockSize);
+
+                    // Advance by the raw bytes got, a character split by the block is decoded with the next block
+                    nextStart += containerLog.getByteCount();
+
+                    if (containerLog.getBytes().length == 0 && lineBuffer.hasRemained()) {
+                        // Remained line is a full line since the backend producing logs line by line
+                        lineBuffer.flush(containerLog.getCharset()).forEach(ob::onNext);
                     } else {
-                        long handledLength = new BufferedReader(new StringReader(
-                                                remainedLine + logs.substring(0, lastLineBreak)))
-                                .lines()
-                                .map(line -> {
-                                    ob.onNext(line);
-
-                                    // Count the line length with linebreak
-                                    // We need to handle this since the web client may convert the LF to CRLF
-                                    return (line.length() + 1);
-                                })
-                                .reduce((x, y) -> x + y)
-                                .orElse(0);
-
-                        remainedLine = "";
-                        nextStart += handledLength;
+                        lineBuffer.append(containerLog.getBytes(), containerLog.getCharset()).forEach(ob::onNext);
                     }
 
                     Thread.sleep(retryIntervalMs);
@@ -308,9 +422,10 @@ public class JobUtils {
             } finally {
                 // Get the rest logs from history server
                 // Don't worry about the log is moved to history server, the YarnUI can do URL redirect by itself
-                logs = JobUtils.getInformationFromYarnLogDom(credentialsProvider, containerLogUrl, type, nextStart, 0);
+                containerLog = getYarnContainerLog(credentialsProvider, containerLogUrl, type, nextStart, 0);
 
-                new BufferedReader(new StringReader(remainedLine + logs)).lines().forEach(ob::onNext);
+                lineBuffer.append(containerLog.getBytes(), containerLog.getCharset()).forEach(ob::onNext);
+                lineBuffer.flush(containerLog.getCharset()).forEach(ob::onNext);
             }
 
             ob.onCompleted();
@@ -318,9 +433,13 @@ public class JobUtils {
         }).subscribeOn(Schedulers.io());
     }
 
+    /**
+     * Get the response entity with the shared pooled client of the cluster
+     *
+     * The caller should consume the entity content to release the connection back to the pool.
+     */
     public static HttpEntity getEntity(@NotNull final IClusterDetail clusterDetail, @NotNull final String url) throws IOException, HDIException {
-        provider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(clusterDetail.getHttpUserName(), clusterDetail.getHttpPassword()));
-        final HttpClient client = HttpClients.custom().setDefaultCredentialsProvider(provider).build();
+        final HttpClient client = HttpClientPool.getInstance().getClient(clusterDetail);
 
         final HttpGet get = new HttpGet(url);
         final HttpResponse response = client.execute(get);
@@ -328,6 +447,13 @@ public class JobUtils {
         if (code == HttpStatus.SC_OK || code == HttpStatus.SC_CREATED) {
             return response.getEntity();
         } else {
+            EntityUtils.consumeQuietly(response.getEntity());
+
+            if (code == HttpStatus.SC_UNAUTHORIZED || code == HttpStatus.SC_FORBIDDEN) {
+                // The cluster credential may be changed, get the configuration again for the next call
+                clusterDetail.invalidateConfigurationInfo();
+            }
+
             throw new HDIException(response.getStatusLine().getReasonPhrase(), response.getStatusLine().getStatusCode());
         }
     }
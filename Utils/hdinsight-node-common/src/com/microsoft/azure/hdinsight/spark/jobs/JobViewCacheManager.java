@@ -21,10 +21,17 @@
  */
 package com.microsoft.azure.hdinsight.spark.jobs;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.microsoft.azure.hdinsight.common.JobViewManager;
+import com.microsoft.azure.hdinsight.common.task.TaskExecutor;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.rest.spark.Application;
 import com.microsoft.azure.hdinsight.sdk.rest.spark.event.JobStartEventLog;
@@ -35,102 +42,274 @@ import com.microsoft.azure.hdinsight.sdk.rest.spark.task.Task;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.App;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.ApplicationMasterLogs;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
+/**
+ * The local caches for job view.
+ *
+ * The caches are bounded by the weight (the elements count of the cached lists). Each application cache has two
+ * tiers decided by the Yarn application state:
+ *  - the running tier, whose entries are refreshed asynchronously after REFRESH_AFTER_WRITE_SECONDS on access
+ *    (the stale value is served until the reloading finishes), and expire after RUNNING_EXPIRE_AFTER_WRITE_MINUTES
+ *    without being refreshed, so an application viewed again later isn't shown with the old data;
+ *  - the finished tier, for the values loaded after the application finished, which won't change any more and
+ *    expire after FINISHED_EXPIRE_AFTER_WRITE_MINUTES.
+ */
 public class JobViewCacheManager {
-    private static final LoadingCache<ApplicationKey, List<Job>> sparkJobLocalCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .initialCapacity(20)
-            .build(new CacheLoader<ApplicationKey, List<Job>>() {
-                @Override
-                public List<Job> load(ApplicationKey key) throws Exception {
-                    return SparkRestUtil.getLastAttemptJobsFromApp(key);
-                }
-            });
+    private static final long REFRESH_AFTER_WRITE_SECONDS = 30;
+    private static final long RUNNING_EXPIRE_AFTER_WRITE_MINUTES = 2;
+    private static final long FINISHED_EXPIRE_AFTER_WRITE_MINUTES = 30;
 
-    private static final LoadingCache<ApplicationKey, List<Stage>> sparkStageLocalCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .initialCapacity(20)
-            .build(new CacheLoader<ApplicationKey, List<Stage>>() {
-                @Override
-                public List<Stage> load(ApplicationKey key) throws Exception {
-                    return SparkRestUtil.getAllStageFromApp(key);
-                }
-            });
+    /**
+     * The maximum elements count for each list cache tier, such as jobs, stages and executors
+     */
+    private static final long MAX_ELEMENTS_WEIGHT = 100_000;
 
-    private static final LoadingCache<ApplicationKey, List<Executor>> sparkExecutorLocalCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .initialCapacity(20)
-            .build(new CacheLoader<ApplicationKey, List<Executor>>() {
-                @Override
-                public List<Executor> load(ApplicationKey key) throws Exception {
-                    return SparkRestUtil.getAllExecutorFromApp(key);
-                }
+    /**
+     * The maximum tasks count for tasks summary cache tier
+     */
+    private static final long MAX_TASKS_WEIGHT = 500_000;
+
+    /**
+     * The maximum log size in KB for Yarn application logs cache tier
+     */
+    private static final long MAX_LOGS_WEIGHT_KB = 64 * 1024;
+
+    /**
+     * The maximum Yarn applications count for Yarn applications cache tier
+     */
+    private static final long MAX_YARN_APPS = 1000;
+
+    @FunctionalInterface
+    private interface AppValueLoader<V> {
+        V load(ApplicationKey key) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface AppValueReloader<V> {
+        V reload(ApplicationKey key, V oldValue) throws Exception;
+    }
+
+    private static <V> Weigher<ApplicationKey, List<V>> listWeigher() {
+        return (key, list) -> Math.max(list.size(), 1);
+    }
+
+    /**
+     * Build the weighted cache builder in one segment, since the max weight is divided among the segments and an
+     * entry heavier than its segment's share would be evicted as soon as loaded
+     */
+    static <K, V> CacheBuilder<K, V> weightedCacheBuilder(@NotNull Weigher<K, V> weigher, long maxWeight) {
+        return CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxWeight)
+                .weigher(weigher)
+                .initialCapacity(20)
+                .recordStats();
+    }
+
+    /**
+     * The two tiers cache of an application's data
+     */
+    private static class ApplicationCache<V> {
+        @NotNull
+        private final LoadingCache<ApplicationKey, V> running;
+        @NotNull
+        private final Cache<ApplicationKey, V> finished;
+
+        ApplicationCache(@NotNull Weigher<ApplicationKey, V> weigher,
+                         long maxWeight,
+                         @NotNull AppValueLoader<V> loader) {
+            this(weigher, maxWeight, loader, (key, oldValue) -> loader.load(key), value -> false);
+        }
+
+        /**
+         * @param isFinishedValue to check the value loaded is of a finished application, besides the Yarn
+         *                        application state cached before loading
+         */
+        ApplicationCache(@NotNull Weigher<ApplicationKey, V> weigher,
+                         long maxWeight,
+                         @NotNull AppValueLoader<V> loader,
+                         @NotNull AppValueReloader<V> reloader,
+                         @NotNull Predicate<V> isFinishedValue) {
+            this.finished = weightedCacheBuilder(weigher, maxWeight)
+                    .expireAfterWrite(FINISHED_EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+                    .build();
+
+            this.running = weightedCacheBuilder(weigher, maxWeight)
+                    .expireAfterWrite(RUNNING_EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+                    .refreshAfterWrite(REFRESH_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
+                    .build(new CacheLoader<ApplicationKey, V>() {
+                        @Override
+                        public V load(ApplicationKey key) throws Exception {
+                            return loadAndSettle(key, () -> loader.load(key), isFinishedValue);
+                        }
+
+                        @Override
+                        public ListenableFuture<V> reload(ApplicationKey key, V oldValue) throws Exception {
+                            return reloadInBackground(key.getClusterDetails(),
+                                    () -> loadAndSettle(key, () -> reloader.reload(key, oldValue), isFinishedValue));
+                        }
+                    });
+        }
+
+        /**
+         * Load the value, and keep it in the finished tier if the application has finished
+         */
+        private V loadAndSettle(@NotNull ApplicationKey key,
+                                @NotNull Callable<V> loader,
+                                @NotNull Predicate<V> isFinishedValue) throws Exception {
+            final boolean isFinishedBeforeLoading = isApplicationFinished(key);
+            final V value = loader.call();
+
+            if (isFinishedBeforeLoading || isFinishedValue.test(value)) {
+                finished.put(key, value);
+            }
+
+            return value;
+        }
+
+        V get(@NotNull ApplicationKey key) throws ExecutionException {
+            V value = finished.getIfPresent(key);
+            if (value != null) {
+                return value;
+            }
+
+            value = running.get(key);
+            if (finished.asMap().containsKey(key)) {
+                // Settled, the running tier won't serve it any more
+                running.invalidate(key);
+            }
+
+            return value;
+        }
+
+        @Nullable
+        V getIfPresent(@NotNull ApplicationKey key) {
+            V value = finished.getIfPresent(key);
+
+            return value != null ? value : running.getIfPresent(key);
+        }
+
+        @NotNull
+        CacheStats stats() {
+            // The finished tier is only looked up, its misses are counted by the running tier
+            final CacheStats runningStats = running.stats();
+            final CacheStats finishedStats = finished.stats();
+
+            return new CacheStats(
+                    runningStats.hitCount() + finishedStats.hitCount(),
+                    runningStats.missCount(),
+                    runningStats.loadSuccessCount(),
+                    runningStats.loadExceptionCount(),
+                    runningStats.totalLoadTime(),
+                    runningStats.evictionCount() + finishedStats.evictionCount());
+        }
+    }
+
+    private static final ApplicationCache<App> yarnApplicationLocalCache = new ApplicationCache<>(
+            (key, app) -> 1,
+            MAX_YARN_APPS,
+            YarnRestUtil::getApp,
+            (key, oldValue) -> YarnRestUtil.getApp(key),
+            App::isFinished);
+
+    private static final ApplicationCache<List<Job>> sparkJobLocalCache =
+            new ApplicationCache<>(listWeigher(), MAX_ELEMENTS_WEIGHT, SparkRestUtil::getLastAttemptJobsFromApp);
+
+    private static final ApplicationCache<List<Stage>> sparkStageLocalCache =
+            new ApplicationCache<>(listWeigher(), MAX_ELEMENTS_WEIGHT, SparkRestUtil::getAllStageFromApp);
+
+    private static final ApplicationCache<List<Executor>> sparkExecutorLocalCache =
+            new ApplicationCache<>(listWeigher(), MAX_ELEMENTS_WEIGHT, SparkRestUtil::getAllExecutorFromApp);
+
+    private static final ApplicationCache<List<Task>> sparkTasksSummaryLocalCache =
+            new ApplicationCache<>(listWeigher(), MAX_TASKS_WEIGHT, key -> {
+                List<Stage> stages = sparkStageLocalCache.get(key);
+                return SparkRestUtil.getSparkTasksOfStages(key, stages);
             });
 
-    private static final LoadingCache<String, List<Application>> sparkApplicationsLocalCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .initialCapacity(20)
+    private static final ApplicationCache<ApplicationMasterLogs> yarnAppLogLocalCache =
+            new ApplicationCache<>(
+                    (key, logs) -> 1 + (int) ((Optional.ofNullable(logs.getStdout()).map(String::length).orElse(0) +
+                                               Optional.ofNullable(logs.getStderr()).map(String::length).orElse(0) +
+                                               Optional.ofNullable(logs.getDirectoryInfo()).map(String::length).orElse(0)) / 1024),
+                    MAX_LOGS_WEIGHT_KB,
+                    JobUtils::getYarnLogs);
+
+    // Keep the event log position parsed to, so the refreshing of a running application only parses the new events
+    private static final ApplicationCache<SparkEventLogParser.Result> sparkJobStartEventLogCache =
+            new ApplicationCache<>(
+                    (key, result) -> Math.max(result.getJobStartEvents().size(), 1),
+                    MAX_ELEMENTS_WEIGHT,
+                    key -> SparkRestUtil.getSparkEventLogs(key, null),
+                    (key, oldResult) -> oldResult.append(SparkRestUtil.getSparkEventLogs(key, oldResult.getNextPosition())),
+                    result -> false);
+
+    // The applications list of a cluster keeps changing, it's cached as the running ones
+    private static final LoadingCache<String, List<Application>> sparkApplicationsLocalCache =
+            JobViewCacheManager.<String, List<Application>>weightedCacheBuilder(
+                    (key, apps) -> Math.max(apps.size(), 1), MAX_ELEMENTS_WEIGHT)
+            .expireAfterWrite(RUNNING_EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+            .refreshAfterWrite(REFRESH_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
             .build(new CacheLoader<String, List<Application>>() {
                 @Override
                 public List<Application> load(String key) throws Exception {
                     return SparkRestUtil.getSparkApplications(JobViewManager.getCluster(key));
                 }
-            });
 
-    private static final LoadingCache<ApplicationKey, List<Task>> sparkTasksSummaryLocalCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .initialCapacity(20)
-            .build(new CacheLoader<ApplicationKey, List<Task>>() {
                 @Override
-                public List<Task> load(ApplicationKey key) throws Exception {
-                    List<Task> allTasks = new ArrayList<>();
-                    List<Stage> stages = sparkStageLocalCache.get(key);
-                    for (Stage stage: stages) {
-                        int stageId = stage.getStageId();
-                        int attemptedId = stage.getAttemptId();
-                        List<Task> tasks = SparkRestUtil.getSparkTasks(key, stageId, attemptedId);
-                        allTasks.addAll(tasks);
-                    }
-                    return allTasks;
+                public ListenableFuture<List<Application>> reload(String key, List<Application> oldValue) throws Exception {
+                    final IClusterDetail clusterDetail = JobViewManager.getCluster(key);
+                    return reloadInBackground(clusterDetail, () -> SparkRestUtil.getSparkApplications(clusterDetail));
                 }
             });
 
-    private static final LoadingCache<ApplicationKey, ApplicationMasterLogs> yarnAppLogLocalCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .initialCapacity(20)
-            .build(new CacheLoader<ApplicationKey, ApplicationMasterLogs>() {
-                @Override
-                public ApplicationMasterLogs load(ApplicationKey key) throws Exception {
-                    return JobUtils.getYarnLogs(key);
-                }
-            });
+    /**
+     * Reload in the shared task executor as a background task, which is taken after the interactive job view
+     * requests and counted in the cluster's concurrency limit
+     */
+    private static <V> ListenableFuture<V> reloadInBackground(@Nullable IClusterDetail clusterDetail,
+                                                              @NotNull Callable<V> reloader) {
+        return TaskExecutor.submitBackground(clusterDetail == null ? null : clusterDetail.getConnectionUrl(), reloader);
+    }
 
-    private static final LoadingCache<ApplicationKey, App> yarnApplicationLocalCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .initialCapacity(20)
-            .build(new CacheLoader<ApplicationKey, App>() {
-                @Override
-                public App load(ApplicationKey key) throws Exception {
-                    return YarnRestUtil.getApp(key);
-                }
-            });
+    /**
+     * Check the application is finished by the cached Yarn application, without fetching it
+     */
+    private static boolean isApplicationFinished(@NotNull ApplicationKey key) {
+        App app = yarnApplicationLocalCache.getIfPresent(key);
 
-    private static final LoadingCache<ApplicationKey, List<JobStartEventLog>> sparkJobStartEventLogCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .initialCapacity(20)
-            .build(new CacheLoader<ApplicationKey, List<JobStartEventLog>>() {
-                @Override
-                public List<JobStartEventLog> load(ApplicationKey key) throws Exception {
-                    return SparkRestUtil.getSparkEventLogs(key);
-                }
-            });
+        return app != null && app.isFinished();
+    }
+
+    /**
+     * Get the statistics of all job view caches
+     *
+     * @return the map from the cache name to its statistics
+     */
+    public static Map<String, CacheStats> getCacheStats() {
+        return ImmutableMap.<String, CacheStats>builder()
+                .put("sparkJobs", sparkJobLocalCache.stats())
+                .put("sparkStages", sparkStageLocalCache.stats())
+                .put("sparkExecutors", sparkExecutorLocalCache.stats())
+                .put("sparkApplications", sparkApplicationsLocalCache.stats())
+                .put("sparkTasksSummary", sparkTasksSummaryLocalCache.stats())
+                .put("yarnAppLogs", yarnAppLogLocalCache.stats())
+                .put("yarnApplications", yarnApplicationLocalCache.stats())
+                .put("sparkJobStartEventLogs", sparkJobStartEventLogCache.stats())
+                .build();
+    }
 
     public static List<JobStartEventLog> getJobStartEventLogs(@NotNull ApplicationKey key) throws ExecutionException {
-        return sparkJobStartEventLogCache.get(key);
+        return sparkJobStartEventLogCache.get(key).getJobStartEvents();
     }
 
     public static ApplicationMasterLogs getYarnLogs(@NotNull ApplicationKey key) throws ExecutionException {
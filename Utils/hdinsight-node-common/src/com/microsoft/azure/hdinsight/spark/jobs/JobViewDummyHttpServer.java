@@ -22,36 +22,63 @@
 package com.microsoft.azure.hdinsight.spark.jobs;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.microsoft.azure.hdinsight.common.HttpFutureCallback;
-import com.microsoft.azure.hdinsight.common.MultiHttpFutureCallback;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.azure.hdinsight.common.task.*;
+import com.microsoft.azure.hdinsight.spark.jobs.framework.HttpRequestType;
 import com.microsoft.azure.hdinsight.spark.jobs.framework.RequestDetail;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
-import com.microsoft.azure.hdinsight.spark.jobs.framework.HttpRequestType;
+import com.microsoft.azure.hdinsight.sdk.common.HDIException;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
 import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.net.HttpURLConnection.HTTP_BAD_GATEWAY;
+import static java.net.HttpURLConnection.HTTP_GATEWAY_TIMEOUT;
 
 public class JobViewDummyHttpServer {
-    private static RequestDetail requestDetail;
+    private static volatile RequestDetail requestDetail;
     public static final int PORT = 39128;
     private static HttpServer server;
     private static final int NO_OF_THREADS = 10;
+    // The pending requests beyond the queue capacity are handled in the server dispatcher thread
+    private static final int MAX_PENDING_REQUESTS = 100;
     private static ExecutorService executorService;
     private static boolean isEnabled = false;
 
+    // The JDK HTTP server doesn't notify the client disconnection, the upstream call is cancelled by the timeout
+    private static final int REQUEST_TIMEOUT_SECONDS = 120;
+    private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("job-view-request-timeout-%d").setDaemon(true).build());
+
+    // The upstream calls in flight, keyed by the request URI, the identical requests share one upstream call
+    private static final ConcurrentMap<String, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
+
+    // The proxied upstream calls in flight, keyed by the request URI, the response is streamed to all the
+    // identical requests joined before it arrives
+    private static final ConcurrentMap<String, ProxiedRequest> inFlightProxies = new ConcurrentHashMap<>();
+
     public static RequestDetail getCurrentRequestDetail() {
         return requestDetail;
     }
@@ -82,98 +109,15 @@ public class JobViewDummyHttpServer {
         try {
             server = HttpServer.create(new InetSocketAddress(PORT), 10);
 
-            server.createContext("/clusters/", new HttpHandler() {
-                @Override
-                public void handle(final HttpExchange httpExchange) throws IOException {
-                    requestDetail = RequestDetail.getRequestDetail(httpExchange.getRequestURI());
-                    if (requestDetail == null) {
-                        return;
-                    }
-
-                    IClusterDetail clusterDetail = requestDetail.getClusterDetail();
-                    final String queryUrl = requestDetail.getQueryUrl();
-                    if (requestDetail.getApiType() == HttpRequestType.YarnHistory) {
-                        TaskExecutor.submit(new YarnHistoryTask(clusterDetail, queryUrl, new HttpFutureCallback(httpExchange) {
-                            @Override
-                            public void onSuccess(String str) {
-                                httpExchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-                                try {
-                                    // work around of get job result
-                                    //TODO: get job result by REST API
-                                    Document doc = Jsoup.parse(str);
-                                    Elements contentElements = doc.getElementsByClass("content");
-                                    if (contentElements.size() == 1) {
-                                        Elements elements = contentElements.get(0).getElementsByTag("pre");
-                                        if (elements.size() == 1) {
-                                            str = elements.get(0).html();
-                                        }
-                                    }
-
-                                    httpExchange.sendResponseHeaders(200, str.length());
-                                    OutputStream stream = httpExchange.getResponseBody();
-                                    stream.write(str.getBytes());
-                                    stream.close();
-                                } catch (IOException e) {
-                                    int a = 1;
-//                                    LOGGER.error("Get job history error", e);
-                                }
-                            }
-
-                        }));
-                    } else if (requestDetail.getApiType() == HttpRequestType.LivyBatchesRest) {
-                        TaskExecutor.submit(new LivyTask(clusterDetail, queryUrl, new HttpFutureCallback(httpExchange) {
-                            @Override
-                            public void onSuccess(String str) {
-                                httpExchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-                                try {
-                                    String applicationId = requestDetail.getProperty("applicationId");
-                                    if (applicationId != null) {
-                                        str = JobUtils.getJobInformation(str, applicationId);
-                                    }
-
-                                    httpExchange.sendResponseHeaders(200, str.length());
-                                    OutputStream stream = httpExchange.getResponseBody();
-                                    stream.write(str.getBytes());
-                                    stream.close();
-                                } catch (IOException e) {
-//                                    LOGGER.error("Get job history error", e);
-                                }
-                            }
-                        }));
-                    } else if(requestDetail.getApiType() == HttpRequestType.MultiTask){
-                        TaskExecutor.submit(new MultiRestTask(clusterDetail, requestDetail.getQueryUrls(), new MultiHttpFutureCallback(httpExchange){
-                            public void onSuccess(List<String> strs) {
-                                httpExchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-                                try {
-                                    String str = tasksDetailsConvert(strs);
-                                    httpExchange.sendResponseHeaders(200, str.length());
-                                    OutputStream stream = httpExchange.getResponseBody();
-                                    stream.write(str.getBytes());
-                                    stream.close();
-                                } catch (IOException e) {
-//                                    LOGGER.error("Get job history error", e);
-                                }
-                            }
-                        }));
-                    } else {
-                        TaskExecutor.submit(new RestTask(clusterDetail, queryUrl, new HttpFutureCallback(httpExchange) {
-                            @Override
-                            public void onSuccess(@NotNull String str) {
-                                httpExchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
-                                try {
-                                    httpExchange.sendResponseHeaders(200, str.length());
-                                    OutputStream stream = httpExchange.getResponseBody();
-                                    stream.write(str.getBytes());
-                                    stream.close();
-                                } catch (IOException e) {
-//                                    LOGGER.error("Get job history error", e);
-                                }
-                            }
-                        }));
-                    }
-                }
-            });
-            executorService = Executors.newFixedThreadPool(NO_OF_THREADS);
+            server.createContext("/clusters/", JobViewDummyHttpServer::handle);
+            executorService = new ThreadPoolExecutor(
+                    NO_OF_THREADS,
+                    NO_OF_THREADS,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(MAX_PENDING_REQUESTS),
+                    new ThreadFactoryBuilder().setNameFormat("job-view-http-server-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
             server.setExecutor(executorService);
             server.start();
             isEnabled = true;
@@ -182,6 +126,266 @@ public class JobViewDummyHttpServer {
 //            DefaultLoader.getUIHelper().showError(e.getClass().getName(), e.getMessage());
         }
     }
+
+    /**
+     * Handle the request without blocking the server thread, the response is sent when the upstream call completes
+     */
+    private static void handle(@NotNull final HttpExchange httpExchange) {
+        final RequestDetail detail = RequestDetail.getRequestDetail(httpExchange.getRequestURI());
+        httpExchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+        if (detail == null) {
+            JobUtils.setResponse(httpExchange, "Unsupported request " + httpExchange.getRequestURI(), 404);
+            return;
+        }
+
+        requestDetail = detail;
+
+        if (isProxied(detail.getApiType())) {
+            proxy(httpExchange, detail);
+            return;
+        }
+
+        // The timeout only cancels this caller's view, the shared upstream call is cancelled with the last caller
+        final ListenableFuture<String> response = Futures.withTimeout(
+                fetchSingleFlight(httpExchange.getRequestURI().toString(), detail),
+                REQUEST_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS,
+                timeoutScheduler);
+
+        Futures.addCallback(response, new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String response) {
+                JobUtils.setResponse(httpExchange, response);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                setFailureResponse(httpExchange, throwable);
+            }
+        });
+    }
+
+    private static boolean isProxied(@NotNull HttpRequestType apiType) {
+        return apiType != HttpRequestType.YarnHistory &&
+                apiType != HttpRequestType.LivyBatchesRest &&
+                apiType != HttpRequestType.MultiTask;
+    }
+
+    /**
+     * Stream the upstream response to the exchange, the identical requests in flight share one upstream call
+     */
+    private static void proxy(@NotNull final HttpExchange httpExchange, @NotNull final RequestDetail detail) {
+        final String key = httpExchange.getRequestURI().toString();
+        ProxiedRequest proxied;
+
+        while (true) {
+            final ProxiedRequest created = new ProxiedRequest();
+            proxied = inFlightProxies.putIfAbsent(key, created);
+            if (proxied == null) {
+                proxied = created;
+                created.response.addListener(() -> inFlightProxies.remove(key, created), MoreExecutors.directExecutor());
+                try {
+                    created.response.setFuture(TaskExecutor.submit(new ProxyTask(
+                            detail.getClusterDetail(), detail.getQueryUrl(), created::respond, Task.emptyCallback())));
+                } catch (Throwable t) {
+                    created.response.setException(t);
+                }
+            }
+
+            if (proxied.join(httpExchange)) {
+                break;
+            }
+
+            // The upstream response has been streaming or abandoned, start another one
+            inFlightProxies.remove(key, proxied);
+        }
+
+        final ProxiedRequest joined = proxied;
+        final ListenableFuture<Integer> streamed = Futures.withTimeout(
+                Futures.nonCancellationPropagating(joined.response),
+                REQUEST_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS,
+                timeoutScheduler);
+
+        Futures.addCallback(streamed, new FutureCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer statusCode) {
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                // Ignored by the exchange if the streaming has started
+                setFailureResponse(httpExchange, throwable);
+                joined.leave(httpExchange);
+            }
+        });
+    }
+
+    private static void setFailureResponse(@NotNull HttpExchange httpExchange, @NotNull Throwable throwable) {
+        if (throwable instanceof TimeoutException) {
+            JobUtils.setResponse(httpExchange, "Request timed out: " + httpExchange.getRequestURI(), HTTP_GATEWAY_TIMEOUT);
+        } else if (throwable instanceof HDIException && ((HDIException) throwable).getErrorCode() >= 400) {
+            // Pass the upstream error status through
+            JobUtils.setResponse(httpExchange, String.valueOf(throwable.getMessage()), ((HDIException) throwable).getErrorCode());
+        } else {
+            JobUtils.setResponse(httpExchange, String.valueOf(throwable.getMessage()), HTTP_BAD_GATEWAY);
+        }
+    }
+
+    /**
+     * The proxied upstream call shared by the identical requests, the requests can join it until the upstream
+     * responds. It's cancelled when all its requests have given up.
+     */
+    private static class ProxiedRequest {
+        private final SettableFuture<Integer> response = SettableFuture.create();
+        private final List<HttpExchange> httpExchanges = new ArrayList<>();
+        // Set when the upstream responds or all the requests have given up, no more joining then
+        private boolean closed = false;
+
+        synchronized boolean join(@NotNull HttpExchange httpExchange) {
+            if (closed) {
+                return false;
+            }
+
+            httpExchanges.add(httpExchange);
+            return true;
+        }
+
+        /**
+         * Called by the proxy task when the upstream responds, to get the exchanges to stream to
+         */
+        @NotNull
+        synchronized Collection<HttpExchange> respond() {
+            closed = true;
+            return new ArrayList<>(httpExchanges);
+        }
+
+        void leave(@NotNull HttpExchange httpExchange) {
+            synchronized (this) {
+                httpExchanges.remove(httpExchange);
+                if (closed || !httpExchanges.isEmpty()) {
+                    return;
+                }
+
+                closed = true;
+            }
+
+            // Cancel the upstream task, which is dropped from the executor queue if it hasn't started
+            response.cancel(true);
+        }
+    }
+
+    /**
+     * Join the upstream call in flight for the key, or start one
+     *
+     * @return the caller's view of the upstream call, cancelling it cancels the upstream call if no one else waits
+     */
+    @NotNull
+    private static ListenableFuture<String> fetchSingleFlight(@NotNull final String key,
+                                                              @NotNull final RequestDetail detail) {
+        while (true) {
+            final InFlightRequest created = new InFlightRequest();
+            InFlightRequest inFlight = inFlightRequests.putIfAbsent(key, created);
+            if (inFlight == null) {
+                inFlight = created;
+                created.response.addListener(() -> inFlightRequests.remove(key, created), MoreExecutors.directExecutor());
+                try {
+                    created.response.setFuture(fetch(detail));
+                } catch (Throwable t) {
+                    created.response.setException(t);
+                }
+            }
+
+            final ListenableFuture<String> view = inFlight.join();
+            if (view != null) {
+                return view;
+            }
+
+            // All the callers of it have given up, start another one
+            inFlightRequests.remove(key, inFlight);
+        }
+    }
+
+    /**
+     * The upstream call shared by the identical requests, it's cancelled when all its callers have given up
+     */
+    private static class InFlightRequest {
+        private final SettableFuture<String> response = SettableFuture.create();
+        private int waiters = 0;
+        private boolean abandoned = false;
+
+        @Nullable
+        synchronized ListenableFuture<String> join() {
+            if (abandoned) {
+                return null;
+            }
+
+            waiters++;
+            final ListenableFuture<String> view = Futures.nonCancellationPropagating(response);
+            view.addListener(() -> {
+                if (view.isCancelled()) {
+                    leave();
+                }
+            }, MoreExecutors.directExecutor());
+
+            return view;
+        }
+
+        private void leave() {
+            synchronized (this) {
+                if (--waiters > 0 || response.isDone()) {
+                    return;
+                }
+
+                abandoned = true;
+            }
+
+            // Cancel the upstream task, which is dropped from the executor queue if it hasn't started
+            response.cancel(true);
+        }
+    }
+
+    @NotNull
+    private static ListenableFuture<String> fetch(@NotNull final RequestDetail detail) {
+        final IClusterDetail clusterDetail = detail.getClusterDetail();
+        final String queryUrl = detail.getQueryUrl();
+
+        switch (detail.getApiType()) {
+            case YarnHistory:
+                return Futures.transformAsync(
+                        TaskExecutor.submit(new YarnHistoryTask(clusterDetail, queryUrl, Task.emptyCallback())),
+                        str -> Futures.immediateFuture(extractJobResult(str)));
+            case LivyBatchesRest:
+                final String applicationId = detail.getProperty("applicationId");
+                return Futures.transformAsync(
+                        TaskExecutor.submit(new LivyTask(clusterDetail, queryUrl, Task.emptyCallback())),
+                        str -> Futures.immediateFuture(
+                                applicationId == null ? str : JobUtils.getJobInformation(str, applicationId)));
+            case MultiTask:
+                return Futures.transformAsync(
+                        TaskExecutor.submit(new MultiRestTask(clusterDetail, detail.getQueryUrls(), Task.emptyCallback())),
+                        strs -> Futures.immediateFuture(tasksDetailsConvert(strs)));
+            default:
+                throw new IllegalArgumentException("Not a coalesced request type: " + detail.getApiType());
+        }
+    }
+
+    @NotNull
+    private static String extractJobResult(@NotNull String str) {
+        // work around of get job result
+        //TODO: get job result by REST API
+        Document doc = Jsoup.parse(str);
+        Elements contentElements = doc.getElementsByClass("content");
+        if (contentElements.size() == 1) {
+            Elements elements = contentElements.get(0).getElementsByTag("pre");
+            if (elements.size() == 1) {
+                return elements.get(0).html();
+            }
+        }
+
+        return str;
+    }
+
     private static ObjectMapper mapper = new ObjectMapper();
 
     private static String tasksDetailsConvert(List<String> strs) throws IOException {
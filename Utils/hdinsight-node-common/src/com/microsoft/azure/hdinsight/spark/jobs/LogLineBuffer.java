@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.microsoft.azure.hdinsight.spark.jobs;
+
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The buffer to join the log byte ranges into lines. The bytes after the last line break are kept raw until the
+ * line is completed, so that a multi-byte character split by the ranges is decoded as a whole.
+ */
+class LogLineBuffer {
+    @NotNull
+    private final ByteArrayOutputStream remained = new ByteArrayOutputStream();
+
+    /**
+     * Append the bytes of the next range
+     *
+     * @param bytes the raw log bytes
+     * @param charset the charset of the log
+     * @return the lines completed by the bytes, without line breaks
+     */
+    @NotNull
+    List<String> append(@NotNull byte[] bytes, @NotNull Charset charset) {
+        int lastLineBreak = bytes.length - 1;
+        while (lastLineBreak >= 0 && bytes[lastLineBreak] != '\n') {
+            lastLineBreak--;
+        }
+
+        if (lastLineBreak < 0) {
+            remained.write(bytes, 0, bytes.length);
+
+            return Collections.emptyList();
+        }
+
+        remained.write(bytes, 0, lastLineBreak + 1);
+        List<String> lines = decodeLines(charset);
+        remained.write(bytes, lastLineBreak + 1, bytes.length - lastLineBreak - 1);
+
+        return lines;
+    }
+
+    /**
+     * @return true if there are bytes of an uncompleted line kept
+     */
+    boolean hasRemained() {
+        return remained.size() > 0;
+    }
+
+    /**
+     * Take the kept bytes as a full line
+     *
+     * @param charset the charset of the log
+     * @return the lines of the kept bytes
+     */
+    @NotNull
+    List<String> flush(@NotNull Charset charset) {
+        return decodeLines(charset);
+    }
+
+    @NotNull
+    private List<String> decodeLines(@NotNull Charset charset) {
+        String text = new String(remained.toByteArray(), charset);
+        remained.reset();
+
+        return new BufferedReader(new StringReader(text)).lines().collect(Collectors.toList());
+    }
+}
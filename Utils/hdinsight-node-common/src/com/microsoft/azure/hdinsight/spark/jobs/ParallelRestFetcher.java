@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.spark.jobs;
+
+import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
+import com.microsoft.azure.hdinsight.sdk.common.AggregatedException;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The helper for the "list then fetch details" REST pattern, such as getting the tasks for every stage.
+ *
+ * The detail requests are issued in parallel with a bounded concurrency per cluster, the requests not started yet
+ * are held back until a running one finishes, and the results are merged in the order of the sources.
+ */
+public class ParallelRestFetcher {
+    /**
+     * The default maximum concurrent requests to one cluster
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private static final ConcurrentMap<String, Integer> clusterParallelism = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface DetailFetcher<S, R> {
+        List<R> fetch(S source) throws Exception;
+    }
+
+    public static void setParallelism(@NotNull IClusterDetail clusterDetail, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism should be positive: " + parallelism);
+        }
+
+        clusterParallelism.put(getClusterKey(clusterDetail), parallelism);
+    }
+
+    public static int getParallelism(@NotNull IClusterDetail clusterDetail) {
+        return clusterParallelism.getOrDefault(getClusterKey(clusterDetail), DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Fetch details for every source in parallel and merge them
+     *
+     * @param clusterDetail the cluster the requests are sent to
+     * @param sources the sources got from the list request
+     * @param fetcher the detail fetcher for one source
+     * @return all details in the order of sources
+     * @throws AggregatedException the exception with all failures, the details got aren't returned since an
+     *                             incomplete list mustn't be cached as the whole
+     */
+    @NotNull
+    public static <S, R> List<R> fetchAll(@NotNull IClusterDetail clusterDetail,
+                                          @NotNull List<S> sources,
+                                          @NotNull DetailFetcher<S, R> fetcher) throws AggregatedException {
+        final List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+
+        final List<R> results = fetch(clusterDetail, sources, fetcher, failures)
+                .toList()
+                .toBlocking()
+                .singleOrDefault(new ArrayList<>());
+
+        if (!failures.isEmpty()) {
+            throw new AggregatedException(new ArrayList<>(failures));
+        }
+
+        return results;
+    }
+
+    /**
+     * Fetch details for every source in parallel as an Observable
+     *
+     * @param clusterDetail the cluster the requests are sent to
+     * @param sources the sources got from the list request
+     * @param fetcher the detail fetcher for one source
+     * @param failures the list to collect the failed requests' exceptions, the failed source is skipped
+     * @return the details Observable in the order of sources
+     */
+    @NotNull
+    public static <S, R> Observable<R> fetch(@NotNull IClusterDetail clusterDetail,
+                                             @NotNull List<S> sources,
+                                             @NotNull DetailFetcher<S, R> fetcher,
+                                             @NotNull List<Exception> failures) {
+        final int parallelism = getParallelism(clusterDetail);
+
+        return Observable.from(sources)
+                .concatMapEager(source -> Observable.fromCallable(() -> fetcher.fetch(source))
+                                .subscribeOn(Schedulers.io())
+                                .flatMap(Observable::from)
+                                .onErrorResumeNext(err -> {
+                                    failures.add(err instanceof Exception ? (Exception) err : new Exception(err));
+                                    return Observable.empty();
+                                }),
+                        Math.max(sources.size(), 1),
+                        parallelism);
+    }
+
+    @NotNull
+    private static String getClusterKey(@NotNull IClusterDetail clusterDetail) {
+        return clusterDetail.getConnectionUrl().toLowerCase();
+    }
+}
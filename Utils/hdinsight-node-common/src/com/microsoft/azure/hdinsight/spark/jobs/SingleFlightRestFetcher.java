@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.spark.jobs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
+import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.rest.ObjectConvertUtils;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single-flight layer for the Spark and YARN REST GET calls. The concurrent calls for the same URL share
+ * one in-flight request, and the 404 and 5xx failures are remembered for a short while so that a failing
+ * cluster isn't hammered.
+ *
+ * The response is parsed from the stream by the caller which sends the request, and the parsed result is shared
+ * with the joined callers, so the raw response is never buffered. The shared results shouldn't be modified.
+ */
+public class SingleFlightRestFetcher {
+    public static final int NEGATIVE_CACHE_SECONDS = 10;
+    private static final int MAX_NEGATIVE_CACHE_SIZE = 1000;
+
+    private static final ConcurrentMap<String, ListenableFuture<?>> inFlightRequests = new ConcurrentHashMap<>();
+
+    private static final Cache<String, HDIException> failedRequests = CacheBuilder.newBuilder()
+            .expireAfterWrite(NEGATIVE_CACHE_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(MAX_NEGATIVE_CACHE_SIZE)
+            .build();
+
+    @FunctionalInterface
+    private interface EntityParser<T> {
+        T parse(HttpEntity entity) throws IOException;
+    }
+
+    /**
+     * Get the JSON or XML object of the URL, joining the in-flight request for the same URL, user and class if any
+     *
+     * @throws HDIException the REST call failed, or failed within the last {@link #NEGATIVE_CACHE_SECONDS} seconds
+     */
+    @NotNull
+    public static <T> Optional<T> getObject(@NotNull final IClusterDetail clusterDetail,
+                                            @NotNull final String url,
+                                            @NotNull final Class<T> tClass) throws IOException, HDIException {
+        return fetch(clusterDetail, url, "object:" + tClass.getName(),
+                entity -> ObjectConvertUtils.convertEntityToObject(entity, tClass));
+    }
+
+    /**
+     * Get the JSON or XML array of the URL, joining the in-flight request for the same URL, user and class if any
+     *
+     * @throws HDIException the REST call failed, or failed within the last {@link #NEGATIVE_CACHE_SECONDS} seconds
+     */
+    @NotNull
+    public static <T> Optional<List<T>> getList(@NotNull final IClusterDetail clusterDetail,
+                                                @NotNull final String url,
+                                                @NotNull final Class<T> tClass) throws IOException, HDIException {
+        return fetch(clusterDetail, url, "list:" + tClass.getName(),
+                entity -> ObjectConvertUtils.convertEntityToList(entity, tClass));
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private static <T> T fetch(@NotNull final IClusterDetail clusterDetail,
+                               @NotNull final String url,
+                               @NotNull final String resultType,
+                               @NotNull final EntityParser<T> parser) throws IOException, HDIException {
+        final String key = clusterDetail.getHttpUserName() + "@" + url;
+
+        final HDIException lastFailure = failedRequests.getIfPresent(key);
+        if (lastFailure != null) {
+            throw new HDIException(lastFailure.getMessage(), lastFailure.getErrorCode());
+        }
+
+        final String flightKey = key + "#" + resultType;
+        final SettableFuture<T> created = SettableFuture.create();
+        final ListenableFuture<?> inFlight = inFlightRequests.putIfAbsent(flightKey, created);
+        if (inFlight != null) {
+            return waitFor((ListenableFuture<T>) inFlight);
+        }
+
+        try {
+            created.set(parser.parse(JobUtils.getEntity(clusterDetail, url)));
+        } catch (HDIException e) {
+            if (isNegativeCacheable(e.getErrorCode())) {
+                failedRequests.put(key, e);
+            }
+
+            created.setException(e);
+        } catch (Throwable t) {
+            created.setException(t);
+        } finally {
+            inFlightRequests.remove(flightKey, created);
+        }
+
+        return waitFor(created);
+    }
+
+    /**
+     * Forget the remembered failures, for the user to retry immediately
+     */
+    public static void clearFailures() {
+        failedRequests.invalidateAll();
+    }
+
+    private static boolean isNegativeCacheable(int statusCode) {
+        return statusCode == HttpStatus.SC_NOT_FOUND || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    @NotNull
+    private static <T> T waitFor(@NotNull final ListenableFuture<T> future) throws IOException, HDIException {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof HDIException) {
+                // A new exception for the stack trace of this caller
+                final HDIException failure = (HDIException) cause;
+                throw new HDIException(failure.getMessage(), failure.getErrorCode());
+            } else if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new HDIException(String.valueOf(cause.getMessage()), cause);
+        }
+    }
+}
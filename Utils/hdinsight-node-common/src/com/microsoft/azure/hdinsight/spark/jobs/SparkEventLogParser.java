@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.spark.jobs;
+
+import com.microsoft.azure.hdinsight.sdk.rest.ObjectConvertUtils;
+import com.microsoft.azure.hdinsight.sdk.rest.spark.event.JobStartEventLog;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The streaming parser for Spark event logs zip got from Spark history server REST API `applications/{appId}/logs`.
+ *
+ * The zip is read directly from the response stream, the event log lines are scanned one by one and only
+ * the `SparkListenerJobStart` lines are deserialized. The other lines are dropped right after their event names
+ * are checked, so the whole event log is never held in memory.
+ */
+public class SparkEventLogParser {
+    private static final String JOB_START_EVENT = "SparkListenerJobStart";
+
+    /**
+     * Spark JsonProtocol always writes the `Event` field first, so the event name can be checked within the line head
+     */
+    private static final byte[] JOB_START_EVENT_MARK = ("\"" + JOB_START_EVENT + "\"").getBytes(StandardCharsets.UTF_8);
+    private static final int EVENT_NAME_SCAN_LENGTH = 128;
+
+    /**
+     * The position in event logs to resume parsing from
+     */
+    public static class Position {
+        private final String entryName;
+        private final long offset;
+
+        public Position(@NotNull String entryName, long offset) {
+            this.entryName = entryName;
+            this.offset = offset;
+        }
+
+        /**
+         * @return the zip entry name, in format "{appId}_{attemptId}"
+         */
+        public String getEntryName() {
+            return entryName;
+        }
+
+        /**
+         * @return the uncompressed byte offset right after the last complete line parsed
+         */
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    public static class Result {
+        private final List<JobStartEventLog> jobStartEvents;
+        private final Position nextPosition;
+
+        Result(@NotNull List<JobStartEventLog> jobStartEvents, @Nullable Position nextPosition) {
+            this.jobStartEvents = jobStartEvents;
+            this.nextPosition = nextPosition;
+        }
+
+        /**
+         * @return the job start events after the resuming position
+         */
+        public List<JobStartEventLog> getJobStartEvents() {
+            return jobStartEvents;
+        }
+
+        /**
+         * @return the position to resume the next parsing from, null if no event log entry found
+         */
+        @Nullable
+        public Position getNextPosition() {
+            return nextPosition;
+        }
+
+        /**
+         * Append the result parsed by resuming from this result's next position
+         *
+         * @param resumed the result parsed from {@link #getNextPosition()}
+         * @return the result with all job start events, or the resumed result only if it's from another attempt entry
+         */
+        @NotNull
+        public Result append(@NotNull Result resumed) {
+            if (nextPosition == null || resumed.getNextPosition() == null ||
+                    !nextPosition.getEntryName().equals(resumed.getNextPosition().getEntryName())) {
+                return resumed;
+            }
+
+            List<JobStartEventLog> events = new ArrayList<>(jobStartEvents);
+            events.addAll(resumed.getJobStartEvents());
+
+            return new Result(events, resumed.getNextPosition());
+        }
+    }
+
+    /**
+     * Parse the job start events of the application last attempt from the event logs zip stream
+     *
+     * @param zipStream the event logs zip stream, it's not closed by the method
+     * @param appId the application ID
+     * @param from the position to resume from, null to parse from the beginning
+     * @return the parsing result
+     * @throws IOException exceptions for reading the stream
+     */
+    @NotNull
+    public static Result parseJobStartEvents(@NotNull InputStream zipStream,
+                                             @NotNull String appId,
+                                             @Nullable Position from) throws IOException {
+        // every application has an attempt in event log
+        // and the entity name should be in formation "{appId}_{attemptId}"
+        Pattern entryNamePattern = Pattern.compile(Pattern.quote(appId) + "_(\\d+)");
+        ZipInputStream zipInputStream = new ZipInputStream(zipStream);
+
+        Result lastAttemptResult = null;
+        int lastAttemptId = -1;
+        ZipEntry entry;
+
+        while ((entry = zipInputStream.getNextEntry()) != null) {
+            Matcher matcher = entryNamePattern.matcher(entry.getName());
+
+            if (!entry.isDirectory() && matcher.matches() && Integer.parseInt(matcher.group(1)) > lastAttemptId) {
+                lastAttemptId = Integer.parseInt(matcher.group(1));
+
+                long startOffset = (from != null && from.getEntryName().equals(entry.getName())) ? from.getOffset() : 0;
+                lastAttemptResult = parseEntry(zipInputStream, entry.getName(), startOffset);
+            }
+
+            zipInputStream.closeEntry();
+        }
+
+        return lastAttemptResult != null ?
+                lastAttemptResult :
+                new Result(Collections.emptyList(), null);
+    }
+
+    @NotNull
+    private static Result parseEntry(@NotNull InputStream entryStream,
+                                     @NotNull String entryName,
+                                     long startOffset) throws IOException {
+        List<JobStartEventLog> events = new ArrayList<>();
+        InputStream in = new BufferedInputStream(entryStream);
+        long position = skipFully(in, startOffset);
+        long lineEndOffset = position;
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream(EVENT_NAME_SCAN_LENGTH);
+        boolean isCandidate = true;
+        int b;
+
+        while ((b = in.read()) != -1) {
+            position++;
+
+            if (b == '\n') {
+                if (isCandidate) {
+                    addJobStartEvent(events, line);
+                }
+
+                lineEndOffset = position;
+                line.reset();
+                isCandidate = true;
+                continue;
+            }
+
+            if (!isCandidate) {
+                // Drop the rest of a line which isn't a job start event
+                continue;
+            }
+
+            line.write(b);
+
+            if (line.size() == EVENT_NAME_SCAN_LENGTH && !containsJobStartMark(line.toByteArray())) {
+                isCandidate = false;
+            }
+        }
+
+        // The last line may be in writing for a running application, only count it in when it's a complete event
+        if (isCandidate && line.size() > 0 && addJobStartEvent(events, line)) {
+            lineEndOffset = position;
+        }
+
+        return new Result(events, new Position(entryName, lineEndOffset));
+    }
+
+    private static boolean addJobStartEvent(@NotNull List<JobStartEventLog> events, @NotNull ByteArrayOutputStream line) {
+        byte[] lineBytes = line.toByteArray();
+
+        if (!containsJobStartMark(lineBytes)) {
+            return false;
+        }
+
+        JobStartEventLog event = ObjectConvertUtils.convertToObjectQuietly(
+                new String(lineBytes, StandardCharsets.UTF_8), JobStartEventLog.class);
+
+        if (event == null || !JOB_START_EVENT.equalsIgnoreCase(Objects.toString(event.getEvent(), ""))) {
+            return false;
+        }
+
+        events.add(event);
+        return true;
+    }
+
+    private static boolean containsJobStartMark(@NotNull byte[] head) {
+        int scanLength = Math.min(head.length, EVENT_NAME_SCAN_LENGTH);
+
+        for (int i = 0; i + JOB_START_EVENT_MARK.length <= scanLength; i++) {
+            int j = 0;
+            while (j < JOB_START_EVENT_MARK.length && head[i + j] == JOB_START_EVENT_MARK[j]) {
+                j++;
+            }
+
+            if (j == JOB_START_EVENT_MARK.length) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static long skipFully(@NotNull InputStream in, long count) throws IOException {
+        long skipped = 0;
+
+        while (skipped < count) {
+            long n = in.skip(count - skipped);
+            if (n <= 0) {
+                // Check EOF, since skip() may return 0 before the stream end
+                if (in.read() == -1) {
+                    break;
+                }
+                n = 1;
+            }
+
+            skipped += n;
+        }
+
+        return skipped;
+    }
+}
@@ -21,11 +21,10 @@
  */
 package com.microsoft.azure.hdinsight.spark.jobs;
 
-import com.microsoft.azure.hdinsight.common.HDInsightLoader;
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
+import com.microsoft.azure.hdinsight.sdk.common.AggregatedException;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
 import com.microsoft.azure.hdinsight.sdk.rest.AttemptWithAppId;
-import com.microsoft.azure.hdinsight.sdk.rest.ObjectConvertUtils;
 import com.microsoft.azure.hdinsight.sdk.rest.RestUtil;
 import com.microsoft.azure.hdinsight.sdk.rest.spark.Application;
 import com.microsoft.azure.hdinsight.sdk.rest.spark.event.JobStartEventLog;
@@ -34,29 +33,22 @@ import com.microsoft.azure.hdinsight.sdk.rest.spark.job.Job;
 import com.microsoft.azure.hdinsight.sdk.rest.spark.stage.Stage;
 import com.microsoft.azure.hdinsight.sdk.rest.spark.task.Task;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
 import org.apache.http.HttpEntity;
-import org.json.JSONObject;
 
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.Charset;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 public class SparkRestUtil {
     public static final String SPARK_REST_API_ENDPOINT = "%s/sparkhistory/api/v1/applications/%s";
 
     @NotNull
     public static List<Application> getSparkApplications(@NotNull IClusterDetail clusterDetail) throws HDIException, IOException {
-        HttpEntity entity = getSparkRestEntity(clusterDetail, "");
-        Optional<List<Application>> apps = ObjectConvertUtils.convertEntityToList(entity, Application.class);
+        Optional<List<Application>> apps = getSparkRestList(clusterDetail, "", Application.class);
 
         // spark job has at least one attempt
         return apps.orElse(RestUtil.getEmptyList(Application.class))
@@ -67,15 +59,13 @@ public class SparkRestUtil {
 
     public static List<Executor> getAllExecutorFromApp(@NotNull ApplicationKey key) throws IOException, HDIException, ExecutionException {
         final AttemptWithAppId attemptWithAppId = getLastAttemptFromLocalCache(key);
-        final HttpEntity entity = getSparkRestEntity(key.getClusterDetails(), String.format("/%s/%s/executors", attemptWithAppId.getAppId(), attemptWithAppId.getAttemptId()));
-        Optional<List<Executor>> executors = ObjectConvertUtils.convertEntityToList(entity, Executor.class);
+        Optional<List<Executor>> executors = getSparkRestList(key.getClusterDetails(), String.format("/%s/%s/executors", attemptWithAppId.getAppId(), attemptWithAppId.getAttemptId()), Executor.class);
         return executors.orElse(RestUtil.getEmptyList(Executor.class));
     }
 
     public static List<Stage> getAllStageFromApp(@NotNull ApplicationKey key) throws IOException, HDIException, ExecutionException {
         final AttemptWithAppId attemptWithAppId = getLastAttemptFromLocalCache(key);
-        final HttpEntity entity = getSparkRestEntity(key.getClusterDetails(), String.format("/%s/%s/stages", attemptWithAppId.getAppId(), attemptWithAppId.getAttemptId()));
-        final Optional<List<Stage>> stages = ObjectConvertUtils.convertEntityToList(entity, Stage.class);
+        final Optional<List<Stage>> stages = getSparkRestList(key.getClusterDetails(), String.format("/%s/%s/stages", attemptWithAppId.getAppId(), attemptWithAppId.getAttemptId()), Stage.class);
         return stages.orElse(RestUtil.getEmptyList(Stage.class));
     }
 
@@ -85,53 +75,53 @@ public class SparkRestUtil {
     }
 
     public static List<Job> getSparkJobsFromApp(@NotNull IClusterDetail clusterDetail, @NotNull String appId, @NotNull String attemptId) throws IOException, HDIException {
-        HttpEntity entity = getSparkRestEntity(clusterDetail, String.format("/%s/%s/jobs", appId, attemptId));
-        Optional<List<Job>> apps = ObjectConvertUtils.convertEntityToList(entity, Job.class);
+        Optional<List<Job>> apps = getSparkRestList(clusterDetail, String.format("/%s/%s/jobs", appId, attemptId), Job.class);
         return apps.orElse(RestUtil.getEmptyList(Job.class));
     }
 
     public static List<Task> getSparkTasks(@NotNull ApplicationKey key, @NotNull int stage, int attemptId) throws IOException, ExecutionException, HDIException {
         AttemptWithAppId attemptWithAppId = getLastAttemptFromLocalCache(key);
         String url = String.format("/%s/%s/stages/%s/%s/taskList", attemptWithAppId.getAppId(), attemptWithAppId.getAttemptId(),stage, attemptId);
-        HttpEntity entity = getSparkRestEntity(key.getClusterDetails(), url);
-
-        Optional<List<Task>> tasks = ObjectConvertUtils.convertEntityToList(entity, Task.class);
+        Optional<List<Task>> tasks = getSparkRestList(key.getClusterDetails(), url, Task.class);
         return tasks.orElse(RestUtil.getEmptyList(Task.class));
     }
     
+    /**
+     * Get the tasks of all the stages, the stage task lists are fetched in parallel with the cluster's parallelism
+     *
+     * @throws AggregatedException the exception with the failures of the stages
+     */
+    public static List<Task> getSparkTasksOfStages(@NotNull ApplicationKey key, @NotNull List<Stage> stages) throws AggregatedException {
+        return ParallelRestFetcher.fetchAll(key.getClusterDetails(), stages,
+                stage -> getSparkTasks(key, stage.getStageId(), stage.getAttemptId()));
+    }
+
     public static List<JobStartEventLog> getSparkEventLogs(@NotNull ApplicationKey key) throws HDIException, IOException {
-        String url = String.format("%s/logs", key.getAppId());
-        String eventLogsPath = String.format("%s/SparkEventLogs/%s/eventLogs.zip", HDInsightLoader.getHDInsightHelper().getPluginRootPath(), key.getAppId());
-        File file = new File(eventLogsPath);
-        HttpEntity entity = getSparkRestEntity(key.getClusterDetails(), url);
-        InputStream inputStream = entity.getContent();
-        FileUtils.copyInputStreamToFile(inputStream, file);
-        IOUtils.closeQuietly(inputStream);
-
-        ZipFile zipFile = new ZipFile(file);
-        List<? extends ZipEntry> entities =  Collections.list(zipFile.entries());
-        // every application has an attempt in event log
-        // and the entity name should be in formation "{appId}_{attemptId}"
-        String entityName = String.format("%s_%s", key.getAppId(), entities.size());
-        ZipEntry lastEntity = zipFile.getEntry(entityName);
-        if (lastEntity == null) {
-            throw new HDIException(String.format("No Spark event log entity found for app: %s", key.getAppId()));
-        }
-        InputStream zipFileInputStream = zipFile.getInputStream(lastEntity);
-        String entityContent = IOUtils.toString(zipFileInputStream, Charset.forName("utf-8"));
-
-        String[] lines = entityContent.split("\n");
-        List<JobStartEventLog> jobStartEvents = Arrays.stream(lines)
-                .filter(line -> {
-                    JSONObject jsonObject = new JSONObject(line);
-                    String eventName = jsonObject.getString("Event");
-                    return eventName.equalsIgnoreCase("SparkListenerJobStart");
-                    })
-                .map(oneLine -> ObjectConvertUtils.convertToObjectQuietly(oneLine, JobStartEventLog.class))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        return getSparkEventLogs(key, null).getJobStartEvents();
+    }
 
-        return jobStartEvents;
+    /**
+     * Get the job start events from the Spark event logs by streaming, without saving the logs zip to local disk
+     *
+     * @param key the application key
+     * @param from the position got from the last result to resume from, for running applications
+     * @return the job start events after the position and the next position to resume from
+     */
+    public static SparkEventLogParser.Result getSparkEventLogs(@NotNull ApplicationKey key,
+                                                               @Nullable SparkEventLogParser.Position from) throws HDIException, IOException {
+        // Not coalesced, the logs zip is streamed rather than buffered
+        String url = String.format(SPARK_REST_API_ENDPOINT, key.getClusterDetails().getConnectionUrl(), String.format("%s/logs", key.getAppId()));
+        HttpEntity entity = JobUtils.getEntity(key.getClusterDetails(), url);
+
+        try (InputStream inputStream = entity.getContent()) {
+            SparkEventLogParser.Result result = SparkEventLogParser.parseJobStartEvents(inputStream, key.getAppId(), from);
+
+            if (result.getNextPosition() == null) {
+                throw new HDIException(String.format("No Spark event log entity found for app: %s", key.getAppId()));
+            }
+
+            return result;
+        }
     }
 
     private static AttemptWithAppId getLastAttemptFromLocalCache(@NotNull ApplicationKey key) throws ExecutionException, HDIException {
@@ -141,8 +131,10 @@ public class SparkRestUtil {
         return selectedApplication.orElseThrow(()-> new HDIException(String.format("application %s on cluster %s can't find", key.getAppId(), key.getClusterDetails().getName()))).getLastAttemptWithAppId(key.getClusterDetails().getName());
     }
 
-    private static HttpEntity getSparkRestEntity(@NotNull IClusterDetail clusterDetail, @NotNull String restUrl) throws HDIException, IOException {
+    private static <T> Optional<List<T>> getSparkRestList(@NotNull IClusterDetail clusterDetail,
+                                                          @NotNull String restUrl,
+                                                          @NotNull Class<T> tClass) throws HDIException, IOException {
         final String url = String.format(SPARK_REST_API_ENDPOINT, clusterDetail.getConnectionUrl(), restUrl);
-        return JobUtils.getEntity(clusterDetail, url);
+        return SingleFlightRestFetcher.getList(clusterDetail, url, tClass);
     }
 }
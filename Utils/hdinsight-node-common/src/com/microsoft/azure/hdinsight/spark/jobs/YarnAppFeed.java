@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.spark.jobs;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.microsoft.azure.hdinsight.metadata.ClusterChangeEvent;
+import com.microsoft.azure.hdinsight.metadata.ClusterMetaDataService;
+import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
+import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.App;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The Livy Spark applications of a cluster, got from YARN ResourceManager REST API incrementally.
+ *
+ * The filters are pushed to ResourceManager. The first refresh lists all the Livy Spark applications, then each
+ * refresh only lists the unfinished ones and those finished after the high-water mark, and merges them into the
+ * index keyed by application id. Only the unfinished and the latest {@link #MAX_FINISHED_APPS} finished
+ * applications are kept in the index, and the index of a cluster removed is dropped.
+ */
+public class YarnAppFeed {
+    private static final String LIVY_SPARK_APPS = "apps?applicationTypes=SPARK&user=livy";
+    private static final String UNFINISHED_STATES = "NEW,NEW_SAVING,SUBMITTED,ACCEPTED,RUNNING";
+
+    /**
+     * The overlap of the finished time window, for the applications whose finishing is reported late
+     */
+    private static final long HIGH_WATER_MARK_OVERLAP_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final int FEED_EXPIRE_MINUTES = 30;
+
+    /**
+     * The max finished applications kept in the index, the earliest finished ones are dropped beyond it
+     */
+    static final int MAX_FINISHED_APPS = 500;
+
+    private static final Cache<String, YarnAppFeed> feeds = CacheBuilder.newBuilder()
+            .expireAfterAccess(FEED_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    static {
+        // Drop the index of the cluster removed
+        ClusterMetaDataService.getInstance().getClusterChanges()
+                .filter(change -> change.getType() == ClusterChangeEvent.Type.REMOVED)
+                .subscribe(change -> feeds.invalidate(getFeedKey(change.getCluster())), err -> {});
+    }
+
+    @NotNull
+    private final IClusterDetail clusterDetail;
+
+    private final ConcurrentMap<String, App> apps = new ConcurrentHashMap<>();
+
+    // The max finished time of the applications got, -1 for not listed yet
+    private long highWaterMark = -1;
+
+    private YarnAppFeed(@NotNull IClusterDetail clusterDetail) {
+        this.clusterDetail = clusterDetail;
+    }
+
+    /**
+     * Get the application feed of the cluster, which is shared by all callers for the same cluster
+     */
+    @NotNull
+    public static YarnAppFeed of(@NotNull IClusterDetail clusterDetail) {
+        try {
+            return feeds.get(getFeedKey(clusterDetail), () -> new YarnAppFeed(clusterDetail));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException("Failed to create YARN application feed for " + clusterDetail.getName(), e.getCause());
+        }
+    }
+
+    /**
+     * Find the finished application in the index of the cluster, without refreshing or creating the feed
+     *
+     * @return the finished application listed, null if not listed or not finished
+     */
+    @Nullable
+    public static App findFinishedApp(@NotNull IClusterDetail clusterDetail, @NotNull String appId) {
+        YarnAppFeed feed = feeds.getIfPresent(getFeedKey(clusterDetail));
+        App app = feed == null ? null : feed.getApp(appId);
+
+        return app != null && app.isFinished() ? app : null;
+    }
+
+    /**
+     * Get the new and changed applications since the last refresh and merge them into the index
+     *
+     * @return all the applications in the index, the latest started first
+     */
+    @NotNull
+    public synchronized List<App> refresh() throws IOException, HDIException {
+        if (highWaterMark < 0) {
+            List<App> allApps = YarnRestUtil.getLivyAppsFromYarn(clusterDetail, LIVY_SPARK_APPS);
+
+            apps.clear();
+            merge(allApps);
+        } else {
+            List<App> unfinishedApps = YarnRestUtil.getLivyAppsFromYarn(
+                    clusterDetail, LIVY_SPARK_APPS + "&states=" + UNFINISHED_STATES);
+            List<App> finishedApps = YarnRestUtil.getLivyAppsFromYarn(
+                    clusterDetail,
+                    LIVY_SPARK_APPS + "&finishedTimeBegin=" + Math.max(0, highWaterMark - HIGH_WATER_MARK_OVERLAP_MS));
+
+            merge(unfinishedApps);
+            merge(finishedApps);
+        }
+
+        prune();
+
+        return getApps();
+    }
+
+    /**
+     * Get the applications in the index without refreshing, the latest started first
+     */
+    @NotNull
+    public List<App> getApps() {
+        List<App> result = new ArrayList<>(apps.values());
+        result.sort(Comparator.comparingLong(App::getStartedTime).reversed());
+
+        return result;
+    }
+
+    @Nullable
+    public App getApp(@NotNull String appId) {
+        return apps.get(appId);
+    }
+
+    /**
+     * Drop the index, the next refresh lists all applications again
+     */
+    public synchronized void reset() {
+        apps.clear();
+        highWaterMark = -1;
+    }
+
+    /*
+     * Keep the unfinished applications and the latest finished ones, which are what the listing shows
+     */
+    private void prune() {
+        apps.values().stream()
+                .filter(App::isFinished)
+                .sorted(Comparator.comparingLong(App::getFinishedTime).reversed())
+                .skip(MAX_FINISHED_APPS)
+                .collect(Collectors.toList())
+                .forEach(app -> apps.remove(app.getId()));
+    }
+
+    @NotNull
+    private static String getFeedKey(@NotNull IClusterDetail clusterDetail) {
+        return clusterDetail.getConnectionUrl().toLowerCase();
+    }
+
+    private void merge(@NotNull List<App> newApps) {
+        highWaterMark = Math.max(highWaterMark, 0);
+
+        for (App app : newApps) {
+            apps.put(app.getId(), app);
+            highWaterMark = Math.max(highWaterMark, app.getFinishedTime());
+        }
+    }
+}
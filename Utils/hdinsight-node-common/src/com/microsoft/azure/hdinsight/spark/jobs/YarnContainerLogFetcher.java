@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ * <p/>
+ * All rights reserved.
+ * <p/>
+ * MIT License
+ * <p/>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p/>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of
+ * the Software.
+ * <p/>
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.microsoft.azure.hdinsight.spark.jobs;
+
+import com.microsoft.azure.hdinsight.sdk.common.HDIException;
+import com.microsoft.azure.hdinsight.sdk.common.HttpClientPool;
+import com.microsoft.azuretools.azurecommons.helpers.NotNull;
+import com.microsoft.azuretools.azurecommons.helpers.Nullable;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.jsoup.parser.Parser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The YARN container log fetcher, which gets a byte range of the container log page with the pooled HTTP client
+ * and scans the page for the log bytes in the {@code <pre>} tag without building the whole DOM.
+ */
+public class YarnContainerLogFetcher {
+    // The max length of a tag or a text outside the <pre> tag to inspect, the longer ones are truncated
+    private static final int MAX_TAG_LENGTH = 256;
+
+    // The NodeManager and the history server show the raw byte count for the partial log, such as
+    // "Showing 4096 bytes. Click here for full log" or "Showing 4096 bytes of 8192 total."
+    private static final Pattern SHOWING_BYTES_PATTERN = Pattern.compile("Showing (\\d+) bytes");
+
+    private static final Pattern ENTITY_PATTERN = Pattern.compile("&#?[0-9a-zA-Z]+;");
+
+    /**
+     * The raw log bytes got and the bytes consumed from the log
+     */
+    public static class ContainerLog {
+        public static final ContainerLog EMPTY = new ContainerLog(new byte[0], StandardCharsets.UTF_8, 0);
+
+        private final byte[] bytes;
+        private final Charset charset;
+        private final long byteCount;
+
+        ContainerLog(@NotNull byte[] bytes, @NotNull Charset charset, long byteCount) {
+            this.bytes = bytes;
+            this.charset = charset;
+            this.byteCount = byteCount;
+        }
+
+        /**
+         * @return the log text decoded, a multi-byte character split by the byte range is malformed
+         */
+        @NotNull
+        public String getText() {
+            return new String(bytes, charset);
+        }
+
+        /**
+         * @return the raw log bytes, the caller should join them with the next range before decoding
+         */
+        @NotNull
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        @NotNull
+        public Charset getCharset() {
+            return charset;
+        }
+
+        /**
+         * @return the raw log bytes consumed, which may be more than the bytes got when the page truncates the log
+         */
+        public long getByteCount() {
+            return byteCount;
+        }
+    }
+
+    /**
+     * Get the log text between the byte offsets [start, start + size)
+     *
+     * @param credentialsProvider the credential provider for HDInsight, null for anonymous
+     * @param baseUrl the container log URL
+     * @param type the log type, such as stderr
+     * @param start the byte offset to start from
+     * @param size the max bytes to get, the value 0 for as many as possible
+     * @return the log text and the raw bytes consumed from the log
+     */
+    @NotNull
+    public static ContainerLog fetch(@Nullable final CredentialsProvider credentialsProvider,
+                               @NotNull final String baseUrl,
+                               @NotNull final String type,
+                               long start,
+                               int size) throws IOException, HDIException, URISyntaxException {
+        final URI url = new URI(baseUrl + "/").resolve(
+                String.format("%s?start=%d", type, start) +
+                        (size <= 0 ? "" : String.format("&&end=%d", start + size)));
+
+        final CloseableHttpClient client = HttpClientPool.getInstance().getClient(url.toString(), credentialsProvider);
+        try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+            final HttpEntity entity = response.getEntity();
+            final int code = response.getStatusLine().getStatusCode();
+
+            if (code != HttpStatus.SC_OK) {
+                EntityUtils.consumeQuietly(entity);
+                throw new HDIException(response.getStatusLine().getReasonPhrase(), code);
+            }
+
+            if (entity == null) {
+                return ContainerLog.EMPTY;
+            }
+
+            final ContentType contentType = ContentType.get(entity);
+            final Charset charset = contentType == null || contentType.getCharset() == null ?
+                    StandardCharsets.UTF_8 : contentType.getCharset();
+
+            // Read the page byte by byte, so that the log bytes inside <pre> are kept as they are
+            try (Reader reader = new BufferedReader(
+                    new InputStreamReader(entity.getContent(), StandardCharsets.ISO_8859_1))) {
+                return extractLog(reader, charset);
+            }
+        }
+    }
+
+    /**
+     * Scan the HTML for the bytes of the last {@code <pre>} tag, the tags inside are dropped and the entities
+     * are unescaped. The raw byte count is got from the "Showing N bytes" hint of the page, or the bytes are the
+     * whole log if there is no hint.
+     *
+     * @param reader the page read as ISO-8859-1, one char per byte
+     * @param charset the charset of the page
+     */
+    @NotNull
+    static ContainerLog extractLog(@NotNull final Reader reader, @NotNull final Charset charset) throws IOException {
+        byte[] lastPre = new byte[0];
+        Long shownBytes = null;
+        StringBuilder pre = null;
+        final StringBuilder text = new StringBuilder();
+        final StringBuilder tag = new StringBuilder();
+        int ch;
+
+        while ((ch = reader.read()) != -1) {
+            if (ch != '<') {
+                if (pre != null) {
+                    pre.append((char) ch);
+                } else if (text.length() < MAX_TAG_LENGTH) {
+                    text.append((char) ch);
+                }
+
+                continue;
+            }
+
+            if (shownBytes == null && text.length() > 0) {
+                final Matcher matcher = SHOWING_BYTES_PATTERN.matcher(text);
+                if (matcher.find()) {
+                    shownBytes = Long.parseLong(matcher.group(1));
+                }
+            }
+
+            text.setLength(0);
+
+            // Read the tag until '>'
+            tag.setLength(0);
+            while ((ch = reader.read()) != -1 && ch != '>') {
+                if (tag.length() < MAX_TAG_LENGTH) {
+                    tag.append((char) ch);
+                }
+            }
+
+            final String tagName = getTagName(tag);
+            if (pre == null && tagName.equals("pre")) {
+                pre = new StringBuilder();
+            } else if (pre != null && tagName.equals("/pre")) {
+                lastPre = toLogBytes(pre, charset);
+                pre = null;
+            }
+        }
+
+        return new ContainerLog(lastPre, charset, shownBytes != null ? shownBytes : lastPre.length);
+    }
+
+    /**
+     * Unescape the entities of the {@code <pre>} text read as ISO-8859-1, the other chars are the raw bytes
+     */
+    @NotNull
+    private static byte[] toLogBytes(@NotNull final CharSequence pre, @NotNull final Charset charset) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(pre.length());
+        final Matcher matcher = ENTITY_PATTERN.matcher(pre);
+        int last = 0;
+
+        while (matcher.find()) {
+            writeLatin1(bytes, pre.subSequence(last, matcher.start()));
+
+            final byte[] unescaped = Parser.unescapeEntities(matcher.group(), false).getBytes(charset);
+            bytes.write(unescaped, 0, unescaped.length);
+            last = matcher.end();
+        }
+
+        writeLatin1(bytes, pre.subSequence(last, pre.length()));
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeLatin1(@NotNull final ByteArrayOutputStream bytes, @NotNull final CharSequence chars) {
+        final byte[] raw = chars.toString().getBytes(StandardCharsets.ISO_8859_1);
+        bytes.write(raw, 0, raw.length);
+    }
+
+    @NotNull
+    private static String getTagName(@NotNull final CharSequence tag) {
+        // Keep the leading '/' of the end tag
+        int end = tag.length() > 0 && tag.charAt(0) == '/' ? 1 : 0;
+        while (end < tag.length() && Character.isLetterOrDigit(tag.charAt(end))) {
+            end++;
+        }
+
+        return tag.subSequence(0, end).toString().toLowerCase();
+    }
+}
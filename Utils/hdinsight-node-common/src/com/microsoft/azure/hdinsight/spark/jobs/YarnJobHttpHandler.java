@@ -26,10 +26,12 @@ import com.microsoft.azure.hdinsight.sdk.rest.ObjectConvertUtils;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.App;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.ApplicationMasterLogs;
 import com.microsoft.azure.hdinsight.spark.jobs.framework.JobRequestDetails;
+import com.microsoft.tooling.msservices.components.DefaultLoader;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
@@ -41,7 +43,16 @@ public class YarnJobHttpHandler implements HttpHandler {
         JobRequestDetails requestDetail = JobRequestDetails.getJobRequestDetail(httpExchange);
         String path = requestDetail.getRequestPath();
         try {
-            if (path.contains("/apps/app") && requestDetail.isSpecificApp()) {
+            if (path.equalsIgnoreCase("/apps/") && !requestDetail.isSpecificApp()) {
+                try {
+                    List<App> apps = YarnRestUtil.getSparkAppFromYarn(requestDetail.getCluster());
+                    Optional<String> responseString = ObjectConvertUtils.convertObjectToJsonString(apps);
+                    JobUtils.setResponse(httpExchange, responseString.orElseThrow(IOException::new));
+                } catch (HDIException e) {
+                    DefaultLoader.getUIHelper().logError("get Yarn applications list error", e);
+                    JobUtils.setResponse(httpExchange, e.getMessage(), 500);
+                }
+            } else if (path.contains("/apps/app") && requestDetail.isSpecificApp()) {
                 App app = JobViewCacheManager.getYarnApp(new ApplicationKey(requestDetail.getCluster(), requestDetail.getAppId()));
                 Optional<String> responseString = ObjectConvertUtils.convertObjectToJsonString(app);
                 JobUtils.setResponse(httpExchange, responseString.orElseThrow(IOException::new));
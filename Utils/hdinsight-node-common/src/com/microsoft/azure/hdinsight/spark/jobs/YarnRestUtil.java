@@ -23,12 +23,10 @@ package com.microsoft.azure.hdinsight.spark.jobs;
 
 import com.microsoft.azure.hdinsight.sdk.cluster.IClusterDetail;
 import com.microsoft.azure.hdinsight.sdk.common.HDIException;
-import com.microsoft.azure.hdinsight.sdk.rest.ObjectConvertUtils;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.App;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.AppResponse;
 import com.microsoft.azure.hdinsight.sdk.rest.yarn.rm.YarnApplicationResponse;
 import com.microsoft.azuretools.azurecommons.helpers.NotNull;
-import org.apache.http.HttpEntity;
 
 import java.io.IOException;
 import java.util.List;
@@ -38,9 +36,16 @@ import java.util.stream.Collectors;
 public class YarnRestUtil {
     private static final String YARN_UI_HISTORY_URL = "%s/yarnui/ws/v1/cluster/%s";
 
-    private static List<App> getSparkAppFromYarn(@NotNull final IClusterDetail clusterDetail) throws IOException, HDIException {
-        final HttpEntity entity = getYarnRestEntity(clusterDetail, "cluster/apps");
-        Optional<YarnApplicationResponse> allApps = ObjectConvertUtils.convertEntityToObject(entity, YarnApplicationResponse.class);
+    /**
+     * Get the Livy Spark applications of the cluster, only the new and changed ones are got from YARN since the
+     * last call, see {@link YarnAppFeed}
+     */
+    public static List<App> getSparkAppFromYarn(@NotNull final IClusterDetail clusterDetail) throws IOException, HDIException {
+        return YarnAppFeed.of(clusterDetail).refresh();
+    }
+
+    static List<App> getLivyAppsFromYarn(@NotNull final IClusterDetail clusterDetail, @NotNull final String appsQuery) throws IOException, HDIException {
+        Optional<YarnApplicationResponse> allApps = getYarnRestObject(clusterDetail, appsQuery, YarnApplicationResponse.class);
         return allApps.orElse(YarnApplicationResponse.EMPTY)
                 .getAllApplication()
                 .orElse(App.EMPTY_LIST)
@@ -50,12 +55,19 @@ public class YarnRestUtil {
     }
 
     public static App getApp(@NotNull ApplicationKey key) throws HDIException, IOException {
-        HttpEntity entity = getYarnRestEntity(key.getClusterDetails(), String.format("/apps/%s", key.getAppId()));
-        return ObjectConvertUtils.convertEntityToObject(entity, AppResponse.class).orElseThrow(()-> new HDIException(String.format("get Yarn app %s on cluster %s error", key.getAppId(), key.getClusterDetails().getName()))).getApp();
+        // The finished application listed won't change any more
+        App listedApp = YarnAppFeed.findFinishedApp(key.getClusterDetails(), key.getAppId());
+        if (listedApp != null) {
+            return listedApp;
+        }
+
+        return getYarnRestObject(key.getClusterDetails(), String.format("/apps/%s", key.getAppId()), AppResponse.class).orElseThrow(()-> new HDIException(String.format("get Yarn app %s on cluster %s error", key.getAppId(), key.getClusterDetails().getName()))).getApp();
     }
 
-    private static HttpEntity getYarnRestEntity(@NotNull IClusterDetail clusterDetail, @NotNull String restUrl) throws HDIException, IOException {
+    private static <T> Optional<T> getYarnRestObject(@NotNull IClusterDetail clusterDetail,
+                                                     @NotNull String restUrl,
+                                                     @NotNull Class<T> tClass) throws HDIException, IOException {
         final String url = String.format(YARN_UI_HISTORY_URL, clusterDetail.getConnectionUrl(), restUrl);
-        return JobUtils.getEntity(clusterDetail, url);
+        return SingleFlightRestFetcher.getObject(clusterDetail, url, tClass);
     }
 }